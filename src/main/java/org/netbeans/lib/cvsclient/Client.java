@@ -61,10 +61,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.netbeans.lib.cvsclient.admin.AdminHandler;
 import org.netbeans.lib.cvsclient.admin.Entry;
+import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
 import org.netbeans.lib.cvsclient.command.Command;
 import org.netbeans.lib.cvsclient.command.CommandAbortedException;
 import org.netbeans.lib.cvsclient.command.CommandException;
@@ -130,6 +138,12 @@ public class Client implements ClientServices, ResponseServices {
 
     private boolean dontUseGzipFileHandler;
 
+    /**
+     * The compression level of file contents accepted by the server on this
+     * connection, 0 if files are sent uncompressed.
+     */
+    private int transmitCompressionLevel;
+
     /**
      * The modified date.
      */
@@ -169,13 +183,24 @@ public class Client implements ClientServices, ResponseServices {
 
     private ResponseFactory responseFactory;
 
+    /**
+     * Reused by {@link #handleResponse()} to collect response names.
+     */
+    private byte[] responseNameBuffer = new byte[32];
+
+    /**
+     * Writes the serialized requests to the connection while
+     * {@link #processRequests} serializes the next ones of the list.
+     */
+    private ConnectionWriter connectionWriter;
+
     private IgnoreFileFilter ignoreFileFilter;
 
     /*
      * The valid list of requests that is valid for the CVS server corresponding
      * to this client
      */
-    private final Map<String, ClientServices> validRequests = new HashMap<String, ClientServices>();
+    private Set<String> validRequests = Collections.emptySet();
 
     /**
      * A map of file patterns and keyword substitution options
@@ -194,6 +219,18 @@ public class Client implements ClientServices, ResponseServices {
     private static final Set<Class<?>> ALLOWED_CONNECTION_REUSE_REQUESTS = new HashSet<Class<?>>(
                     Arrays.asList(new Class<?>[] { ExpandModulesRequest.class, WrapperSendRequest.class }));
 
+    /**
+     * Runs the connection probes of all clients, so that frequent short
+     * commands do not start a new thread each.
+     */
+    private static final ExecutorService PROBE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "CVS Server Probe"); // NOI18N
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     // processRequests & getCounter
     private LoggedDataInputStream loggedDataInputStream;
     private LoggedDataOutputStream loggedDataOutputStream;
@@ -252,6 +289,7 @@ public class Client implements ClientServices, ResponseServices {
     public void setConnection(final Connection connection) {
         this.connection = connection;
         initialRequestsSent = false;
+        transmitCompressionLevel = 0;
         setIsFirstCommand(true);
     }
 
@@ -348,6 +386,13 @@ public class Client implements ClientServices, ResponseServices {
         dontUseGzipFileHandler = true;
     }
 
+    private void setTransmitCompressionLevel(final int level) {
+        transmitCompressionLevel = level;
+        if (transmitFileHandler instanceof DefaultFileHandler) {
+            ((DefaultFileHandler) transmitFileHandler).setTransmitCompressionLevel(level);
+        }
+    }
+
     public boolean isAborted() {
         return abort;
     }
@@ -366,63 +411,38 @@ public class Client implements ClientServices, ResponseServices {
         }
 
         // #69689 detect silent servers, possibly caused by proxy errors
-        final Throwable ex[] = new Throwable[1];
-        final boolean opened[] = new boolean[] { false };
-        final Runnable probe = new Runnable() {
-            public void run() {
-                try {
-                    getConnection().open();
-                    synchronized (opened) {
-                        opened[0] = true;
-                    }
-                } catch (final Throwable e) {
-                    synchronized (ex) {
-                        ex[0] = e;
-                    }
-                }
+        final Future<Void> probe = PROBE_EXECUTOR.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                getConnection().open();
+                return null;
             }
-        };
-
-        final Thread probeThread = new Thread(probe, "CVS Server Probe"); // NOI18N
-        probeThread.start();
+        });
         try {
 
-            probeThread.join(60 * 1000); // 1 min
-
-            Throwable wasEx;
-            synchronized (ex) {
-                wasEx = ex[0];
-            }
-            if (wasEx != null) {
-                if (wasEx instanceof CommandAbortedException) {
-                    // User cancelled
-                    abort();
-                    return;
-                } else if (wasEx instanceof AuthenticationException) {
-                    throw (AuthenticationException) wasEx;
-                } else if (wasEx instanceof RuntimeException) {
-                    throw (RuntimeException) wasEx;
-                } else if (wasEx instanceof Error) {
-                    throw (Error) wasEx;
-                } else {
-                    assert false : wasEx;
-                }
-            }
+            probe.get(60 * 1000, TimeUnit.MILLISECONDS); // 1 min
 
-            boolean wasOpened;
-            synchronized (opened) {
-                wasOpened = opened[0];
-            }
-            if (wasOpened == false) {
-                probeThread.interrupt();
-                throw new AuthenticationException("Timeout, no response from server.",
-                                "Timeout, no response from server.");
+        } catch (final ExecutionException e) {
+            final Throwable wasEx = e.getCause();
+            if (wasEx instanceof CommandAbortedException) {
+                // User cancelled
+                abort();
+            } else if (wasEx instanceof AuthenticationException) {
+                throw (AuthenticationException) wasEx;
+            } else if (wasEx instanceof RuntimeException) {
+                throw (RuntimeException) wasEx;
+            } else if (wasEx instanceof Error) {
+                throw (Error) wasEx;
+            } else {
+                assert false : wasEx;
             }
-
+        } catch (final TimeoutException e) {
+            probe.cancel(true);
+            throw new AuthenticationException("Timeout, no response from server.",
+                            "Timeout, no response from server.");
         } catch (final InterruptedException e) {
 
             // User cancelled
-            probeThread.interrupt();
+            probe.cancel(true);
             abort();
         }
     }
@@ -507,13 +527,44 @@ public class Client implements ClientServices, ResponseServices {
         LoggedDataOutputStream dos = connection.getOutputStream();
         loggedDataOutputStream = dos;
 
+        // requests and file bodies are serialized on this thread and written
+        // to the connection by the writer thread
+        startWriter(dos);
+        boolean sent = false;
+        try {
+            sendRequests(requests, filterRootRequest, fireEnhancedEvents, fileDetailRequestCount);
+            sent = true;
+        } finally {
+            transmitFileHandler = null;
+            try {
+                stopWriter(connection.getOutputStream());
+            } catch (final IOException ex) {
+                if (sent) {
+                    throw ex;
+                }
+                // do not hide the original failure
+            }
+        }
+    }
+
+    private void sendRequests(final List<Request> requests, boolean filterRootRequest,
+                    final boolean fireEnhancedEvents, int fileDetailRequestCount) throws IOException,
+                    UnconfiguredRequestException, ResponseException, CommandAbortedException {
+        LoggedDataOutputStream dos = connection.getOutputStream();
+
         // this list stores stream modification requests, each to be called
         // to modify the input stream the next time we need to process a
         // response
         final List<Request> streamModifierRequests = new LinkedList<Request>();
 
-        // sending files does not seem to allow compression
+        // responses of requests sent ahead without waiting, they come before
+        // the response of the next request that expects one
+        int pipelinedResponses = 0;
+
+        // files are sent compressed once the server accepted
+        // gzip-file-contents
         transmitFileHandler = getUncompressedFileHandler();
+        setTransmitCompressionLevel(transmitCompressionLevel);
 
         for (final Request request2 : requests) {
             if (abort) {
@@ -527,6 +578,7 @@ public class Client implements ClientServices, ResponseServices {
                 if (dontUseGzipFileHandler) {
                     continue;
                 }
+                setTransmitCompressionLevel(((GzipFileContentsRequest) request).getCompressionLevel());
             }
 
             // skip the root request if already sent
@@ -547,11 +599,19 @@ public class Client implements ClientServices, ResponseServices {
             // This is because some modifiers (e.g. gzip) read the header
             // on construction, and obviously no header is present when
             // no response has been sent
-            request.modifyOutputStream(connection);
+            if (request.modifiesOutputStream()) {
+                // the modifier wraps the real connection stream
+                stopWriter(dos);
+                request.modifyOutputStream(connection);
+                dos = connection.getOutputStream();
+                startWriter(dos);
+            } else {
+                request.modifyOutputStream(connection);
+                dos = connection.getOutputStream();
+            }
             if (request.modifiesInputStream()) {
                 streamModifierRequests.add(request);
             }
-            dos = connection.getOutputStream();
 
             final FileDetails fileDetails = request.getFileForTransmission();
             if (fileDetails != null) {
@@ -595,12 +655,42 @@ public class Client implements ClientServices, ResponseServices {
                 }
                 streamModifierRequests.clear();
 
+                for (; pipelinedResponses > 0; pipelinedResponses--) {
+                    handleResponse();
+                }
                 handleResponse();
+            } else if (request instanceof ValidRequestsRequest) {
+                pipelinedResponses++;
             }
         }
         dos.flush();
+        for (; pipelinedResponses > 0; pipelinedResponses--) {
+            handleResponse();
+        }
+    }
 
-        transmitFileHandler = null;
+    private void startWriter(final LoggedDataOutputStream dos) {
+        connectionWriter = new ConnectionWriter(dos.getUnderlyingStream());
+        dos.setUnderlyingStream(connectionWriter);
+    }
+
+    /**
+     * Writes out everything queued in the writer and puts the connection
+     * stream back in place.
+     */
+    private void stopWriter(final LoggedDataOutputStream dos) throws IOException {
+        final ConnectionWriter writer = connectionWriter;
+        if (writer == null) {
+            return;
+        }
+        connectionWriter = null;
+        try {
+            writer.close();
+        } finally {
+            if ((dos != null) && (dos.getUnderlyingStream() == writer)) {
+                dos.setUnderlyingStream(writer.getTarget());
+            }
+        }
     }
 
     private ResponseFactory getResponseFactory() {
@@ -629,10 +719,15 @@ public class Client implements ClientServices, ResponseServices {
             }
 
             while (!abort && (ch != -1)) {
-                final StringBuffer responseNameBuffer = new StringBuffer();
                 // read in the response name
+                int length = 0;
                 while ((ch != -1) && ((char) ch != '\n') && ((char) ch != ' ')) {
-                    responseNameBuffer.append((char) ch);
+                    if (length == responseNameBuffer.length) {
+                        final byte[] larger = new byte[length * 2];
+                        System.arraycopy(responseNameBuffer, 0, larger, 0, length);
+                        responseNameBuffer = larger;
+                    }
+                    responseNameBuffer[length++] = (byte) ch;
                     try {
                         ch = dis.read();
                     } catch (final InterruptedIOException ex) {
@@ -641,8 +736,7 @@ public class Client implements ClientServices, ResponseServices {
                     }
                 }
 
-                final String responseString = responseNameBuffer.toString();
-                final Response response = getResponseFactory().createResponse(responseString);
+                final Response response = getResponseFactory().createResponse(responseNameBuffer, 0, length);
                 // Logger.logInput(new String("<" + responseString +
                 // " processing start>\n").getBytes()); // NOI18N
                 response.process(dis, this);
@@ -705,15 +799,36 @@ public class Client implements ClientServices, ResponseServices {
         getUncompressedFileHandler().setGlobalOptions(globalOptions);
         getGzipFileHandler().setGlobalOptions(globalOptions);
 
+        boolean executed = false;
         try {
             eventManager.addCVSListener(command);
             command.execute(this, eventManager);
+            executed = true;
         } finally {
             eventManager.removeCVSListener(command);
+            flushAdminData(executed);
         }
         return !command.hasFailed();
     }
 
+    /**
+     * Writes out administrative data the admin handler keeps batched during a
+     * command. A failure is reported only if the command itself succeeded, the
+     * changes stay recorded in <tt>CVS/Entries.Log</tt> anyway.
+     */
+    private void flushAdminData(final boolean report) throws CommandException {
+        if (!(adminHandler instanceof StandardAdminHandler)) {
+            return;
+        }
+        try {
+            ((StandardAdminHandler) adminHandler).flush();
+        } catch (final IOException ex) {
+            if (report) {
+                throw new CommandException(ex, ex.getLocalizedMessage());
+            }
+        }
+    }
+
     /**
      * Counts {@link #processRequests(java.util.List)}. send and received bytes.
      * 
@@ -1054,28 +1169,46 @@ public class Client implements ClientServices, ResponseServices {
      *            by spaces.
      */
     public void setValidRequests(final String requests) {
-        // We need to tokenize the requests and add it to our map
-
-        final StringTokenizer tokenizer = new StringTokenizer(requests);
-        String token;
-        while (tokenizer.hasMoreTokens()) {
-            token = tokenizer.nextToken();
-            // we just add an object with the corresponding request
-            // as the key.
-            validRequests.put(token, this);
-        }
+        // the tokenized requests are cached for later connections
+        validRequests = ServerInfoCache.putValidRequests(getCVSRootKey(), requests);
+    }
 
+    /**
+     * Returns whether the CVS server accepts the request, as far as known from
+     * its answer to the valid-requests request or from the server information
+     * cache. Nothing is known before the first command was sent.
+     * 
+     * @param request
+     *            the request name, e.g. <tt>gzip-file-contents</tt>
+     */
+    public boolean isValidRequest(final String request) {
+        return validRequests.contains(request);
     }
 
     private int fillInitialRequests(final List<Request> requests) {
         int pos = 0;
         requests.add(pos++, new RootRequest(getRepository()));
         requests.add(pos++, new UseUnchangedRequest());
-        requests.add(pos++, new ValidRequestsRequest());
+        final Set<String> cached = ServerInfoCache.getValidRequests(getCVSRootKey());
+        if (cached != null) {
+            // the server is known, do not wait for its answer before the
+            // first command, the answer refreshes the cache
+            validRequests = cached;
+            if (!isValidRequest("gzip-file-contents")) { // NOI18N
+                dontUseGzipFileHandler();
+            }
+            requests.add(pos++, new ValidRequestsRequest(false));
+        } else {
+            requests.add(pos++, new ValidRequestsRequest());
+        }
         requests.add(pos++, new ValidResponsesRequest());
         return pos;
     }
 
+    private String getCVSRootKey() {
+        return (globalOptions != null) ? globalOptions.getCVSRoot() : null;
+    }
+
     /**
      * This method is called by WrapperSendResponse for each wrapper setting
      * sent back by the CVS server
@@ -1095,9 +1228,13 @@ public class Client implements ClientServices, ResponseServices {
 
     /**
      * Returns the wrappers map associated with the CVS server The map is valid
-     * only after the connection is established
+     * only after the connection is established. The map is shared with later
+     * clients of the same CVSRoot, see {@link ServerInfoCache}.
      */
     public Map<StringPattern, KeywordSubstitutionOptions> getWrappersMap() throws CommandException {
+        if (wrappersMap == null) {
+            wrappersMap = ServerInfoCache.getWrappers(getCVSRootKey());
+        }
         if (wrappersMap == null) {
             wrappersMap = new HashMap<StringPattern, KeywordSubstitutionOptions>();
             final List<Request> requests = new ArrayList<Request>();
@@ -1112,6 +1249,7 @@ public class Client implements ClientServices, ResponseServices {
                 setIsFirstCommand(isFirst);
             }
             wrappersMap = Collections.<StringPattern, KeywordSubstitutionOptions> unmodifiableMap(wrappersMap);
+            ServerInfoCache.putWrappers(getCVSRootKey(), wrappersMap);
         }
         return wrappersMap;
     }
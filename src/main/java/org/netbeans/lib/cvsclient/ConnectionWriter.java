@@ -0,0 +1,266 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Output stream that hands the written bytes over to a writer task running on
+ * a shared pool of daemon threads. While the writer puts one chunk on the
+ * connection the caller can already serialize the next requests of the list
+ * and read the next file bodies. The request list itself is built before it
+ * is processed, the working copy walk does not overlap with the writing. The
+ * queue is bounded so at most <code>QUEUE_SIZE</code> chunks are held in
+ * memory.
+ * <p>
+ * {@link #flush()} returns once everything written so far reached the target
+ * stream and the target was flushed. {@link #close()} ends the writer task
+ * but leaves the target stream open.
+ */
+final class ConnectionWriter extends OutputStream implements Runnable {
+
+    private static final int CHUNK_SIZE = 32768;
+
+    private static final int QUEUE_SIZE = 16;
+
+    private static final byte[] FLUSH = new byte[0];
+
+    private static final byte[] STOP = new byte[0];
+
+    /**
+     * Runs the writers of all clients, so that short commands do not start a
+     * new thread each.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "CVS Connection Writer"); // NOI18N
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final OutputStream target;
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+
+    private final Future<?> task;
+
+    private byte[] chunk = new byte[CHUNK_SIZE];
+
+    private int count;
+
+    private int flushesRequested;
+
+    private int flushesDone;
+
+    private volatile IOException failure;
+
+    private boolean closed;
+
+    ConnectionWriter(final OutputStream target) {
+        this.target = target;
+        task = EXECUTOR.submit(this);
+    }
+
+    /**
+     * Returns the stream the writer writes to.
+     */
+    OutputStream getTarget() {
+        return target;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (count == chunk.length) {
+            sendChunk();
+        }
+        chunk[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == chunk.length) {
+                sendChunk();
+            }
+            final int n = Math.min(len, chunk.length - count);
+            System.arraycopy(b, off, chunk, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            sendChunk();
+        }
+        final int flush;
+        synchronized (this) {
+            flush = ++flushesRequested;
+        }
+        put(FLUSH);
+        try {
+            synchronized (this) {
+                while (flushesDone < flush) {
+                    wait();
+                }
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Writes the pending bytes and ends the writer task.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            queue.clear();
+            try {
+                queue.put(STOP);
+                task.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+            } catch (final ExecutionException ex) {
+                // run() does not throw
+            }
+        }
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                final byte[] next = queue.take();
+                if (next == STOP) {
+                    return;
+                }
+                if (next == FLUSH) {
+                    try {
+                        if (failure == null) {
+                            target.flush();
+                        }
+                    } catch (final IOException ex) {
+                        failure = ex;
+                    }
+                    synchronized (this) {
+                        flushesDone++;
+                        notifyAll();
+                    }
+                } else if (failure == null) {
+                    try {
+                        target.write(next);
+                    } catch (final IOException ex) {
+                        // keep draining so the caller never blocks on a full
+                        // queue, it learns about the failure on its next write
+                        failure = ex;
+                    }
+                }
+            }
+        } catch (final InterruptedException ex) {
+            synchronized (this) {
+                failure = new InterruptedIOException();
+                flushesDone = Integer.MAX_VALUE;
+                notifyAll();
+            }
+        }
+    }
+
+    private void sendChunk() throws IOException {
+        checkFailure();
+        final byte[] full;
+        if (count == chunk.length) {
+            full = chunk;
+            chunk = new byte[CHUNK_SIZE];
+        } else {
+            full = new byte[count];
+            System.arraycopy(chunk, 0, full, 0, count);
+        }
+        count = 0;
+        put(full);
+    }
+
+    private void put(final byte[] item) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed"); // NOI18N
+        }
+        try {
+            queue.put(item);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final IOException ex = failure;
+        if (ex != null) {
+            final IOException wrapped = new IOException(ex.getMessage());
+            wrapped.initCause(ex);
+            throw wrapped;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.netbeans.lib.cvsclient.command.KeywordSubstitutionOptions;
+import org.netbeans.lib.cvsclient.util.StringPattern;
+
+/**
+ * Process wide cache of what CVS servers tell every new connection, keyed by
+ * CVSRoot. Entries expire after a time to live, so a server upgrade is
+ * noticed eventually, and can be invalidated explicitly.
+ * <p>
+ * A client that finds the valid requests of its server here does not wait
+ * for the Valid-requests response before sending its first command. Cached
+ * module expansions and server wrappers save the expand-modules and
+ * wrapper-sendme-rcsOptions round trips; invalidate the CVSRoot after
+ * changing <tt>CVSROOT/modules</tt> or <tt>CVSROOT/cvswrappers</tt>.
+ */
+public final class ServerInfoCache {
+
+    /**
+     * Default time to live (ms) of cached entries, 10 minutes.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+
+    private static final class Entry<V> {
+        /** The text the value was parsed from, if any. */
+        final String source;
+        final V value;
+        final long expires;
+
+        Entry(final String source, final V value, final long expires) {
+            this.source = source;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private static final class ServerInfo {
+        Entry<Set<String>> validRequests;
+        Entry<Map<StringPattern, KeywordSubstitutionOptions>> wrappers;
+        final Map<List<String>, Entry<List<String>>> moduleExpansions = new HashMap<List<String>, Entry<List<String>>>();
+    }
+
+    private static final Map<String, ServerInfo> INFOS = new HashMap<String, ServerInfo>();
+
+    private static long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    private ServerInfoCache() {
+    }
+
+    /**
+     * Sets how long (ms) cached entries are used. Zero disables the cache.
+     */
+    public static synchronized void setTimeToLive(final long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative time to live: " + millis); // NOI18N
+        }
+        timeToLive = millis;
+        if (millis == 0) {
+            INFOS.clear();
+        }
+    }
+
+    public static synchronized long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Forgets everything cached for the given CVSRoot.
+     */
+    public static synchronized void invalidate(final String cvsRoot) {
+        INFOS.remove(cvsRoot);
+    }
+
+    /**
+     * Forgets everything cached.
+     */
+    public static synchronized void invalidateAll() {
+        INFOS.clear();
+    }
+
+    /**
+     * Returns the cached expansion of the modules, or <code>null</code> if it
+     * is not known or expired.
+     * 
+     * @param cvsRoot
+     *            the CVSRoot of the repository
+     * @param modules
+     *            the unexpanded module names, in the order they are sent
+     * @return the expanded module paths
+     */
+    public static synchronized List<String> getModuleExpansion(final String cvsRoot, final List<String> modules) {
+        final ServerInfo info = (cvsRoot != null) ? INFOS.get(cvsRoot) : null;
+        if (info == null) {
+            return null;
+        }
+        final Entry<List<String>> entry = info.moduleExpansions.get(modules);
+        if (isExpired(entry)) {
+            info.moduleExpansions.remove(modules);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Caches the expansion of the modules that the server sent in response to
+     * an expand-modules request.
+     * 
+     * @param cvsRoot
+     *            the CVSRoot of the repository
+     * @param modules
+     *            the unexpanded module names, in the order they were sent
+     * @param expansion
+     *            the expanded module paths
+     */
+    public static synchronized void putModuleExpansion(final String cvsRoot, final List<String> modules,
+                    final List<String> expansion) {
+        final ServerInfo info = getInfo(cvsRoot);
+        if (info != null) {
+            info.moduleExpansions.put(Collections.unmodifiableList(new ArrayList<String>(modules)),
+                            new Entry<List<String>>(null, Collections.unmodifiableList(new ArrayList<String>(
+                                            expansion)), System.currentTimeMillis() + timeToLive));
+        }
+    }
+
+    /**
+     * Returns the cached wrappers of the server, or <code>null</code> if they
+     * are not known or expired.
+     */
+    static synchronized Map<StringPattern, KeywordSubstitutionOptions> getWrappers(final String cvsRoot) {
+        final ServerInfo info = (cvsRoot != null) ? INFOS.get(cvsRoot) : null;
+        if ((info == null) || isExpired(info.wrappers)) {
+            return null;
+        }
+        return info.wrappers.value;
+    }
+
+    /**
+     * Caches the wrappers the server sent in response to a
+     * wrapper-sendme-rcsOptions request.
+     * 
+     * @param wrappers
+     *            an unmodifiable map
+     */
+    static synchronized void putWrappers(final String cvsRoot,
+                    final Map<StringPattern, KeywordSubstitutionOptions> wrappers) {
+        final ServerInfo info = getInfo(cvsRoot);
+        if (info != null) {
+            info.wrappers = new Entry<Map<StringPattern, KeywordSubstitutionOptions>>(null, wrappers,
+                            System.currentTimeMillis() + timeToLive);
+        }
+    }
+
+    /**
+     * Returns the cached valid requests of the server, or <code>null</code>
+     * if they are not known or expired.
+     */
+    static synchronized Set<String> getValidRequests(final String cvsRoot) {
+        final ServerInfo info = (cvsRoot != null) ? INFOS.get(cvsRoot) : null;
+        if ((info == null) || isExpired(info.validRequests)) {
+            return null;
+        }
+        return info.validRequests.value;
+    }
+
+    /**
+     * Caches the valid requests line of a Valid-requests response.
+     * 
+     * @return the requests of the line, shared with all clients of the server
+     */
+    static synchronized Set<String> putValidRequests(final String cvsRoot, final String line) {
+        final ServerInfo info = getInfo(cvsRoot);
+        Set<String> requests;
+        if ((info != null) && (info.validRequests != null) && info.validRequests.source.equals(line)) {
+            requests = info.validRequests.value;
+        } else {
+            requests = new HashSet<String>();
+            final StringTokenizer tokenizer = new StringTokenizer(line);
+            while (tokenizer.hasMoreTokens()) {
+                requests.add(tokenizer.nextToken());
+            }
+            requests = Collections.unmodifiableSet(requests);
+        }
+        if (info != null) {
+            info.validRequests = new Entry<Set<String>>(line, requests, System.currentTimeMillis() + timeToLive);
+        }
+        return requests;
+    }
+
+    private static boolean isExpired(final Entry<?> entry) {
+        return (entry == null) || (entry.expires <= System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the cached information of the CVSRoot, created if missing, or
+     * <code>null</code> if nothing is cached for it.
+     */
+    private static ServerInfo getInfo(final String cvsRoot) {
+        if ((cvsRoot == null) || (timeToLive == 0)) {
+            return null;
+        }
+        ServerInfo info = INFOS.get(cvsRoot);
+        if (info == null) {
+            info = new ServerInfo();
+            INFOS.put(cvsRoot, info);
+        }
+        return info;
+    }
+}
@@ -53,6 +53,8 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
 
+import org.netbeans.lib.cvsclient.util.DateCodec;
+
 /**
  * The class abstracts the CVS concept of an <i>entry line</i>. The entry line
  * is textually of the form:
@@ -83,11 +85,6 @@ public final class Entry {
      */
     private static final String DATE = "D"; // NOI18N
 
-    /**
-     * The instance of the date formatter for sticky dates.
-     */
-    private static DateFormat stickyDateFormatter = new SimpleDateFormat("yyyy.MM.dd.hh.mm.ss");
-
     /**
      * Indicates a binary file.
      */
@@ -110,6 +107,9 @@ public final class Entry {
 
     /**
      * Returns the instance of the Last-Modified-Date-Formatter.
+     * 
+     * @see DateCodec#parseLastModified(String)
+     * @see DateCodec#formatLastModified(long)
      */
     public static DateFormat getLastModifiedDateFormatter() {
         final SimpleDateFormat df = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy", Locale.US); // NOI18N
@@ -256,9 +256,7 @@ public final class Entry {
                         // So I just convert it from String to Date and back.
                         try {
                             final String dateString = tagOrDate.substring(DATE.length());
-                            synchronized (stickyDateFormatter) {
-                                setDate(stickyDateFormatter.parse(dateString));
-                            }
+                            setDate(DateCodec.parseStickyDate(dateString));
                         } catch (final ParseException exc) {
                             System.err.println("We got another inconsistency in the library's date formatting."); // NOI18N
                         }
@@ -365,7 +363,7 @@ public final class Entry {
         }
 
         try {
-            lastModified = getLastModifiedDateFormatter().parse(dateString);
+            lastModified = DateCodec.parseLastModified(dateString);
         } catch (final Exception ex) {
             lastModified = null;
             // System.err.println("[Entry] can't parse " + dateString); //NOI18N
@@ -443,9 +441,7 @@ public final class Entry {
         if (getDate() == null) {
             return null;
         }
-        synchronized(stickyDateFormatter) {
-            return stickyDateFormatter.format(getDate());
-        }
+        return DateCodec.formatStickyDate(getDate());
     }
 
     /**
@@ -55,12 +55,19 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
-import java.util.HashSet;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.netbeans.lib.cvsclient.command.GlobalOptions;
 import org.netbeans.lib.cvsclient.file.FileUtils;
@@ -73,6 +80,12 @@ import org.netbeans.lib.cvsclient.file.FileUtils;
  * standard CVS client, so that operations on locally checked-out files can be
  * carried out by either this library or the standard client without causing the
  * other to fail. Any such failure should be considered a bug in this library.
+ * <p>
+ * Entry changes are not written into <tt>CVS/Entries</tt> one by one. They
+ * are appended to <tt>CVS/Entries.Log</tt> (the format the C client uses for
+ * the same purpose, so a crash never loses them) and kept in memory until the
+ * server moves on to another directory, or until {@link #flush()} is called.
+ * Only then is <tt>CVS/Entries</tt> rewritten, once per directory.
  * 
  * @author Robert Greig
  */
@@ -80,10 +93,24 @@ public class StandardAdminHandler implements AdminHandler {
 
     private static final long serialVersionUID = -600911930443612520L;
 
-    private static final Object ksEntries = new Object();
+    /**
+     * Guards reads and rewrites of the administrative files. Each CVS
+     * directory has a monitor of its own, the normalized directory key, so
+     * clients working on different directories (or workspaces) never contend
+     * with each other. A key is only weakly reachable from here, it stays
+     * the monitor as long as a thread holds on to it.
+     */
+    private static final Map<File, WeakReference<File>> ksEntries = new WeakHashMap<File, WeakReference<File>>();
 
     private static Runnable t9yBeforeRename;
 
+    /**
+     * Entry changes not yet merged into <tt>CVS/Entries</tt>, keyed by the CVS
+     * directory. A <code>null</code> value stands for a removed entry. Every
+     * change is also recorded in <tt>CVS/Entries.Log</tt>.
+     */
+    private transient volatile Map<File, Map<String, Entry>> pendingEntries;
+
     /**
      * Create or update the administration files for a particular file. This
      * will create the CVS directory if necessary, and the Root and Repository
@@ -164,7 +191,7 @@ public class StandardAdminHandler implements AdminHandler {
 
         // Update the Entries file
         if (entry != null) {
-            updateEntriesFile(entriesFile, entry);
+            logEntryChange(CVSdir, entry.getName(), entry);
         }
     }
 
@@ -189,8 +216,9 @@ public class StandardAdminHandler implements AdminHandler {
      *            just been added
      */
     private void addDirectoryToParentEntriesFile(final File CVSdir) throws IOException {
-        synchronized (ksEntries) {
-            final File parentCVSEntries = seekEntries(CVSdir.getParentFile().getParentFile());
+        final File parentDirectory = CVSdir.getParentFile().getParentFile();
+        synchronized (lockFor(new File(parentDirectory, "CVS"))) { // NOI18N
+            final File parentCVSEntries = seekEntries(parentDirectory);
 
             // only update if the file exists. The file will not exist in the
             // case where this is the top level of the module
@@ -278,7 +306,7 @@ public class StandardAdminHandler implements AdminHandler {
      *             if an error occurs writing the files
      */
     private void updateEntriesFile(final File originalFile, final Entry entry) throws IOException {
-        synchronized (ksEntries) {
+        synchronized (lockFor(originalFile.getParentFile())) {
             final File directory = originalFile.getParentFile();
             final File tempFile = new File(directory, "Entries.Backup"); // NOI18N
             tempFile.createNewFile();
@@ -343,7 +371,15 @@ public class StandardAdminHandler implements AdminHandler {
             return null;
         }
 
-        processEntriesDotLog(new File(file.getParent(), "CVS")); // NOI18N
+        final File CVSdir = new File(file.getParent(), "CVS"); // NOI18N
+        synchronized (lockFor(CVSdir)) {
+            final Map<String, Entry> directoryEntries = getPendingEntries().get(directoryKey(CVSdir));
+            if (directoryEntries == null) {
+                processEntriesDotLog(CVSdir);
+            } else if (directoryEntries.containsKey(file.getName())) {
+                return directoryEntries.get(file.getName());
+            }
+        }
 
         BufferedReader reader = null;
         Entry entry = null;
@@ -469,8 +505,12 @@ public class StandardAdminHandler implements AdminHandler {
         if (entriesFile == null) {
             entriesFile = new File(parent, "CVS/Entries"); // NOI18N
         }
-        processEntriesDotLog(new File(parent, "CVS")); // NOI18N
-        updateEntriesFile(entriesFile, entry);
+        if (entriesFile.exists()) {
+            logEntryChange(entriesFile.getParentFile(), entry.getName(), entry);
+        } else {
+            processEntriesDotLog(new File(parent, "CVS")); // NOI18N
+            updateEntriesFile(entriesFile, entry);
+        }
     }
 
     /**
@@ -482,61 +522,147 @@ public class StandardAdminHandler implements AdminHandler {
      *             if an error occurs writing the Entries file
      */
     public void removeEntry(final File file) throws IOException {
-        synchronized (ksEntries) {
-            final File entriesFile = seekEntries(file.getParent());
+        final File entriesFile = seekEntries(file.getParent());
 
-            // if there is no Entries file we cannot very well remove an Entry
-            // from it
-            if (entriesFile == null) {
-                return;
-            }
+        // if there is no Entries file we cannot very well remove an Entry
+        // from it
+        if (entriesFile == null) {
+            return;
+        }
 
-            processEntriesDotLog(new File(file.getParent(), "CVS")); // NOI18N
+        logEntryChange(entriesFile.getParentFile(), file.getName(), null);
+    }
 
-            final File directory = entriesFile.getParentFile();
-            final File tempFile = new File(directory, "Entries.Backup"); // NOI18N
-            tempFile.createNewFile();
-            BufferedReader reader = null;
-            BufferedWriter writer = null;
-            try {
-                reader = new BufferedReader(new FileReader(entriesFile));
-                writer = new BufferedWriter(new FileWriter(tempFile));
-                String line;
-                // allows us to determine whether we need to put in a "D" line.
-                // We do
-                // that if we remove the last directory from the Entries file
-                boolean directoriesExist = false;
-                while ((line = reader.readLine()) != null) {
-                    final Entry currentEntry = new Entry(line);
-                    if ((currentEntry.getName() != null) &&
+    /**
+     * Records an entry change in <tt>CVS/Entries.Log</tt> and in memory. Any
+     * other directory with pending changes is flushed first, since the server
+     * has moved on from it.
+     * 
+     * @param CVSdir
+     *            the CVS directory whose Entries are changed
+     * @param name
+     *            name of the changed entry
+     * @param entry
+     *            the new entry, <code>null</code> to remove the entry
+     */
+    private void logEntryChange(final File CVSdir, final String name, final Entry entry) throws IOException {
+        final File key = directoryKey(CVSdir);
+        final Map<File, Map<String, Entry>> pending = getPendingEntries();
+        if (!pending.containsKey(key)) {
+            // flushed one by one, never hold two directory locks at once
+            for (final File other : new ArrayList<File>(pending.keySet())) {
+                processEntriesDotLog(other);
+            }
+        }
+        synchronized (lockFor(key)) {
+            Map<String, Entry> directoryEntries = pending.get(key);
+            if (directoryEntries == null) {
+                // merge a log left over by someone else before we start ours
+                processEntriesDotLog(CVSdir);
+                directoryEntries = new HashMap<String, Entry>();
+                pending.put(key, directoryEntries);
+            }
 
-                    !currentEntry.getName().equals(file.getName())) {
-                        writer.write(currentEntry.toString());
-                        writer.newLine();
-                        directoriesExist = directoriesExist || currentEntry.isDirectory();
-                    }
-                }
-                if (!directoriesExist) {
-                    writer.write("D"); // NOI18N
-                    writer.newLine();
+            final Writer writer = new BufferedWriter(new FileWriter(new File(CVSdir, "Entries.Log"), true)); // NOI18N
+            try {
+                if (entry != null) {
+                    writer.write("A " + entry.toString()); // NOI18N
+                } else {
+                    final Entry removed = new Entry();
+                    removed.setName(name);
+                    writer.write("R " + removed.toString()); // NOI18N
                 }
+                writer.write('\n');
             } finally {
-                try {
-                    if (writer != null) {
-                        writer.close();
-                    }
-                } finally {
-                    if (reader != null) {
-                        reader.close();
-                    }
+                writer.close();
+            }
+            directoryEntries.put(name, entry);
+        }
+    }
+
+    /**
+     * Writes all pending entry changes into the <tt>CVS/Entries</tt> files.
+     * Called by the client once a command finishes.
+     * 
+     * @throws IOException
+     *             if an Entries file cannot be rewritten
+     */
+    public void flush() throws IOException {
+        for (final File CVSdir : new ArrayList<File>(getPendingEntries().keySet())) {
+            processEntriesDotLog(CVSdir);
+        }
+    }
+
+    /**
+     * Servers send paths like <tt>./sub/</tt> or <tt>sub/../sub</tt>,
+     * normalize them so that every directory has exactly one key (and lock).
+     * The file system is not consulted, symbolic links are not resolved.
+     */
+    static File directoryKey(final File CVSdir) {
+        final String path = CVSdir.getAbsolutePath();
+        if ((path.indexOf(File.separator + '.') == -1) && !path.endsWith(File.separator)) {
+            return new File(path);
+        }
+        final LinkedList<String> segments = new LinkedList<String>();
+        final StringTokenizer tokenizer = new StringTokenizer(path, File.separator);
+        while (tokenizer.hasMoreTokens()) {
+            final String segment = tokenizer.nextToken();
+            if (".".equals(segment)) { // NOI18N
+                continue;
+            }
+            if ("..".equals(segment)) { // NOI18N
+                if (!segments.isEmpty()) {
+                    segments.removeLast();
                 }
+                continue;
+            }
+            segments.add(segment);
+        }
+        final StringBuilder normalized = new StringBuilder(path.length());
+        if (path.startsWith(File.separator + File.separator)) {
+            normalized.append(File.separator); // UNC
+        }
+        if (path.startsWith(File.separator)) {
+            normalized.append(File.separator);
+        }
+        for (final Iterator<String> it = segments.iterator(); it.hasNext();) {
+            normalized.append(it.next());
+            if (it.hasNext()) {
+                normalized.append(File.separator);
+            }
+        }
+        return new File(normalized.toString());
+    }
+
+    /**
+     * Returns the monitor guarding the administrative files of the given CVS
+     * directory.
+     */
+    private static Object lockFor(final File CVSdir) {
+        final File key = directoryKey(CVSdir);
+        synchronized (ksEntries) {
+            final WeakReference<File> reference = ksEntries.get(key);
+            final File lock = (reference != null) ? reference.get() : null;
+            if (lock != null) {
+                return lock;
             }
+            ksEntries.put(key, new WeakReference<File>(key));
+            return key;
+        }
+    }
 
-            if (t9yBeforeRename != null) {
-                t9yBeforeRename.run();
+    private Map<File, Map<String, Entry>> getPendingEntries() {
+        Map<File, Map<String, Entry>> pending = pendingEntries;
+        if (pending == null) {
+            synchronized (this) {
+                pending = pendingEntries;
+                if (pending == null) {
+                    pending = new ConcurrentHashMap<File, Map<String, Entry>>();
+                    pendingEntries = pending;
+                }
             }
-            FileUtils.renameFile(tempFile, entriesFile);
         }
+        return pending;
     }
 
     /**
@@ -622,7 +748,10 @@ public class StandardAdminHandler implements AdminHandler {
      */
     private void processEntriesDotLog(final File directory) throws IOException {
 
-        synchronized (ksEntries) {
+        synchronized (lockFor(directory)) {
+            if (pendingEntries != null) {
+                pendingEntries.remove(directoryKey(directory));
+            }
             final File entriesDotLogFile = new File(directory, "Entries.Log"); // NOI18N
             if (!entriesDotLogFile.exists()) {
                 return;
@@ -631,9 +760,9 @@ public class StandardAdminHandler implements AdminHandler {
             BufferedReader reader = new BufferedReader(new FileReader(entriesDotLogFile));
 
             // make up a list of changes to be made based on what is in
-            // the .log file. Then apply them all later
-            final List<Entry> additionsList = new LinkedList<Entry>();
-            final HashSet<String> removalSet = new HashSet<String>();
+            // the .log file, later lines win. Then apply them all later.
+            // A null value marks a removal.
+            final Map<String, Entry> changes = new LinkedHashMap<String, Entry>();
 
             String line;
 
@@ -641,10 +770,11 @@ public class StandardAdminHandler implements AdminHandler {
                 while ((line = reader.readLine()) != null) {
                     if (line.startsWith("A ")) { // NOI18N
                         final Entry entry = new Entry(line.substring(2));
-                        additionsList.add(entry);
+                        changes.remove(entry.getName());
+                        changes.put(entry.getName(), entry);
                     } else if (line.startsWith("R ")) { // NOI18N
                         final Entry entry = new Entry(line.substring(2));
-                        removalSet.add(entry.getName());
+                        changes.put(entry.getName(), null);
                     }
                     // otherwise ignore the line since we don't understand it
                 }
@@ -652,7 +782,7 @@ public class StandardAdminHandler implements AdminHandler {
                 reader.close();
             }
 
-            if ((additionsList.size() > 0) || (removalSet.size() > 0)) {
+            if (changes.size() > 0) {
                 final File backup = new File(directory, "Entries.Backup"); // NOI18N
                 final BufferedWriter writer = new BufferedWriter(new FileWriter(backup));
                 final File entriesFile = new File(directory, "Entries"); // NOI18N
@@ -670,23 +800,25 @@ public class StandardAdminHandler implements AdminHandler {
                             continue;
                         }
 
-                        final Entry entry = new Entry(line);
+                        Entry entry = new Entry(line);
+                        if (changes.containsKey(entry.getName())) {
+                            // replaced in place or removed
+                            entry = changes.remove(entry.getName());
+                            if (entry == null) {
+                                continue;
+                            }
+                        }
 
                         if (entry.isDirectory()) {
                             directoryCount++;
                         }
-
-                        if (!removalSet.contains(entry.getName())) {
-                            writer.write(entry.toString());
-                            writer.newLine();
-                            if (entry.isDirectory()) {
-                                directoryCount--;
-                            }
-                        }
+                        writer.write(entry.toString());
+                        writer.newLine();
                     }
-                    final Iterator<Entry> it = additionsList.iterator();
-                    while (it.hasNext()) {
-                        final Entry entry = it.next();
+                    for (final Entry entry : changes.values()) {
+                        if (entry == null) {
+                            continue;
+                        }
                         if (entry.isDirectory()) {
                             directoryCount++;
                         }
@@ -734,6 +866,8 @@ public class StandardAdminHandler implements AdminHandler {
                 return fileSet; // Premature return
             }
 
+            processEntriesDotLog(new File(directory, "CVS")); // NOI18N
+
             reader = new BufferedReader(new FileReader(entriesFile));
             String line;
 
@@ -793,7 +927,7 @@ public class StandardAdminHandler implements AdminHandler {
      * @return CVS/Entries file or null
      */
     private static File seekEntries(final File folder) {
-        synchronized (ksEntries) {
+        synchronized (lockFor(new File(folder, "CVS"))) { // NOI18N
             final File entries = new File(folder, "CVS/Entries"); // NOI18N
             if (entries.exists()) {
                 return entries;
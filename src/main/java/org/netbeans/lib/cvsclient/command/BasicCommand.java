@@ -49,12 +49,13 @@ package org.netbeans.lib.cvsclient.command;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.netbeans.lib.cvsclient.ClientServices;
 import org.netbeans.lib.cvsclient.admin.DateComparator;
@@ -353,7 +354,8 @@ public abstract class BasicCommand extends BuildableCommand {
 
     /**
      * Adds the appropriate requests for a given directory. Sends a directory
-     * request followed by as many Entry and Modified requests as required
+     * request followed by as many Entry and Modified requests as required.
+     * The directory tree is read by a {@link WorkingCopyScanner}.
      * 
      * @param directory
      *            the directory to send requests for
@@ -361,6 +363,26 @@ public abstract class BasicCommand extends BuildableCommand {
      *             if an error occurs constructing the requests
      */
     protected void addRequestsForDirectory(final File directory) throws IOException, CommandAbortedException {
+        final WorkingCopyScanner scanner = new WorkingCopyScanner(clientServices, isRecursive());
+        try {
+            addRequestsForDirectory(scanner.scan(directory));
+        } finally {
+            scanner.dispose();
+        }
+    }
+
+    /**
+     * Adds the appropriate requests for a scanned directory and, if recursive,
+     * its subdirectories in depth-first order.
+     * 
+     * @param scanned
+     *            the directory to send requests for
+     * @throws IOException
+     *             if an error occurs constructing the requests
+     */
+    protected void addRequestsForDirectory(final WorkingCopyScanner.ScannedDirectory scanned) throws IOException,
+                    CommandAbortedException {
+        final File directory = scanned.getDirectory();
         if (!clientServices.exists(directory)) {
             return;
         }
@@ -369,49 +391,20 @@ public abstract class BasicCommand extends BuildableCommand {
                             "Command aborted during request generation");
         }
 
-        addDirectoryRequest(directory);
+        addDirectoryRequest(scanned);
 
-        final File[] dirFiles = directory.listFiles();
-        List<File> localFiles;
-        if (dirFiles == null) {
-            localFiles = new ArrayList<File>(0);
-        } else {
-            localFiles = new ArrayList<File>(Arrays.asList(dirFiles));
-            localFiles.remove(new File(directory, "CVS"));
-        }
-
-        List<File> subDirectories = null;
-        if (isRecursive()) {
-            subDirectories = new LinkedList<File>();
-        }
+        final Set<File> localFiles = new LinkedHashSet<File>(Arrays.asList(scanned.getFiles()));
+        localFiles.remove(new File(directory, "CVS"));
 
         // get all the entries we know about, and process them
-        for (final Iterator<?> it = clientServices.getEntries(directory); it.hasNext();) {
-            final Entry entry = (Entry) it.next();
-            final File file = new File(directory, entry.getName());
-            if (entry.isDirectory()) {
-                if (isRecursive()) {
-                    subDirectories.add(new File(directory, entry.getName()));
-                }
-            } else {
+        for (final Entry entry : scanned.getEntries()) {
+            final File file = scanned.getFile(entry.getName());
+            if (!entry.isDirectory()) {
                 addRequestForFile(file, entry);
             }
             localFiles.remove(file);
         }
 
-        // In case that CVS folder does not exist, we need to process all
-        // directories that have CVS subfolders:
-        if (isRecursive() && !new File(directory, "CVS").exists()) {
-            final File[] subFiles = directory.listFiles();
-            if (subFiles != null) {
-                for (final File subFile : subFiles) {
-                    if (subFile.isDirectory() && new File(subFile, "CVS").exists()) {
-                        subDirectories.add(subFile);
-                    }
-                }
-            }
-        }
-
         for (final File file : localFiles) {
             final String localFileName = (file).getName();
             if (!clientServices.shouldBeIgnored(directory, localFileName)) {
@@ -420,11 +413,10 @@ public abstract class BasicCommand extends BuildableCommand {
         }
 
         if (isRecursive()) {
-            for (final File file : subDirectories) {
-                final File subdirectory = file;
+            for (final File subdirectory : scanned.getSubdirectories()) {
                 final File cvsSubDir = new File(subdirectory, "CVS"); // NOI18N
                 if (clientServices.exists(cvsSubDir)) {
-                    addRequestsForDirectory(subdirectory);
+                    addRequestsForDirectory(scanned.getSubdirectory(subdirectory));
                 }
             }
         }
@@ -494,6 +486,32 @@ public abstract class BasicCommand extends BuildableCommand {
         }
     }
 
+    /**
+     * Adds a DirectoryRequest (and maybe a StickyRequest) for a scanned
+     * directory to the request list.
+     */
+    protected final void addDirectoryRequest(final WorkingCopyScanner.ScannedDirectory directory)
+                    throws InterruptedIOException {
+        final String dir = getRelativeToLocalPathInUnixStyle(directory.getDirectory());
+
+        try {
+            addRequest(new DirectoryRequest(dir, directory.getRepository()));
+            final String tag = directory.getStickyTag();
+            if (tag != null) {
+                addRequest(new StickyRequest(tag));
+            }
+        } catch (final FileNotFoundException ex) {
+            // we can ignore this exception safely because it just means
+            // that the user has deleted a directory referenced in a
+            // CVS/Entries file
+        } catch (final InterruptedIOException ex) {
+            throw ex;
+        } catch (final IOException ex) {
+            System.err.println("An error occurred reading the respository " + "for the directory " + dir + ": " + ex);
+            ex.printStackTrace();
+        }
+    }
+
     /**
      * Add the argument requests. The argument requests are created using the
      * original set of files/directories passed in. Subclasses of this class
@@ -47,14 +47,20 @@
 package org.netbeans.lib.cvsclient.command;
 
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 import org.netbeans.lib.cvsclient.ClientServices;
+import org.netbeans.lib.cvsclient.ServerInfoCache;
 import org.netbeans.lib.cvsclient.connection.AuthenticationException;
 import org.netbeans.lib.cvsclient.event.BinaryMessageEvent;
+import org.netbeans.lib.cvsclient.event.CVSAdapter;
+import org.netbeans.lib.cvsclient.event.CVSListener;
 import org.netbeans.lib.cvsclient.event.EnhancedMessageEvent;
 import org.netbeans.lib.cvsclient.event.EventManager;
 import org.netbeans.lib.cvsclient.event.MessageEvent;
+import org.netbeans.lib.cvsclient.event.ModuleExpansionEvent;
 import org.netbeans.lib.cvsclient.event.TerminationEvent;
+import org.netbeans.lib.cvsclient.request.Request;
 
 /**
  * A class that provides common functionality for many of the CVS command that
@@ -118,6 +124,53 @@ public abstract class BuildableCommand extends Command {
         }
     }
 
+    /**
+     * Expands the modules. The requests, which end with an expand-modules
+     * request, are processed only if the expansion is not cached for the
+     * repository, otherwise the cached expansion is fired as
+     * {@link ModuleExpansionEvent}s just like the server's response would be.
+     * Only an expansion the server answered with <tt>ok</tt> and at least one
+     * module is cached. The request list is cleared afterwards.
+     * 
+     * @param modules
+     *            the unexpanded module names sent in the requests
+     * @param expandedModules
+     *            the list this command collects the expanded modules in
+     */
+    protected final void expandModules(final ClientServices client, final EventManager eventManager,
+                    final List<Request> requests, final List<String> modules, final List<String> expandedModules)
+                    throws CommandException {
+        final String cvsRoot = (client.getGlobalOptions() != null) ? client.getGlobalOptions().getCVSRoot() : null;
+        final List<String> cached = ServerInfoCache.getModuleExpansion(cvsRoot, modules);
+        if (cached != null) {
+            for (final String module : cached) {
+                eventManager.fireCVSEvent(new ModuleExpansionEvent(this, module));
+            }
+        } else {
+            final boolean[] succeeded = new boolean[1];
+            final CVSListener terminationListener = new CVSAdapter() {
+                @Override
+                public void commandTerminated(final TerminationEvent e) {
+                    succeeded[0] = !e.isError();
+                }
+            };
+            eventManager.addCVSListener(terminationListener);
+            try {
+                client.processRequests(requests);
+            } catch (final CommandException ex) {
+                throw ex;
+            } catch (final Exception ex) {
+                throw new CommandException(ex, ex.getLocalizedMessage());
+            } finally {
+                eventManager.removeCVSListener(terminationListener);
+            }
+            if (succeeded[0] && !expandedModules.isEmpty()) {
+                ServerInfoCache.putModuleExpansion(cvsRoot, modules, expandedModules);
+            }
+        }
+        requests.clear();
+    }
+
     /**
      * Method that is called while the command is being executed. Descendants
      * can override this method to return a Builder instance that will parse the
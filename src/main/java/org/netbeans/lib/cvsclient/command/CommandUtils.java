@@ -48,6 +48,8 @@ package org.netbeans.lib.cvsclient.command;
 
 import java.util.List;
 
+import org.netbeans.lib.cvsclient.util.StringInterner;
+
 /**
  * @author Thomas Singer
  */
@@ -72,7 +74,11 @@ public class CommandUtils {
      * parameter. To be used everywhere you need to have only one string
      * occupying teh memory space, eg. in Builders to have the revision number
      * strings not repeatedly in memory.
+     * 
+     * @deprecated the lookup is linear in the size of the list, use
+     *             {@link #findUniqueString(String, StringInterner)}
      */
+    @Deprecated
     public static String findUniqueString(final String name, final List<String> list) {
         if (name == null) {
             return null;
@@ -86,4 +92,13 @@ public class CommandUtils {
             return newName;
         }
     }
+
+    /**
+     * Returns the string from the interner that equals the name parameter, so
+     * that equal strings (eg. log messages in Builders) occupy the memory only
+     * once.
+     */
+    public static String findUniqueString(final String name, final StringInterner interner) {
+        return interner.intern(name);
+    }
 }
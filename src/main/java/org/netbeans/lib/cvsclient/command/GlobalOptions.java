@@ -47,11 +47,16 @@
 package org.netbeans.lib.cvsclient.command;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.netbeans.lib.cvsclient.CVSRoot;
 import org.netbeans.lib.cvsclient.request.GlobalOptionRequest;
@@ -165,6 +170,13 @@ public class GlobalOptions implements Cloneable, Serializable {
      */
     private File[] exclusions;
 
+    /**
+     * The exclusions hashed, a file is looked up together with all its
+     * parents. Replaced as a whole together with the exclusions, null if
+     * there are none.
+     */
+    private transient volatile Set<File> exclusionIndex;
+
     public GlobalOptions() {
         variables = new ArrayList<String>();
     }
@@ -179,6 +191,14 @@ public class GlobalOptions implements Cloneable, Serializable {
      */
     public void setExclusions(final File[] exclusions) {
         this.exclusions = exclusions;
+        exclusionIndex = createExclusionIndex(exclusions);
+    }
+
+    private static Set<File> createExclusionIndex(final File[] exclusions) {
+        if ((exclusions == null) || (exclusions.length == 0)) {
+            return null;
+        }
+        return new HashSet<File>(Arrays.asList(exclusions));
     }
 
     /**
@@ -202,29 +222,13 @@ public class GlobalOptions implements Cloneable, Serializable {
      * @return true if the file must not be modified on disk, false otherwise
      */
     public boolean isExcluded(final File file) {
-        if (exclusions != null) {
-            for (final File exclusion : exclusions) {
-                if (isParentOrEqual(exclusion, file)) {
-                    return true;
-                }
-            }
+        final Set<File> index = exclusionIndex;
+        if (index == null) {
+            return false;
         }
-        return false;
-    }
-
-    /**
-     * Tests parent/child relationship of files.
-     * 
-     * @param parent
-     *            file to be parent of the second parameter
-     * @param file
-     *            file to be a child of the first parameter
-     * @return true if the second parameter represents the same file as the
-     *         first parameter OR is its descendant (child)
-     */
-    private static boolean isParentOrEqual(final File parent, File file) {
-        for (; file != null; file = file.getParentFile()) {
-            if (file.equals(parent)) {
+        // the file is excluded if it or any of its parents is an exclusion
+        for (File parent = file; parent != null; parent = parent.getParentFile()) {
+            if (index.contains(parent)) {
                 return true;
             }
         }
@@ -704,4 +708,9 @@ public class GlobalOptions implements Cloneable, Serializable {
         }
     }
 
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        exclusionIndex = createExclusionIndex(exclusions);
+    }
+
 }
@@ -51,7 +51,7 @@ import java.io.OutputStream;
 
 /**
  * Contains intercepted infomation from command standard output. Actula data are
- * held in temporary file.
+ * held in temporary file or written to a {@link PipedFileSink}.
  * 
  */
 public class PipedFileInformation extends FileInfoContainer {
@@ -75,6 +75,18 @@ public class PipedFileInformation extends FileInfoContainer {
         }
     }
 
+    /**
+     * Creates an information whose data are written to the given stream
+     * instead of a temporary file.
+     * 
+     * @param sink
+     *            the stream to write to, <code>null</code> to discard the data
+     */
+    public PipedFileInformation(final OutputStream sink) {
+        tempFile = null;
+        tmpStream = sink;
+    }
+
     /**
      * Returns the original file. For piped content see {@link #getTempFile()}.
      */
@@ -143,6 +155,10 @@ public class PipedFileInformation extends FileInfoContainer {
         }
     }
 
+    /**
+     * Returns the temporary file holding the piped content,
+     * <code>null</code> if it was written to a {@link PipedFileSink}.
+     */
     public File getTempFile() {
         return tempFile;
     }
@@ -45,14 +45,16 @@ package org.netbeans.lib.cvsclient.command;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.netbeans.lib.cvsclient.event.EventManager;
 import org.netbeans.lib.cvsclient.event.FileInfoEvent;
 
 /**
  * Handles the building of "checkout with -p switch" information object and
- * storing of the checked out file to the temporary file and the firing of
- * events when complete objects are built.
+ * storing of the checked out file to the temporary file (or passing it to a
+ * {@link PipedFileSink}) and the firing of events when complete objects are
+ * built.
  * 
  * @author Milos Kleint
  */
@@ -70,6 +72,12 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
      */
     private PipedFileInformation fileInformation;
 
+    /**
+     * Whether the current file could not be opened or written. Its remaining
+     * content is dropped until the next file header.
+     */
+    private boolean skipping;
+
     /**
      * The event manager to use.
      */
@@ -85,6 +93,8 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
 
     private final TemporaryFileCreator tempFileCreator;
 
+    private final PipedFileSink sink;
+
     /**
      * Creates a new Builder for the PipeFileResponse.
      */
@@ -93,6 +103,18 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
         this.eventManager = eventManager;
         this.command = command;
         this.tempFileCreator = tempFileCreator;
+        sink = null;
+    }
+
+    /**
+     * Creates a new Builder that passes the piped files to the given sink as
+     * they arrive instead of storing them to temporary files.
+     */
+    public PipedFilesBuilder(final EventManager eventManager, final BuildableCommand command, final PipedFileSink sink) {
+        this.eventManager = eventManager;
+        this.command = command;
+        this.sink = sink;
+        tempFileCreator = null;
     }
 
     public void outputDone() {
@@ -110,22 +132,23 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
     }
 
     public void parseBytes(final byte[] bytes, final int len) {
+        if (skipping) {
+            return;
+        }
         if (fileInformation == null) {
             // HOTFIX there is no header for :local: repositories (thereare two
             // copies in this source)
             // XXX it might be dangerous because PipedFileInformation stays
             // partialy unitialized
-            try {
-                fileInformation = new PipedFileInformation(File.createTempFile("checkout", null));
-            } catch (final IOException e) {
-                e.printStackTrace();
-            }
+            fileInformation = createHeaderlessInformation();
         }
 
-        try {
-            fileInformation.addToTempFile(bytes, len);
-        } catch (final IOException exc) {
-            outputDone();
+        if (fileInformation != null) {
+            try {
+                fileInformation.addToTempFile(bytes, len);
+            } catch (final IOException exc) {
+                skipFile();
+            }
         }
     }
 
@@ -147,17 +170,13 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
                 }
             }
             // header stuff..
-        } else {
+        } else if (!skipping) {
             if (fileInformation == null) {
                 // HOTFIX there is no header for :local: repositories (thereare
                 // two copies in this source)
                 // XXX it might be dangerous because PipedFileInformation stays
                 // partialy unitialized
-                try {
-                    fileInformation = new PipedFileInformation(File.createTempFile("checkout", null));
-                } catch (final IOException e) {
-                    e.printStackTrace();
-                }
+                fileInformation = createHeaderlessInformation();
             }
             if (fileInformation != null) {
                 try {
@@ -165,7 +184,7 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
                                                                                 // BuildableCommand
                     fileInformation.addToTempFile(lineSeparator);
                 } catch (final IOException exc) {
-                    outputDone();
+                    skipFile();
                 }
             }
         }
@@ -173,17 +192,55 @@ public class PipedFilesBuilder implements Builder, BinaryBuilder {
 
     private void processFile(final String line) {
         outputDone();
+        skipping = false;
         final String filename = line.substring(ERR_CHECK.length());
         try {
-            final File temporaryFile = tempFileCreator.createTempFile(filename);
-            fileInformation = new PipedFileInformation(temporaryFile);
+            if (sink != null) {
+                final OutputStream out = sink.openFile(filename);
+                if (out == null) {
+                    // the sink does not want this file
+                    fileInformation = null;
+                    skipping = true;
+                    return;
+                }
+                fileInformation = new PipedFileInformation(out);
+            } else {
+                final File temporaryFile = tempFileCreator.createTempFile(filename);
+                fileInformation = new PipedFileInformation(temporaryFile);
+            }
         } catch (final IOException ex) {
             fileInformation = null;
+            skipping = true;
             return;
         }
         fileInformation.setFile(createFile(filename));
     }
 
+    /**
+     * Drops the current file after a failed write, it is not reported.
+     */
+    private void skipFile() {
+        try {
+            fileInformation.closeTempFile();
+        } catch (final IOException exc) {
+            // already failing
+        }
+        fileInformation = null;
+        skipping = true;
+    }
+
+    private PipedFileInformation createHeaderlessInformation() {
+        try {
+            if (sink != null) {
+                return new PipedFileInformation(sink.openFile(null));
+            }
+            return new PipedFileInformation(File.createTempFile("checkout", null)); // NOI18N
+        } catch (final IOException e) {
+            skipping = true;
+            return null;
+        }
+    }
+
     private File createFile(final String fileName) {
         final File file = new File(command.getLocalDirectory(), fileName);
         return file;
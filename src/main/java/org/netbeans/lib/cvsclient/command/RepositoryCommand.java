@@ -214,14 +214,7 @@ public abstract class RepositoryCommand extends BuildableCommand {
         expandedModules.clear();
         requests.add(new DirectoryRequest(".", client.getRepository())); // NOI18N
         requests.add(new ExpandModulesRequest());
-        try {
-            client.processRequests(requests);
-        } catch (final CommandException ex) {
-            throw ex;
-        } catch (final Exception ex) {
-            throw new CommandException(ex, ex.getLocalizedMessage());
-        }
-        requests.clear();
+        expandModules(client, em, requests, modules, expandedModules);
         postExpansionExecute(client, em);
     }
 
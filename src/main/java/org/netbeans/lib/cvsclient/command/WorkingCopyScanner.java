@@ -0,0 +1,408 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient.command;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.netbeans.lib.cvsclient.ClientServices;
+import org.netbeans.lib.cvsclient.admin.Entry;
+
+/**
+ * Lists the directories of a working copy on several threads. A versioned
+ * subdirectory is listed by a pool thread as soon as it is known, while the
+ * caller still works on its parent. The pool thread also takes the file
+ * system stats of everything listed (existence, type, modification time),
+ * the listed files answer them without touching the disk again. The caller
+ * walks the resulting {@link ScannedDirectory} tree depth-first and creates
+ * the requests in the order the server expects, waiting only for directories
+ * that have not been listed yet.
+ * <p>
+ * The administrative data (CVS/Entries, CVS/Repository, CVS/Tag) is read
+ * through the {@link ClientServices} on the calling thread only, admin
+ * handlers do not need to be thread-safe. The pool is shared by all
+ * scanners.
+ * <p>
+ * Instances must be {@link #dispose() disposed} once the requests are built.
+ */
+public class WorkingCopyScanner {
+
+    private static final int THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r, "CVS Working Copy Scanner"); // NOI18N
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final ClientServices clientServices;
+
+    private final boolean recursive;
+
+    private final List<Future<Void>> scans = new ArrayList<Future<Void>>();
+
+    /**
+     * Creates a scanner.
+     * 
+     * @param clientServices
+     *            provides the administrative data
+     * @param recursive
+     *            whether subdirectories should be scanned
+     */
+    public WorkingCopyScanner(final ClientServices clientServices, final boolean recursive) {
+        this.clientServices = clientServices;
+        this.recursive = recursive;
+    }
+
+    /**
+     * Starts listing the given directory. Its versioned subdirectories, if
+     * recursive, are listed once its entries have been read.
+     */
+    public ScannedDirectory scan(final File directory) {
+        final ScannedDirectory scanned = new ScannedDirectory(directory);
+        scanned.future = EXECUTOR.submit(scanned);
+        synchronized (scans) {
+            scans.add(scanned.future);
+        }
+        return scanned;
+    }
+
+    /**
+     * Stops all pending scans of this scanner.
+     */
+    public void dispose() {
+        synchronized (scans) {
+            for (final Future<Void> scan : scans) {
+                scan.cancel(true);
+            }
+            scans.clear();
+        }
+    }
+
+    /**
+     * A listed file that answers the file system stats taken by the pool
+     * thread. A file that has vanished meanwhile is stat'ed again.
+     */
+    private static final class ScannedFile extends File {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long lastModified;
+
+        private final boolean directory;
+
+        ScannedFile(final File file) {
+            super(file.getPath());
+            lastModified = file.lastModified();
+            directory = file.isDirectory();
+        }
+
+        @Override
+        public boolean exists() {
+            return (lastModified != 0) || super.exists();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return (lastModified != 0) ? directory : super.isDirectory();
+        }
+
+        @Override
+        public boolean isFile() {
+            return (lastModified != 0) ? !directory : super.isFile();
+        }
+
+        @Override
+        public long lastModified() {
+            return (lastModified != 0) ? lastModified : super.lastModified();
+        }
+    }
+
+    /**
+     * The administrative data of one directory.
+     */
+    public final class ScannedDirectory implements Callable<Void> {
+
+        private final File directory;
+
+        private Future<Void> future;
+
+        private File[] files;
+
+        private Map<File, File> filesByName;
+
+        private List<Entry> entries;
+
+        private IOException entriesFailure;
+
+        private String repository;
+
+        private IOException repositoryFailure;
+
+        private String stickyTag;
+
+        private boolean versioned;
+
+        private boolean loaded;
+
+        private final Map<File, ScannedDirectory> subdirectories = new LinkedHashMap<File, ScannedDirectory>();
+
+        ScannedDirectory(final File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Lists and stats the directory, runs on a pool thread.
+         */
+        public Void call() {
+            final File[] listed = directory.listFiles();
+            files = new File[(listed != null) ? listed.length : 0];
+            filesByName = new HashMap<File, File>();
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new ScannedFile(listed[i]);
+                filesByName.put(files[i], files[i]);
+            }
+            versioned = new File(directory, "CVS").exists(); // NOI18N
+            return null;
+        }
+
+        /**
+         * Reads the administrative data on the calling thread and starts
+         * listing the subdirectories.
+         */
+        private void load() throws IOException {
+            await();
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+
+            try {
+                repository = clientServices.getRepositoryForDirectory(directory.getAbsolutePath());
+            } catch (final IOException ex) {
+                repositoryFailure = ex;
+            }
+            stickyTag = clientServices.getStickyTagForDirectory(directory);
+
+            final List<Entry> list = new ArrayList<Entry>();
+            try {
+                for (final Iterator<Entry> it = clientServices.getEntries(directory); it.hasNext();) {
+                    list.add(it.next());
+                }
+            } catch (final IOException ex) {
+                entriesFailure = ex;
+            }
+            entries = Collections.unmodifiableList(list);
+
+            if (recursive) {
+                for (final Entry entry : list) {
+                    if (entry.isDirectory()) {
+                        addSubdirectory(new File(directory, entry.getName()));
+                    }
+                }
+                // In case that CVS folder does not exist, we need to process
+                // all directories that have CVS subfolders
+                if (!versioned) {
+                    for (final File file : files) {
+                        if (file.isDirectory()) {
+                            addSubdirectory(file);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void addSubdirectory(final File subdirectory) {
+            if (subdirectories.containsKey(subdirectory)
+                            || !clientServices.exists(new File(subdirectory, "CVS"))) { // NOI18N
+                return;
+            }
+            subdirectories.put(subdirectory, scan(subdirectory));
+        }
+
+        /**
+         * Waits until this directory has been listed.
+         */
+        private void await() throws IOException {
+            try {
+                future.get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (final ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                final IOException ioex = new IOException(cause.getMessage());
+                ioex.initCause(cause);
+                throw ioex;
+            }
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Returns the scanner that lists this directory, it can list other
+         * directories of the working copy as well.
+         */
+        public WorkingCopyScanner getScanner() {
+            return WorkingCopyScanner.this;
+        }
+
+        /**
+         * Returns the files and directories found in the directory, including
+         * the CVS folder, with the stats taken when the directory was listed.
+         */
+        public File[] getFiles() throws IOException {
+            await();
+            return files;
+        }
+
+        /**
+         * Returns the file of the given name in the directory, with the stats
+         * taken when the directory was listed. A file that was not listed,
+         * or was listed under a name that only equals the given one on a case
+         * insensitive file system, is returned as a plain file.
+         */
+        public File getFile(final String name) throws IOException {
+            await();
+            final File file = new File(directory, name);
+            final File listed = filesByName.get(file);
+            return ((listed != null) && listed.getName().equals(name)) ? listed : file;
+        }
+
+        /**
+         * Returns the entries of the directory.
+         * 
+         * @throws IOException
+         *             if the entries could not be read
+         */
+        public List<Entry> getEntries() throws IOException {
+            load();
+            if (entriesFailure != null) {
+                throw entriesFailure;
+            }
+            return entries;
+        }
+
+        /**
+         * Returns the repository of the directory.
+         * 
+         * @throws IOException
+         *             if the repository could not be determined
+         */
+        public String getRepository() throws IOException {
+            load();
+            if (repositoryFailure != null) {
+                throw repositoryFailure;
+            }
+            return repository;
+        }
+
+        /**
+         * Returns the sticky tag of the directory or <code>null</code>.
+         */
+        public String getStickyTag() throws IOException {
+            load();
+            return stickyTag;
+        }
+
+        /**
+         * Tells whether the directory contains a CVS folder.
+         */
+        public boolean isVersioned() throws IOException {
+            await();
+            return versioned;
+        }
+
+        /**
+         * Returns the versioned subdirectories in the order they were found:
+         * directory entries first, then (for unversioned directories) the
+         * directories that contain a CVS folder.
+         */
+        public List<File> getSubdirectories() throws IOException {
+            load();
+            return new ArrayList<File>(subdirectories.keySet());
+        }
+
+        /**
+         * Returns the scan of the given subdirectory or <code>null</code> if it
+         * is not a versioned subdirectory.
+         */
+        public ScannedDirectory getSubdirectory(final File subdirectory) throws IOException {
+            load();
+            return subdirectories.get(subdirectory);
+        }
+    }
+}
@@ -44,7 +44,6 @@
 package org.netbeans.lib.cvsclient.command.annotate;
 
 import java.io.File;
-import java.io.IOException;
 
 import org.netbeans.lib.cvsclient.command.BasicCommand;
 import org.netbeans.lib.cvsclient.command.Builder;
@@ -72,12 +71,10 @@ public class AnnotateBuilder implements Builder {
     private final EventManager eventManager;
 
     private final String localPath;
-    private final File tempDir;
 
     public AnnotateBuilder(final EventManager eventManager, final BasicCommand annotateCommand) {
         this.eventManager = eventManager;
         localPath = annotateCommand.getLocalDirectory();
-        tempDir = annotateCommand.getGlobalOptions().getTempDir();
     }
 
     public void outputDone() {
@@ -85,11 +82,6 @@ public class AnnotateBuilder implements Builder {
             return;
         }
 
-        try {
-            annotateInformation.closeTempFile();
-        } catch (final IOException exc) {
-            // ignore
-        }
         eventManager.fireCVSEvent(new FileInfoEvent(this, annotateInformation));
         annotateInformation = null;
     }
@@ -97,7 +89,7 @@ public class AnnotateBuilder implements Builder {
     public void parseLine(final String line, final boolean isErrorMessage) {
         if (isErrorMessage && line.startsWith(ANNOTATING)) {
             outputDone();
-            annotateInformation = new AnnotateInformation(tempDir);
+            annotateInformation = new AnnotateInformation();
             annotateInformation.setFile(createFile(line.substring(ANNOTATING.length())));
             return;
         }
@@ -121,18 +113,8 @@ public class AnnotateBuilder implements Builder {
 
     private void processLines(final String line) {
         if (annotateInformation != null) {
-            try {
-                annotateInformation.addToTempFile(line);
-            } catch (final IOException exc) {
-                // just ignore, should not happen.. if it does the worst thing
-                // that happens is a annotate info without data..
-            }
+            annotateInformation.addAnnotatedLine(line);
         }
-        /*
-         * AnnotateLine annLine = processLine(line); if (annotateInformation !=
-         * null && annLine != null) { annLine.setLineNum(lineNum);
-         * annotateInformation.addLine(annLine); lineNum++; }
-         */
     }
 
     public static AnnotateLine processLine(final String line) {
@@ -44,15 +44,13 @@
 
 package org.netbeans.lib.cvsclient.command.annotate;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.netbeans.lib.cvsclient.command.FileInfoContainer;
 
@@ -60,34 +58,52 @@ import org.netbeans.lib.cvsclient.command.FileInfoContainer;
  * Describes annotate information for a file. This is the result of doing a cvs
  * annotate command. The fields in instances of this object are populated by
  * response handlers.
+ * <p>
+ * Lines are stored by column: revisions, authors and dates are kept once in
+ * tables and referenced by index from every line, the contents of all lines
+ * share one UTF-8 encoded byte array. {@link AnnotateLine} objects are only
+ * created when a line is asked for.
  * 
  * @author Milos Kleint
  */
 public class AnnotateInformation extends FileInfoContainer {
+    private static final String ENCODING = "UTF-8"; // NOI18N
+
     /**
      * The file, associated with thiz.
      */
     private File file;
 
+    private final Column revisions = new Column();
+    private final Column authors = new Column();
+    private final Column dates = new Column();
+
     /**
-     * List of lines stored here.
+     * Per line indexes into the column tables.
      */
-    private List<AnnotateLine> linesList;
-
-    private Iterator<AnnotateLine> iterator;
+    private int[] revisionIndexes = new int[64];
+    private int[] authorIndexes = new int[64];
+    private int[] dateIndexes = new int[64];
 
-    private File tempFile;
-
-    private final File tempDir;
+    /**
+     * Contents of line <tt>i</tt> (0 based) are
+     * <code>content[contentOffsets[i]]</code> up to
+     * <code>contentOffsets[i + 1]</code>.
+     */
+    private byte[] content = new byte[1024];
+    private int[] contentOffsets = new int[65];
+    private int lineCount;
 
-    private BufferedOutputStream tempOutStream;
+    private int nextLine;
 
     public AnnotateInformation() {
-        tempDir = null;
     }
 
+    /**
+     * @param tempDir
+     *            ignored, the lines are not stored in a temp file any more
+     */
     public AnnotateInformation(final File tempDir) {
-        this.tempDir = tempDir;
     }
 
     /**
@@ -125,88 +141,214 @@ public class AnnotateInformation extends FileInfoContainer {
     }
 
     public void addLine(final AnnotateLine line) {
-        linesList.add(line);
+        final String lineContent = line.getContent();
+        addLine(line.getRevision(), line.getAuthor(), line.getDateString(), lineContent, 0,
+                        (lineContent != null) ? lineContent.length() : 0);
     }
 
-    public AnnotateLine getFirstLine() {
-        if (linesList == null) {
-            linesList = createLinesList();
+    /**
+     * Returns the number of annotated lines.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns an annotated line.
+     * 
+     * @param lineNum
+     *            the line's number, 1 based
+     * @throws IndexOutOfBoundsException
+     *             if there is no such line
+     */
+    public AnnotateLine getLine(final int lineNum) {
+        final int index = checkLine(lineNum);
+        final AnnotateLine line = new AnnotateLine();
+        line.setLineNum(lineNum);
+        line.setRevision(revisions.get(revisionIndexes[index]));
+        line.setAuthor(authors.get(authorIndexes[index]));
+        line.setDateString(dates.get(dateIndexes[index]));
+        line.setContent(getContent(lineNum));
+        return line;
+    }
+
+    /**
+     * Returns the revision of an annotated line without creating its
+     * {@link AnnotateLine}.
+     * 
+     * @param lineNum
+     *            the line's number, 1 based
+     */
+    public String getRevision(final int lineNum) {
+        return revisions.get(revisionIndexes[checkLine(lineNum)]);
+    }
+
+    /**
+     * Returns the author of an annotated line without creating its
+     * {@link AnnotateLine}.
+     * 
+     * @param lineNum
+     *            the line's number, 1 based
+     */
+    public String getAuthor(final int lineNum) {
+        return authors.get(authorIndexes[checkLine(lineNum)]);
+    }
+
+    /**
+     * Returns the content of an annotated line without creating its
+     * {@link AnnotateLine}.
+     * 
+     * @param lineNum
+     *            the line's number, 1 based
+     */
+    public String getContent(final int lineNum) {
+        final int index = checkLine(lineNum);
+        try {
+            return new String(content, contentOffsets[index], contentOffsets[index + 1] - contentOffsets[index],
+                            ENCODING);
+        } catch (final UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex.getMessage());
         }
-        iterator = linesList.iterator();
+    }
+
+    public AnnotateLine getFirstLine() {
+        nextLine = 1;
         return getNextLine();
     }
 
     public AnnotateLine getNextLine() {
-        if (iterator == null) {
-            return null;
-        }
-        if (!iterator.hasNext()) {
+        if ((nextLine == 0) || (nextLine > lineCount)) {
             return null;
         }
-        return iterator.next();
+        return getLine(nextLine++);
     }
 
     /**
-     * Adds the specified line to the temporary file.
+     * Parses a line of the annotate output and adds it. Lines that are not
+     * annotated are ignored.
      */
-    protected void addToTempFile(final String line) throws IOException {
-        if (tempOutStream == null) {
-            try {
-                tempFile = File.createTempFile("ann", ".cvs", tempDir); // NOI18N
-                tempFile.deleteOnExit();
-                tempOutStream = new BufferedOutputStream(new FileOutputStream(tempFile));
-            } catch (final IOException ex) {
-                // TODO
+    void addAnnotatedLine(final String line) {
+        final int indexOpeningBracket = line.indexOf('(');
+        final int indexClosingBracket = line.indexOf(')');
+        if ((indexOpeningBracket > 0) && (indexClosingBracket > indexOpeningBracket)) {
+            final String revision = line.substring(0, indexOpeningBracket).trim();
+            final String userDate = line.substring(indexOpeningBracket + 1, indexClosingBracket);
+            final int lastSpace = userDate.lastIndexOf(' ');
+            String user = userDate;
+            String date = userDate;
+            if (lastSpace > 0) {
+                user = userDate.substring(0, lastSpace).trim();
+                date = userDate.substring(lastSpace).trim();
             }
+            addLine(revision, user, date, line, Math.min(indexClosingBracket + 3, line.length()), line.length());
         }
-        tempOutStream.write(line.getBytes());
-        tempOutStream.write('\n');
     }
 
+    /**
+     * Adds the specified line.
+     * 
+     * @deprecated the lines are not stored in a temp file any more, kept for
+     *             subclasses
+     */
+    @Deprecated
+    protected void addToTempFile(final String line) throws IOException {
+        addAnnotatedLine(line);
+    }
+
+    /**
+     * @deprecated there is no temp file any more
+     */
+    @Deprecated
     protected void closeTempFile() throws IOException {
-        if (tempOutStream == null) {
-            return;
-        }
-        try {
-            tempOutStream.flush();
-        } finally {
-            tempOutStream.close();
-        }
     }
 
+    /**
+     * @deprecated there is no temp file any more
+     * @return <code>null</code>
+     */
+    @Deprecated
     public File getTempFile() {
-        return tempFile;
+        return null;
     }
 
-    private List<AnnotateLine> createLinesList() {
-        final List<AnnotateLine> toReturn = new LinkedList<AnnotateLine>();
-        BufferedReader reader = null;
-        if (tempFile == null) {
-            return toReturn;
+    private int checkLine(final int lineNum) {
+        if ((lineNum < 1) || (lineNum > lineCount)) {
+            throw new IndexOutOfBoundsException("Line " + lineNum + " of " + lineCount); // NOI18N
         }
-        try {
-            reader = new BufferedReader(new FileReader(tempFile));
-            String line = reader.readLine();
-            int lineNum = 1;
-            while (line != null) {
-                final AnnotateLine annLine = AnnotateBuilder.processLine(line);
-                if (annLine != null) {
-                    annLine.setLineNum(lineNum);
-                    toReturn.add(annLine);
-                    lineNum++;
-                }
-                line = reader.readLine();
-            }
-        } catch (final IOException exc) {
-        } finally {
-            try {
-                if (reader != null) {
-                    reader.close();
-                }
-            } catch (final IOException ex2) {
+        return lineNum - 1;
+    }
+
+    private void addLine(final String revision, final String author, final String date, final String text,
+                    final int start, final int end) {
+        if (lineCount == revisionIndexes.length) {
+            final int capacity = lineCount * 2;
+            revisionIndexes = copyOf(revisionIndexes, capacity);
+            authorIndexes = copyOf(authorIndexes, capacity);
+            dateIndexes = copyOf(dateIndexes, capacity);
+            contentOffsets = copyOf(contentOffsets, capacity + 1);
+        }
+        revisionIndexes[lineCount] = revisions.indexOf(revision);
+        authorIndexes[lineCount] = authors.indexOf(author);
+        dateIndexes[lineCount] = dates.indexOf(date);
+
+        int offset = contentOffsets[lineCount];
+        for (int i = start; i < end; i++) {
+            final char ch = text.charAt(i);
+            if (ch >= 0x80) {
+                appendEncoded(offset, text.substring(i, end));
+                return;
             }
+            ensureContentCapacity(offset + 1);
+            content[offset++] = (byte) ch;
+        }
+        contentOffsets[++lineCount] = offset;
+    }
+
+    private void appendEncoded(final int offset, final String rest) {
+        final byte[] bytes;
+        try {
+            bytes = rest.getBytes(ENCODING);
+        } catch (final UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex.getMessage());
         }
-        return toReturn;
+        ensureContentCapacity(offset + bytes.length);
+        System.arraycopy(bytes, 0, content, offset, bytes.length);
+        contentOffsets[++lineCount] = offset + bytes.length;
+    }
+
+    private void ensureContentCapacity(final int capacity) {
+        if (capacity > content.length) {
+            final byte[] larger = new byte[Math.max(capacity, content.length * 2)];
+            System.arraycopy(content, 0, larger, 0, content.length);
+            content = larger;
+        }
+    }
+
+    private static int[] copyOf(final int[] array, final int length) {
+        final int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
     }
 
+    /**
+     * Table of distinct values of one column.
+     */
+    private static final class Column {
+        private final List<String> values = new ArrayList<String>();
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+        int indexOf(final String value) {
+            final Integer index = indexes.get(value);
+            if (index != null) {
+                return index.intValue();
+            }
+            values.add(value);
+            indexes.put(value, Integer.valueOf(values.size() - 1));
+            return values.size() - 1;
+        }
+
+        String get(final int index) {
+            return values.get(index);
+        }
+    }
 }
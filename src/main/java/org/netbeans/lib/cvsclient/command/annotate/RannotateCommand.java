@@ -171,14 +171,7 @@ public class RannotateCommand extends BasicCommand {
         expandedModules.clear();
         requests.add(new DirectoryRequest(".", client.getRepository())); // NOI18N
         requests.add(new ExpandModulesRequest());
-        try {
-            client.processRequests(requests);
-        } catch (final CommandException ex) {
-            throw ex;
-        } catch (final Exception ex) {
-            throw new CommandException(ex, ex.getLocalizedMessage());
-        }
-        requests.clear();
+        expandModules(client, em, requests, modules, expandedModules);
         postExpansionExecute(client, em);
     }
 
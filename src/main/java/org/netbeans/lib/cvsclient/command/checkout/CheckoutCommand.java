@@ -61,6 +61,7 @@ import org.netbeans.lib.cvsclient.command.BasicCommand;
 import org.netbeans.lib.cvsclient.command.Builder;
 import org.netbeans.lib.cvsclient.command.CommandException;
 import org.netbeans.lib.cvsclient.command.KeywordSubstitutionOptions;
+import org.netbeans.lib.cvsclient.command.PipedFileSink;
 import org.netbeans.lib.cvsclient.command.PipedFilesBuilder;
 import org.netbeans.lib.cvsclient.command.TemporaryFileCreator;
 import org.netbeans.lib.cvsclient.command.update.UpdateBuilder;
@@ -121,6 +122,12 @@ public class CheckoutCommand extends BasicCommand implements TemporaryFileCreato
      */
     private boolean pipeToOutput;
 
+    /**
+     * Receives the piped files if set, otherwise they are stored to temporary
+     * files.
+     */
+    private PipedFileSink pipedFileSink;
+
     /**
      * Whether to prune directories, i.e. remove any directories that do not
      * contain any files. This is the -P option in command-line CVS.
@@ -344,14 +351,7 @@ public class CheckoutCommand extends BasicCommand implements TemporaryFileCreato
             requests.add(new DirectoryRequest(".", client.getRepository())); // NOI18N
             requests.add(new RootRequest(client.getRepository()));
             requests.add(new ExpandModulesRequest());
-            try {
-                client.processRequests(requests);
-            } catch (final CommandException ex) {
-                throw ex;
-            } catch (final Exception ex) {
-                throw new CommandException(ex, ex.getLocalizedMessage());
-            }
-            requests.clear();
+            expandModules(client, em, requests, modules, expandedModules);
             postExpansionExecute(client, em);
         } finally {
             this.client = null;
@@ -547,6 +547,27 @@ public class CheckoutCommand extends BasicCommand implements TemporaryFileCreato
         this.pipeToOutput = pipeToOutput;
     }
 
+    /**
+     * Getter for property pipedFileSink.
+     * 
+     * @return Value of property pipedFileSink.
+     */
+    public PipedFileSink getPipedFileSink() {
+        return pipedFileSink;
+    }
+
+    /**
+     * Setter for property pipedFileSink. If set, the files piped to output
+     * are passed to the sink as they arrive instead of being stored to
+     * temporary files.
+     * 
+     * @param pipedFileSink
+     *            New value of property pipedFileSink.
+     */
+    public void setPipedFileSink(final PipedFileSink pipedFileSink) {
+        this.pipedFileSink = pipedFileSink;
+    }
+
     /**
      * Getter for property resetStickyOnes.
      * 
@@ -707,6 +728,9 @@ public class CheckoutCommand extends BasicCommand implements TemporaryFileCreato
             return new ModuleListBuilder(eventMan, this);
         }
         if (isPipeToOutput()) {
+            if (pipedFileSink != null) {
+                return new PipedFilesBuilder(eventMan, this, pipedFileSink);
+            }
             return new PipedFilesBuilder(eventMan, this, this);
         }
         return new UpdateBuilder(eventMan, getLocalDirectory());
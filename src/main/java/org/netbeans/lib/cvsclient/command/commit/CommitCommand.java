@@ -51,18 +51,24 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 
 import org.netbeans.lib.cvsclient.ClientServices;
 import org.netbeans.lib.cvsclient.admin.Entry;
 import org.netbeans.lib.cvsclient.command.BasicCommand;
 import org.netbeans.lib.cvsclient.command.Builder;
 import org.netbeans.lib.cvsclient.command.CommandException;
+import org.netbeans.lib.cvsclient.command.WorkingCopyScanner;
 import org.netbeans.lib.cvsclient.connection.AuthenticationException;
 import org.netbeans.lib.cvsclient.event.EventManager;
 import org.netbeans.lib.cvsclient.request.ArgumentRequest;
@@ -163,75 +169,99 @@ public class CommitCommand extends BasicCommand {
         if (!directory.exists()) {
             return;
         }
+        final WorkingCopyScanner scanner = new WorkingCopyScanner(clientServices, isRecursive());
+        try {
+            addRequestsForDirectory(scanner.scan(directory));
+        } finally {
+            scanner.dispose();
+        }
+    }
+
+    /**
+     * Adds the requests for a scanned directory and, if recursive, its
+     * subdirectories in depth-first order.
+     */
+    @Override
+    protected void addRequestsForDirectory(final WorkingCopyScanner.ScannedDirectory scanned) throws IOException {
+        final File directory = scanned.getDirectory();
         // remove localPath prefix from directory. If left with
         // nothing, use dot (".") in the directory request. Also remove the
         // trailing slash
         final String dir = getRelativeToLocalPathInUnixStyle(directory);
 
         try {
-            final String repository = clientServices.getRepositoryForDirectory(directory.getAbsolutePath());
+            final String repository = scanned.getRepository();
             requests.add(new DirectoryRequest(dir, repository));
-            final String tag = clientServices.getStickyTagForDirectory(directory);
+            final String tag = scanned.getStickyTag();
             if (tag != null) {
                 requests.add(new StickyRequest(tag));
             }
+        } catch (final InterruptedIOException ex) {
+            throw ex;
         } catch (final IOException ex) {
             System.err.println("An error occurred reading the respository " + "for the directory " + dir + ": " + ex);
             ex.printStackTrace();
         }
 
-        // Obtain a set of all files known to CVS. We union
-        // this set with the set of files in the actual filesystem directory
-        // to obtain a set of files to commit (or at least attempt to commit).
-        final Set<File> set = clientServices.getAllFiles(directory);
-
-        // We must add the local files (and directories) because the above
-        // command does *not* return cvs controlled directories
-        final File[] files = directory.listFiles();
-
-        // get the union of the files in the directory and the files retrieved
-        // from the Entries file.
-        set.addAll(Arrays.asList(files));
+        // All files known to CVS that exist locally are among the local files
+        // (and directories), commit (or at least attempt to commit) them. The
+        // entries are looked up by file equality, just like getEntry does.
+        Map<File, Entry> entries;
+        try {
+            entries = new HashMap<File, Entry>();
+            for (final Entry entry : scanned.getEntries()) {
+                if (entry.getName() != null) {
+                    entries.put(new File(directory, entry.getName()), entry);
+                }
+            }
+        } catch (final InterruptedIOException ex) {
+            throw ex;
+        } catch (final IOException ex) {
+            System.err.println("An error occurred getting the " + "Entries for directory " + directory + ": " + ex);
+            ex.printStackTrace();
+            entries = Collections.emptyMap();
+        }
+        final Set<File> set = new TreeSet<File>(Arrays.asList(scanned.getFiles()));
 
         List<File> subdirectories = null;
         if (isRecursive()) {
             subdirectories = new LinkedList<File>();
         }
 
-        for (final File file2 : set) {
-            final File file = file2;
-            if (file.getName().equals("CVS")) { // NOI18N
+        for (final File listed : set) {
+            if (listed.getName().equals("CVS")) { // NOI18N
                 continue;
             }
 
-            try {
-                final Entry entry = clientServices.getEntry(file);
-                // a non-null entry means the file does exist in the
-                // Entries file for this directory
-                if (entry == null) {
-                    continue;
-                }
+            final Entry entry = entries.get(listed);
+            // a non-null entry means the file does exist in the
+            // Entries file for this directory
+            if (entry == null) {
+                continue;
+            }
+            // the file is named as in the Entries file
+            final File file = scanned.getFile(entry.getName());
 
-                // here file.isFile() is *not* used, because not existing
-                // files (removed ones) should also be sent
-                if (file.isFile()) {
-                    sendEntryAndModifiedRequests(entry, file);
-                } else if (isRecursive() && file.isDirectory()) {
-                    final File cvsSubDir = new File(file, "CVS"); // NOI18N
-                    if (cvsSubDir.exists()) {
-                        subdirectories.add(file);
-                    }
+            // here file.isFile() is *not* used, because not existing
+            // files (removed ones) should also be sent
+            if (file.isFile()) {
+                sendEntryAndModifiedRequests(entry, file);
+            } else if (isRecursive() && file.isDirectory()) {
+                final File cvsSubDir = new File(file, "CVS"); // NOI18N
+                if (cvsSubDir.exists()) {
+                    subdirectories.add(file);
                 }
-            } catch (final IOException ex) {
-                System.err.println("An error occurred getting the " + "Entry for file " + file + ": " + ex);
-                ex.printStackTrace();
             }
         }
 
         if (isRecursive()) {
-            for (final File file : subdirectories) {
-                final File subdirectory = file;
-                addRequestsForDirectory(subdirectory);
+            for (final File subdirectory : subdirectories) {
+                final WorkingCopyScanner.ScannedDirectory scannedSubdirectory = scanned.getSubdirectory(subdirectory);
+                if (scannedSubdirectory != null) {
+                    addRequestsForDirectory(scannedSubdirectory);
+                } else if (subdirectory.exists()) {
+                    addRequestsForDirectory(scanned.getScanner().scan(subdirectory));
+                }
             }
         }
     }
@@ -45,10 +45,7 @@ package org.netbeans.lib.cvsclient.command.log;
 
 import java.io.File;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.StringTokenizer;
 
 import org.netbeans.lib.cvsclient.command.BasicCommand;
@@ -57,6 +54,8 @@ import org.netbeans.lib.cvsclient.command.CommandUtils;
 import org.netbeans.lib.cvsclient.event.EventManager;
 import org.netbeans.lib.cvsclient.event.FileInfoEvent;
 import org.netbeans.lib.cvsclient.util.BugLog;
+import org.netbeans.lib.cvsclient.util.DateCodec;
+import org.netbeans.lib.cvsclient.util.StringInterner;
 
 /**
  * Handles the building of a log information object and the firing of events
@@ -106,10 +105,14 @@ public class LogBuilder implements Builder {
     private boolean addingDescription;
     private boolean addingLogMessage;
     private StringBuffer tempBuffer = null;
+    private boolean streamingRevisions;
+    private boolean headerFired;
 
-    private List<String> messageList;
-
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z"); // NOI18N
+    /**
+     * Log messages and authors repeat over files committed together, keep one
+     * copy each.
+     */
+    private final StringInterner strings = new StringInterner();
 
     public LogBuilder(final EventManager eventMan, final BasicCommand command) {
         logCommand = command;
@@ -119,14 +122,47 @@ public class LogBuilder implements Builder {
         addingLogMessage = false;
         logInfo = null;
         revision = null;
-        messageList = new ArrayList<String>(500);
+    }
+
+    /**
+     * Makes the builder fire the header of each file as a
+     * {@link LogInformation} without revisions, followed by one
+     * {@link LogRevisionInformation} per revision as soon as it is parsed.
+     * Only the revision being parsed is kept in memory then.
+     */
+    public void setStreamingRevisions(final boolean streamingRevisions) {
+        this.streamingRevisions = streamingRevisions;
     }
 
     public void outputDone() {
         if (logInfo != null) {
-            eventManager.fireCVSEvent(new FileInfoEvent(this, logInfo));
+            if (streamingRevisions) {
+                if (revision != null) {
+                    addRevision();
+                }
+                fireHeader();
+            } else {
+                eventManager.fireCVSEvent(new FileInfoEvent(this, logInfo));
+            }
             logInfo = null;
-            messageList = null;
+            strings.clear();
+        }
+    }
+
+    private void addRevision() {
+        if (streamingRevisions) {
+            fireHeader();
+            eventManager.fireCVSEvent(new FileInfoEvent(this, new LogRevisionInformation(revision)));
+        } else {
+            logInfo.addRevision(revision);
+        }
+        revision = null;
+    }
+
+    private void fireHeader() {
+        if (!headerFired) {
+            headerFired = true;
+            eventManager.fireCVSEvent(new FileInfoEvent(this, logInfo));
         }
     }
 
@@ -138,15 +174,18 @@ public class LogBuilder implements Builder {
             }
             if (addingLogMessage) {
                 addingLogMessage = false;
-                revision.setMessage(CommandUtils.findUniqueString(tempBuffer.toString(), messageList));
+                revision.setMessage(CommandUtils.findUniqueString(tempBuffer.toString(), strings));
             }
             if (revision != null) {
-                logInfo.addRevision(revision);
-                revision = null;
+                addRevision();
             }
             // fire the event and exit
             if (logInfo != null) {
-                eventManager.fireCVSEvent(new FileInfoEvent(this, logInfo));
+                if (streamingRevisions) {
+                    fireHeader();
+                } else {
+                    eventManager.fireCVSEvent(new FileInfoEvent(this, logInfo));
+                }
                 logInfo = null;
                 tempBuffer = null;
             }
@@ -229,26 +268,13 @@ public class LogBuilder implements Builder {
         }
     }
 
-    private String findUniqueString(final String name, final List<String> list) {
-        if (name == null) {
-            return null;
-        }
-        final int index = list.indexOf(name);
-        if (index >= 0) {
-            return list.get(index);
-        } else {
-            final String newName = name;
-            list.add(newName);
-            return newName;
-        }
-    }
-
     private void processRcsFile(final String line) {
         if (logInfo != null) {
             // do fire logcreated event;
         }
         logInfo = new LogInformation();
         logInfo.setRepositoryFilename(line.trim());
+        headerFired = false;
     }
 
     private void processWorkingFile(final String line) {
@@ -271,7 +297,7 @@ public class LogBuilder implements Builder {
     private void processLogMessage(final String line) {
         if (line.startsWith(SPLITTER)) {
             addingLogMessage = false;
-            revision.setMessage(findUniqueString(tempBuffer.toString(), messageList));
+            revision.setMessage(CommandUtils.findUniqueString(tempBuffer.toString(), strings));
             return;
         }
         tempBuffer.append(line + "\n"); // NOI18N
@@ -300,7 +326,9 @@ public class LogBuilder implements Builder {
 
     private void processRevisionStart(final String line) {
         if (revision != null) {
-            logInfo.addRevision(revision);
+            addRevision();
+        } else if (streamingRevisions) {
+            fireHeader();
         }
         revision = logInfo.createNewRevision(line.substring(REVISION.length()).intern());
     }
@@ -318,15 +346,13 @@ public class LogBuilder implements Builder {
                     // also add a default GMT timezone at the end, if the server
                     // already put one in this one will be ignored by the parser
                     dateString = dateString.replace('/', '-') + " +0000"; // NOI18N
-                    synchronized (dateFormat) {
-                        date = dateFormat.parse(dateString);
-                    }
+                    date = DateCodec.parseRcsDate(dateString);
                 } catch (final ParseException e) {
                     BugLog.getInstance().bug("Couldn't parse date " + dateString); // NOI18N
                 }
                 revision.setDate(date, dateString);
             } else if (token.startsWith(AUTHOR)) {
-                revision.setAuthor(token.substring(AUTHOR.length()));
+                revision.setAuthor(strings.intern(token.substring(AUTHOR.length())));
             } else if (token.startsWith(STATE)) {
                 revision.setState(token.substring(STATE.length()));
             } else if (token.startsWith(LINES)) {
@@ -44,16 +44,17 @@
 package org.netbeans.lib.cvsclient.command.log;
 
 import java.io.File;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.netbeans.lib.cvsclient.command.FileInfoContainer;
 import org.netbeans.lib.cvsclient.util.BugLog;
+import org.netbeans.lib.cvsclient.util.DateCodec;
 
 /**
  * Describes log information for a file. This is the result of doing a cvs log
@@ -63,7 +64,6 @@ import org.netbeans.lib.cvsclient.util.BugLog;
  * @author Milos Kleint
  */
 public class LogInformation extends FileInfoContainer {
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z"); // NOI18N
     private File file;
     private String repositoryFilename;
     private String headRevision;
@@ -77,6 +77,17 @@ public class LogInformation extends FileInfoContainer {
     private final List<Revision> revisions = new ArrayList<Revision>();
     private final List<SymName> symbolicNames = new ArrayList<SymName>();
 
+    /**
+     * Lookup indexes, built on the first query and rebuilt once revisions
+     * or symbolic names have been added.
+     */
+    private Map<String, Revision> revisionIndex;
+    private Map<String, List<Revision>> branchIndex;
+    private int indexedRevisions;
+    private Map<String, SymName> symNameIndex;
+    private Map<String, List<SymName>> revisionSymNameIndex;
+    private int indexedSymNames;
+
     public LogInformation() {
     }
 
@@ -291,15 +302,134 @@ public class LogInformation extends FileInfoContainer {
      * Search the revisions by number of revision. If not found, return null.
      */
     public LogInformation.Revision getRevision(final String number) {
-        final Iterator<Revision> it = revisions.iterator();
-        LogInformation.Revision item;
-        while (it.hasNext()) {
-            item = it.next();
-            if (item.getNumber().equals(number)) {
-                return item;
+        indexRevisions();
+        return revisionIndex.get(number);
+    }
+
+    /**
+     * Returns the revisions on a branch, in the order they were logged.
+     * 
+     * @param branch
+     *            a branch tag, a branch number like <tt>1.2.4</tt> or the
+     *            trunk number <tt>1</tt>
+     * @return the revisions, empty if there are none or <code>branch</code>
+     *         is not a branch
+     */
+    public List<Revision> getRevisionsOnBranch(final String branch) {
+        final String branchNumber = getBranchNumber(branch);
+        if (branchNumber == null) {
+            return Collections.emptyList();
+        }
+        indexRevisions();
+        final List<Revision> list = branchIndex.get(branchNumber);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the symbolic names that tag revisions on a branch. Branch tags
+     * are not included.
+     * 
+     * @param branch
+     *            a branch tag, a branch number like <tt>1.2.4</tt> or the
+     *            trunk number <tt>1</tt>
+     */
+    public List<SymName> getSymNamesOnBranch(final String branch) {
+        final List<SymName> list = new LinkedList<SymName>();
+        for (final Revision revision : getRevisionsOnBranch(branch)) {
+            for (final SymName item : getIndexedSymNames(revision.getNumber())) {
+                if (!item.isBranch()) {
+                    list.add(item);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Resolves a branch tag or number to the number shared by the revisions
+     * on the branch, <tt>1.2.0.4</tt> tags become <tt>1.2.4</tt>.
+     * 
+     * @return the branch number or null if <code>branch</code> does not
+     *         denote a branch
+     */
+    private String getBranchNumber(final String branch) {
+        if (branch == null) {
+            return null;
+        }
+        final SymName symName = getSymName(branch);
+        String number = (symName != null) ? symName.getRevision() : branch;
+        if ((symName != null) && symName.isBranch()) {
+            final int lastDot = number.lastIndexOf('.');
+            final int magicDot = number.lastIndexOf('.', lastDot - 1);
+            number = number.substring(0, magicDot) + number.substring(lastDot);
+        }
+        int dots = 0;
+        for (int i = 0; i < number.length(); i++) {
+            if (number.charAt(i) == '.') {
+                dots++;
+            }
+        }
+        return (dots % 2 == 0) ? number : null;
+    }
+
+    private void indexRevisions() {
+        if ((revisionIndex != null) && (indexedRevisions == revisions.size())) {
+            return;
+        }
+        revisionIndex = new HashMap<String, Revision>(revisions.size() * 2);
+        branchIndex = new HashMap<String, List<Revision>>();
+        for (final Revision item : revisions) {
+            final String number = item.getNumber();
+            if (number == null) {
+                continue;
+            }
+            if (!revisionIndex.containsKey(number)) {
+                revisionIndex.put(number, item);
+            }
+            final int lastDot = number.lastIndexOf('.');
+            if (lastDot > 0) {
+                final String branchNumber = number.substring(0, lastDot);
+                List<Revision> list = branchIndex.get(branchNumber);
+                if (list == null) {
+                    list = new ArrayList<Revision>();
+                    branchIndex.put(branchNumber, list);
+                }
+                list.add(item);
+            }
+        }
+        indexedRevisions = revisions.size();
+    }
+
+    private void indexSymNames() {
+        if ((symNameIndex != null) && (indexedSymNames == symbolicNames.size())) {
+            return;
+        }
+        symNameIndex = new HashMap<String, SymName>(symbolicNames.size() * 2);
+        revisionSymNameIndex = new HashMap<String, List<SymName>>(symbolicNames.size() * 2);
+        for (final SymName item : symbolicNames) {
+            if (!symNameIndex.containsKey(item.getName())) {
+                symNameIndex.put(item.getName(), item);
+            }
+            List<SymName> list = revisionSymNameIndex.get(item.getRevision());
+            if (list == null) {
+                list = new ArrayList<SymName>(1);
+                revisionSymNameIndex.put(item.getRevision(), list);
             }
+            list.add(item);
         }
-        return null;
+        indexedSymNames = symbolicNames.size();
+    }
+
+    private List<SymName> getIndexedSymNames(final String revNumber) {
+        indexSymNames();
+        final List<SymName> list = revisionSymNameIndex.get(revNumber);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
     }
 
     /**
@@ -322,16 +452,7 @@ public class LogInformation extends FileInfoContainer {
      * null.
      */
     public List<SymName> getSymNamesForRevision(final String revNumber) {
-        final Iterator<SymName> it = symbolicNames.iterator();
-        LogInformation.SymName item;
-        final List<SymName> list = new LinkedList<SymName>();
-        while (it.hasNext()) {
-            item = it.next();
-            if (item.getRevision().equals(revNumber)) {
-                list.add(item);
-            }
-        }
-        return list;
+        return new LinkedList<SymName>(getIndexedSymNames(revNumber));
     }
 
     /**
@@ -339,15 +460,8 @@ public class LogInformation extends FileInfoContainer {
      * return null.
      */
     public LogInformation.SymName getSymName(final String symName) {
-        final Iterator<SymName> it = symbolicNames.iterator();
-        LogInformation.SymName item;
-        while (it.hasNext()) {
-            item = it.next();
-            if (item.getName().equals(symName)) {
-                return item;
-            }
-        }
-        return null;
+        indexSymNames();
+        return symNameIndex.get(symName);
     }
 
     public Revision createNewRevision(final String number) {
@@ -478,8 +592,7 @@ public class LogInformation extends FileInfoContainer {
         }
 
         /**
-         * @deprecated This method uses a static parser to parse dates which is
-         *             not thread safe, use #setDate instead
+         * @deprecated use #setDate instead
          */
         @Deprecated
         public void setDateString(String dateString) {
@@ -497,9 +610,7 @@ public class LogInformation extends FileInfoContainer {
                 // also add a default GMT timezone at the end, if the server
                 // already put one in this one will be ignored by the parser
                 dateString = dateString.replace('/', '-') + " +0000";
-                synchronized (DATE_FORMAT) {
-                    date = DATE_FORMAT.parse(dateString);
-                }
+                date = DateCodec.parseRcsDate(dateString);
             } catch (final Exception ex) {
                 BugLog.getInstance().bug("Couldn't parse date " + dateString);
             }
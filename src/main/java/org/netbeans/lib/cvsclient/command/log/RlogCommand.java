@@ -118,6 +118,11 @@ public class RlogCommand extends BasicCommand {
      */
     private boolean headerAndDescOnly;
 
+    /**
+     * Holds value of property streamingRevisions.
+     */
+    private boolean streamingRevisions;
+
     public RlogCommand() {
         resetCVSCommand();
     }
@@ -542,6 +547,30 @@ public class RlogCommand extends BasicCommand {
      */
     @Override
     public Builder createBuilder(final EventManager eventMan) {
-        return new LogBuilder(eventMan, this);
+        final LogBuilder builder = new LogBuilder(eventMan, this);
+        builder.setStreamingRevisions(streamingRevisions);
+        return builder;
+    }
+
+    /**
+     * Getter for property streamingRevisions.
+     * 
+     * @return Value of property streamingRevisions.
+     */
+    public boolean isStreamingRevisions() {
+        return streamingRevisions;
+    }
+
+    /**
+     * Setter for property streamingRevisions. If set, the header of each file
+     * is fired as a {@link LogInformation} without revisions, followed by a
+     * {@link LogRevisionInformation} event for every revision as it is
+     * received, so that memory use does not grow with the history of a file.
+     * 
+     * @param streamingRevisions
+     *            New value of property streamingRevisions.
+     */
+    public void setStreamingRevisions(final boolean streamingRevisions) {
+        this.streamingRevisions = streamingRevisions;
     }
 }
@@ -47,8 +47,11 @@
 package org.netbeans.lib.cvsclient.command.status;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.netbeans.lib.cvsclient.command.FileInfoContainer;
 import org.netbeans.lib.cvsclient.file.FileStatus;
@@ -79,6 +82,15 @@ public class StatusInformation extends FileInfoContainer {
 
     private StringBuffer symNamesBuffer;
 
+    /**
+     * Lookup indexes over {@link #tags}, built on the first query and rebuilt
+     * once the tags have changed.
+     */
+    private Map<String, SymName> tagIndex;
+    private Map<String, List<SymName>> revisionIndex;
+    private List<SymName> indexedTags;
+    private int indexedSize;
+
     public StatusInformation() {
         setAllExistingTags(null);
     }
@@ -311,17 +323,11 @@ public class StatusInformation extends FileInfoContainer {
      * null.
      */
     public List<SymName> getSymNamesForRevision(final String revNumber) {
-        if (tags == null) {
-            createSymNames();
-        }
-
+        indexTags();
         final List<SymName> list = new LinkedList<SymName>();
-
-        for (final SymName symName : tags) {
-            final StatusInformation.SymName item = symName;
-            if (item.getRevision().equals(revNumber)) {
-                list.add(item);
-            }
+        final List<SymName> indexed = revisionIndex.get(revNumber);
+        if (indexed != null) {
+            list.addAll(indexed);
         }
         return list;
     }
@@ -331,17 +337,32 @@ public class StatusInformation extends FileInfoContainer {
      * return null.
      */
     public StatusInformation.SymName getSymNameForTag(final String tagName) {
+        indexTags();
+        return tagIndex.get(tagName);
+    }
+
+    private void indexTags() {
         if (tags == null) {
             createSymNames();
         }
-
-        for (final SymName symName : tags) {
-            final StatusInformation.SymName item = symName;
-            if (item.getTag().equals(tagName)) {
-                return item;
+        if ((tagIndex != null) && (indexedTags == tags) && (indexedSize == tags.size())) {
+            return;
+        }
+        tagIndex = new HashMap<String, SymName>(tags.size() * 2);
+        revisionIndex = new HashMap<String, List<SymName>>(tags.size() * 2);
+        for (final SymName item : tags) {
+            if (!tagIndex.containsKey(item.getTag())) {
+                tagIndex.put(item.getTag(), item);
+            }
+            List<SymName> list = revisionIndex.get(item.getRevision());
+            if (list == null) {
+                list = new ArrayList<SymName>(1);
+                revisionIndex.put(item.getRevision(), list);
             }
+            list.add(item);
         }
-        return null;
+        indexedTags = tags;
+        indexedSize = tags.size();
     }
 
     /**
@@ -62,6 +62,7 @@ import org.netbeans.lib.cvsclient.command.Builder;
 import org.netbeans.lib.cvsclient.command.CommandException;
 import org.netbeans.lib.cvsclient.command.CommandUtils;
 import org.netbeans.lib.cvsclient.command.KeywordSubstitutionOptions;
+import org.netbeans.lib.cvsclient.command.PipedFileSink;
 import org.netbeans.lib.cvsclient.command.PipedFilesBuilder;
 import org.netbeans.lib.cvsclient.command.TemporaryFileCreator;
 import org.netbeans.lib.cvsclient.connection.AuthenticationException;
@@ -124,6 +125,12 @@ public class UpdateCommand extends BasicCommand implements TemporaryFileCreator
      */
     private boolean pipeToOutput;
 
+    /**
+     * Receives the piped files if set, otherwise they are stored to temporary
+     * files.
+     */
+    private PipedFileSink pipedFileSink;
+
     /**
      * Resets any sticky tags/dates/options imposed on the updated file(s).
      */
@@ -182,6 +189,9 @@ public class UpdateCommand extends BasicCommand implements TemporaryFileCreator
     @Override
     public Builder createBuilder(final EventManager eventManager) {
         if (isPipeToOutput()) {
+            if (pipedFileSink != null) {
+                return new PipedFilesBuilder(eventManager, this, pipedFileSink);
+            }
             return new PipedFilesBuilder(eventManager, this, this);
         }
         return new UpdateBuilder(eventManager, getLocalDirectory());
@@ -378,6 +388,27 @@ public class UpdateCommand extends BasicCommand implements TemporaryFileCreator
         this.pipeToOutput = pipeToOutput;
     }
 
+    /**
+     * Getter for property pipedFileSink.
+     * 
+     * @return Value of property pipedFileSink.
+     */
+    public PipedFileSink getPipedFileSink() {
+        return pipedFileSink;
+    }
+
+    /**
+     * Setter for property pipedFileSink. If set, the files piped to output
+     * are passed to the sink as they arrive instead of being stored to
+     * temporary files.
+     * 
+     * @param pipedFileSink
+     *            New value of property pipedFileSink.
+     */
+    public void setPipedFileSink(final PipedFileSink pipedFileSink) {
+        this.pipedFileSink = pipedFileSink;
+    }
+
     /**
      * Getter for property resetStickyOnes.
      * 
@@ -0,0 +1,131 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.connection;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Socket input stream that blocks in reads but still reacts to
+ * {@link Thread#interrupt()}. The socket is given a short read timeout; each
+ * time it expires the interrupt status of the reading thread is checked and
+ * the read is retried, so an idle connection costs one wake up per timeout
+ * instead of constant polling.
+ */
+public class InterruptibleSocketInputStream extends FilterInputStream {
+
+    /**
+     * Default interval (ms) in which blocked reads check the interrupt status.
+     */
+    public static final int DEFAULT_WAKEUP_INTERVAL = 500;
+
+    /**
+     * Wraps the socket's input stream and sets up its read timeout.
+     * 
+     * @param socket
+     *            the connected socket
+     * @param wakeupInterval
+     *            how often (ms) a blocked read checks the interrupt status
+     */
+    public InterruptibleSocketInputStream(final Socket socket, final int wakeupInterval) throws IOException {
+        super(socket.getInputStream());
+        try {
+            socket.setSoTimeout(wakeupInterval);
+        } catch (final SocketException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            checkInterrupted();
+            try {
+                return in.read();
+            } catch (final SocketTimeoutException ex) {
+                // wake up, check interrupt status and retry
+            }
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        while (true) {
+            checkInterrupted();
+            try {
+                return in.read(b, off, len);
+            } catch (final SocketTimeoutException ex) {
+                // wake up, check interrupt status and retry
+            }
+        }
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        while (true) {
+            checkInterrupted();
+            try {
+                return in.skip(n);
+            } catch (final SocketTimeoutException ex) {
+                // wake up, check interrupt status and retry
+            }
+        }
+    }
+
+    /**
+     * @throws InterruptedIOException
+     *             if the current thread was interrupted; the interrupt status
+     *             stays set
+     */
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException();
+        }
+    }
+}
@@ -54,6 +54,7 @@ import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.text.MessageFormat;
+import java.util.Arrays;
 
 import javax.net.SocketFactory;
 
@@ -114,6 +115,15 @@ public class PServerConnection extends AbstractConnection {
 
     private static final String AUTHENTICATION_FAILED_RESPONSE_RAW = "I HATE YOU\n"; // NOI18N
 
+    /**
+     * Warm connections that were not used for a minute are closed.
+     */
+    private static final long WARM_CONNECTION_IDLE_TIMEOUT = 60 * 1000;
+
+    private static final PServerConnectionPool POOL = new PServerConnectionPool(WARM_CONNECTION_IDLE_TIMEOUT);
+
+    private static volatile int warmConnections;
+
     /**
      * The user name to use.
      */
@@ -198,6 +208,42 @@ public class PServerConnection extends AbstractConnection {
         setPort(port);
     }
 
+    /**
+     * Sets how many authenticated connections are kept ready per repository,
+     * so that {@link #open} does not wait for the connect and authentication
+     * round trips. Each warm connection is used by a single {@link #open} and
+     * replaced in the background. Zero, the default, disables the pool and
+     * closes the warm connections.
+     * 
+     * @param count
+     *            the number of warm connections per repository
+     */
+    public static void setWarmConnections(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count: " + count); // NOI18N
+        }
+        warmConnections = count;
+        if (count == 0) {
+            POOL.closeIdle();
+        }
+    }
+
+    /**
+     * Returns how many authenticated connections are kept ready per
+     * repository.
+     */
+    public static int getWarmConnections() {
+        return warmConnections;
+    }
+
+    /**
+     * Closes all warm connections. They are warmed up again by the next
+     * {@link #open} if the pool is enabled.
+     */
+    public static void closeWarmConnections() {
+        POOL.closeIdle();
+    }
+
     /**
      * Authenticate a connection with the server, using the specified postamble
      * and preamble.
@@ -229,8 +275,9 @@ public class PServerConnection extends AbstractConnection {
             final LoggedDataOutputStream outputStream = new LoggedDataOutputStream(bos);
             setOutputStream(outputStream);
 
-            final BufferedInputStream bis = new BufferedInputStream(socket.getInputStream(), 32768);
-            final LoggedDataInputStream inputStream = new LoggedDataInputStream(bis);
+            final BufferedInputStream bis = new BufferedInputStream(new InterruptibleSocketInputStream(socket,
+                            InterruptibleSocketInputStream.DEFAULT_WAKEUP_INTERVAL), 32768);
+            final LoggedDataInputStream inputStream = new LoggedDataInputStream(bis, true);
             setInputStream(inputStream);
 
             outputStream.writeBytes(preamble, "US-ASCII");
@@ -343,15 +390,56 @@ public class PServerConnection extends AbstractConnection {
      * Authenticate with the server and open a channel of communication with the
      * server. This Client will call this method before interacting with the
      * server. It is up to implementing classes to ensure that they are
-     * configured to talk to the server (e.g. port number etc.).
+     * configured to talk to the server (e.g. port number etc.). A warm
+     * connection is used if there is one, see {@link #setWarmConnections}.
      * 
      * @throws AutenticationException
      *             if the connection with the server cannot be established
      */
     public void open() throws AuthenticationException, CommandAbortedException {
+        final int warmCount = warmConnections;
+        if (warmCount > 0) {
+            final PServerConnection warm = POOL.take(getPoolKey(), this, warmCount);
+            if (warm != null) {
+                socket = warm.socket;
+                setInputStream(warm.getInputStream());
+                setOutputStream(warm.getOutputStream());
+                return;
+            }
+        }
+        authenticate();
+    }
+
+    /**
+     * Opens the connection without looking into the pool.
+     */
+    void authenticate() throws AuthenticationException, CommandAbortedException {
         openConnection(OPEN_PREAMBLE, OPEN_POSTAMBLE);
     }
 
+    /**
+     * Creates an unopened connection to the same repository with the same
+     * credentials.
+     */
+    PServerConnection copy() {
+        final PServerConnection copy = new PServerConnection();
+        copy.socketFactory = socketFactory;
+        copy.setUserName(userName);
+        copy.setEncodedPassword(encodedPassword);
+        copy.setHostName(hostName);
+        copy.setPort(port);
+        copy.setRepository(getRepository());
+        return copy;
+    }
+
+    /**
+     * Connections with equal keys are interchangeable after authentication.
+     */
+    private Object getPoolKey() {
+        return Arrays.asList(new Object[] { hostName, Integer.valueOf(port), getRepository(), userName,
+                        getEncodedPasswordNotNull(), socketFactory });
+    }
+
     /**
      * Get the username.
      */
@@ -0,0 +1,295 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.connection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pool of authenticated but not yet used pserver connections. A pserver
+ * connection carries a single command, so connections are never given back:
+ * every connection taken from the pool is replaced by a new one that
+ * authenticates in the background, and the next {@link PServerConnection#open}
+ * for the same repository skips the connect and authentication round trips.
+ * Warm connections are keyed by everything the authentication depends on and
+ * closed after an idle timeout by a daemon thread that runs only while the
+ * pool is not empty.
+ */
+final class PServerConnectionPool {
+
+    private static final class Warm {
+        final PServerConnection connection;
+        final long since;
+
+        Warm(final PServerConnection connection, final long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+
+    private static final class Slot {
+        final LinkedList<Warm> idle = new LinkedList<Warm>();
+        int pending;
+        int target;
+    }
+
+    private final long idleTimeout;
+    private final Executor executor;
+    private final Map<Object, Slot> slots = new HashMap<Object, Slot>();
+    private Thread reaper;
+
+    /**
+     * @param idleTimeout
+     *            milliseconds after which an unused warm connection is closed
+     */
+    PServerConnectionPool(final long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "CVS pserver connection warmer"); // NOI18N
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Takes a warm connection for the key and starts authenticating
+     * replacements so that <tt>warmCount</tt> connections are warm or being
+     * warmed up again.
+     * 
+     * @param key
+     *            identifies everything the authentication depends on
+     * @param template
+     *            the connection replacements are copied from
+     * @return an open connection, or <code>null</code> if there is none and
+     *         the caller has to open one itself
+     */
+    PServerConnection take(final Object key, final PServerConnection template, final int warmCount) {
+        final List<Warm> stale = new ArrayList<Warm>();
+        PServerConnection connection = null;
+        int refill;
+        synchronized (this) {
+            Slot slot = slots.get(key);
+            if (slot == null) {
+                slot = new Slot();
+                slots.put(key, slot);
+            }
+            slot.target = warmCount;
+            final long idleSince = System.currentTimeMillis() - idleTimeout;
+            while ((connection == null) && !slot.idle.isEmpty()) {
+                final Warm warm = slot.idle.removeFirst();
+                if ((warm.since < idleSince) || !isUsable(warm.connection)) {
+                    stale.add(warm);
+                } else {
+                    connection = warm.connection;
+                }
+            }
+            refill = Math.max(0, warmCount - slot.idle.size() - slot.pending);
+            slot.pending += refill;
+            if ((refill == 0) && slot.idle.isEmpty() && (slot.pending == 0)) {
+                slots.remove(key);
+            }
+        }
+        close(stale);
+        for (int i = 0; i < refill; i++) {
+            warmUp(key, template.copy());
+        }
+        return connection;
+    }
+
+    /**
+     * Closes all warm connections. Connections still being warmed up are
+     * closed once authenticated instead of being pooled, until the next
+     * {@link #take} asks for warm connections again.
+     */
+    void closeIdle() {
+        final List<Warm> idle;
+        synchronized (this) {
+            for (final Slot slot : slots.values()) {
+                slot.target = 0;
+            }
+            idle = removeIdle(Long.MAX_VALUE);
+        }
+        close(idle);
+    }
+
+    /**
+     * Returns the number of warm connections.
+     */
+    synchronized int size() {
+        int size = 0;
+        for (final Slot slot : slots.values()) {
+            size += slot.idle.size();
+        }
+        return size;
+    }
+
+    private void warmUp(final Object key, final PServerConnection connection) {
+        executor.execute(new Runnable() {
+            public void run() {
+                boolean opened = false;
+                try {
+                    connection.authenticate();
+                    opened = true;
+                } catch (final Exception ex) {
+                    // the next open() authenticates by itself and reports the failure
+                }
+                synchronized (PServerConnectionPool.this) {
+                    final Slot slot = slots.get(key);
+                    if (slot != null) {
+                        slot.pending--;
+                        if (opened && (slot.idle.size() < slot.target)) {
+                            slot.idle.addLast(new Warm(connection, System.currentTimeMillis()));
+                            startReaper();
+                            return;
+                        }
+                        if (slot.idle.isEmpty() && (slot.pending == 0)) {
+                            slots.remove(key);
+                        }
+                    }
+                }
+                if (opened) {
+                    close(connection);
+                }
+            }
+        });
+    }
+
+    /**
+     * A pserver sends nothing before the first request, anything readable
+     * means the server gave up on the connection.
+     */
+    private static boolean isUsable(final PServerConnection connection) {
+        if (!connection.isOpen() || connection.socket.isClosed() || connection.socket.isInputShutdown()) {
+            return false;
+        }
+        try {
+            return connection.getInputStream().available() == 0;
+        } catch (final IOException ex) {
+            return false;
+        }
+    }
+
+    private synchronized List<Warm> removeIdle(final long idleBefore) {
+        final List<Warm> idle = new ArrayList<Warm>();
+        for (final Iterator<Slot> slotIt = slots.values().iterator(); slotIt.hasNext();) {
+            final Slot slot = slotIt.next();
+            for (final Iterator<Warm> it = slot.idle.iterator(); it.hasNext();) {
+                final Warm warm = it.next();
+                if (warm.since < idleBefore) {
+                    it.remove();
+                    idle.add(warm);
+                }
+            }
+            if (slot.idle.isEmpty() && (slot.pending == 0)) {
+                slotIt.remove();
+            }
+        }
+        return idle;
+    }
+
+    private static void close(final List<Warm> warms) {
+        for (final Warm warm : warms) {
+            close(warm.connection);
+        }
+    }
+
+    private static void close(final PServerConnection connection) {
+        try {
+            connection.close();
+        } catch (final IOException ex) {
+            // the connection is dropped anyway
+        }
+    }
+
+    private synchronized boolean isEmpty() {
+        for (final Slot slot : slots.values()) {
+            if (!slot.idle.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = new Thread(new Runnable() {
+            public void run() {
+                reap();
+            }
+        }, "CVS pserver connection pool"); // NOI18N
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private void reap() {
+        while (true) {
+            synchronized (this) {
+                if (isEmpty()) {
+                    reaper = null;
+                    return;
+                }
+                try {
+                    wait(Math.max(1, idleTimeout / 2));
+                } catch (final InterruptedException ex) {
+                    reaper = null;
+                    return;
+                }
+            }
+            close(removeIdle(System.currentTimeMillis() - idleTimeout));
+        }
+    }
+}
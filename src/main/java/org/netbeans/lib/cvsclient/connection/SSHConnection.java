@@ -44,6 +44,7 @@
 
 package org.netbeans.lib.cvsclient.connection;
 
+import java.io.BufferedOutputStream;
 import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
@@ -51,7 +52,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.net.SocketFactory;
 
@@ -70,6 +82,10 @@ import com.jcraft.jsch.UserInfo;
 
 /**
  * Provides SSH tunnel for :ext: connection method. 
+ * <p>
+ * Authenticated sessions are pooled, opening a connection to a host that was
+ * connected recently with the same credentials only opens a new channel for
+ * <tt>cvs server</tt> instead of a new SSH handshake.
  * 
  * @author Maros Sandor
  */
@@ -80,6 +96,52 @@ public class SSHConnection extends AbstractConnection {
     private static final String CVS_SERVER_COMMAND = System.getenv("CVS_SERVER") != null?
         System.getenv("CVS_SERVER") + " server": "cvs server";  // NOI18N
 
+    /**
+     * Channels opened on one pooled session at a time, OpenSSH allows 10 by default.
+     */
+    private static final int MAX_CHANNELS_PER_SESSION = 8;
+
+    /**
+     * Unused pooled sessions are disconnected after 5 minutes.
+     */
+    private static final long SESSION_IDLE_TIMEOUT = 5 * 60 * 1000;
+
+    private static final SSHSessionPool<Session> SESSION_POOL =
+        new SSHSessionPool<Session>(MAX_CHANNELS_PER_SESSION, SESSION_IDLE_TIMEOUT);
+
+    /**
+     * How long {@link #verify()} waits for the server to answer, 1 minute.
+     */
+    private static final long VERIFY_TIMEOUT = 60 * 1000;
+
+    /**
+     * Runs the protocol checks of {@link #verify()}, the channel streams have no read timeout.
+     */
+    private static final ExecutorService VERIFY_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CVS SSH Verifier"); // NOI18N
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Salts the hashed secrets in the session keys, created once per VM.
+     */
+    private static final byte[] SESSION_KEY_SALT = new byte[16];
+
+    static {
+        new SecureRandom().nextBytes(SESSION_KEY_SALT);
+    }
+
+    private static volatile boolean sessionPooling = true;
+
+    /**
+     * Size of the buffer requests are collected in until the client flushes, same as
+     * for pserver connections.
+     */
+    static final int BUFFER_SIZE = 32768;
+
     private final String host;
     private final int port;
     private final String username;
@@ -93,6 +155,7 @@ public class SSHConnection extends AbstractConnection {
      */
     private transient Session session;
     private transient ChannelExec channel;
+    private transient SSHSessionPool.Lease<Session> lease;
 
     /**
      * Creates new SSH connection object.
@@ -112,65 +175,157 @@ public class SSHConnection extends AbstractConnection {
         this.connectionIdentity = connectionIdentity;
     }
 
+    /**
+     * Enables or disables sharing of SSH sessions among connections. Enabled by default.
+     * Disabling it does not close pooled sessions, see {@link #closeIdleSessions}.
+     */
+    public static void setSessionPooling(boolean enabled) {
+        sessionPooling = enabled;
+    }
+
+    /**
+     * Disconnects all pooled SSH sessions that are not used by an open connection.
+     */
+    public static void closeIdleSessions() {
+        SESSION_POOL.closeIdle();
+    }
+
     public void open() throws AuthenticationException, CommandAbortedException {
+        while (true) {
+            try {
+                if (sessionPooling) {
+                    lease = SESSION_POOL.acquire(getSessionKey(), new JSchSessionFactory());
+                    session = lease.getSession();
+                } else {
+                    session = createSession();
+                }
+            } catch (JSchException e) {
+                throw new AuthenticationException(e, "SSH connection failed.");
+            }
+
+            try {
+                channel = (ChannelExec) session.openChannel("exec"); // NOI18N
+                channel.setCommand(CVS_SERVER_COMMAND);
+                setInputStream(new LoggedDataInputStream(new SshChannelInputStream(channel), true));
+                setOutputStream(createOutputStream(channel.getOutputStream()));
+                channel.connect();
+                return;
+            } catch (JSchException e) {
+                // a pooled session may have died meanwhile, retry with another one
+                boolean retry = lease != null && lease.isReused();
+                disconnect(true);
+                if (!retry) {
+                    IOException ioe = new IOException("SSH connection failed.");
+                    ioe.initCause(e);
+                    throw new AuthenticationException(ioe, "Opening SSH channel failed.");
+                }
+            } catch (IOException e) {
+                disconnect(true);
+                throw new AuthenticationException(e, "Opening SSH channel failed.");
+            }
+        }
+    }
+
+    /**
+     * Wraps the channel's output. Requests are buffered until the client flushes before
+     * it waits for a response, so every batch of requests is handed to the channel at once.
+     */
+    static LoggedDataOutputStream createOutputStream(OutputStream channelOutput) {
+        return new LoggedDataOutputStream(new BufferedOutputStream(channelOutput, BUFFER_SIZE));
+    }
 
+    private Session createSession() throws JSchException {
         Properties props = new Properties();
         props.put("StrictHostKeyChecking", "no"); // NOI18N
         props.put("PreferredAuthentications", "publickey,password");
         
-        
         JSch jsch = new JSch();
+        Session session = jsch.getSession(username, host, port);
+        session.setUserInfo(new SSHUserInfo());
+        String knownHostsFile = connectionIdentity.getKnownHostsFile();
+        String privateKeyPath = connectionIdentity.getPrivateKeyPath();
+        String separator = System.getProperty("file.separator");
+
+        knownHostsFile = knownHostsFile.replace("/", separator).replace("\\", separator);
+        privateKeyPath = privateKeyPath.replace("/", separator).replace("\\", separator);
+
+        jsch.setKnownHosts(knownHostsFile);
+        jsch.addIdentity(privateKeyPath, connectionIdentity.getPrivateKeyPassword());
+
+        session.setSocketFactory(new SocketFactoryBridge(SocketFactory.getDefault()));
+        session.setConfig(props);
+        session.connect();
+        return session;
+    }
+
+    /**
+     * Sessions are only shared by connections that would authenticate the same way.
+     * The secrets take part as a salted hash only, the pool keys outlive the connection.
+     */
+    private String getSessionKey() {
+        StringBuffer key = new StringBuffer();
+        key.append(username).append('@').append(host).append(':').append(port);
+        key.append('\n').append(connectionIdentity.getPrivateKeyPath());
+        key.append('\n').append(connectionIdentity.getKnownHostsFile());
+        key.append('\n');
+        MessageDigest digest;
         try {
-             session = jsch.getSession(username, host, port);
-             session.setUserInfo(new SSHUserInfo());
-             String knownHostsFile = connectionIdentity.getKnownHostsFile();
-             String privateKeyPath = connectionIdentity.getPrivateKeyPath();
-             String separator = System.getProperty("file.separator");
- 
-             knownHostsFile = knownHostsFile.replace("/", separator).replace("\\", separator);
-             privateKeyPath = privateKeyPath.replace("/", separator).replace("\\", separator);
- 
-             
-             jsch.setKnownHosts(knownHostsFile);
-             jsch.addIdentity(privateKeyPath, connectionIdentity.getPrivateKeyPassword());
- 
-             session.setSocketFactory(new SocketFactoryBridge(SocketFactory.getDefault()));
-             session.setConfig(props);
-             session.connect();
-         } catch (JSchException e) {
-            throw new AuthenticationException(e, "SSH connection failed.");
+            digest = MessageDigest.getInstance("SHA-256"); // NOI18N
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-256
+            throw new IllegalStateException(e);
         }
-        
-        try {
-            channel = (ChannelExec) session.openChannel("exec"); // NOI18N
-            channel.setCommand(CVS_SERVER_COMMAND);
-            setInputStream(new LoggedDataInputStream(new SshChannelInputStream(channel)));
-            setOutputStream(new LoggedDataOutputStream(channel.getOutputStream()));
-            channel.connect();
-        } catch (JSchException e) {
-            IOException ioe = new IOException("SSH connection failed.");
-            ioe.initCause(e);
-            throw new AuthenticationException(ioe, "Opening SSH channel failed.");
-        } catch (IOException e) {
-            throw new AuthenticationException(e, "Opening SSH channel failed.");
+        digest.update(SESSION_KEY_SALT);
+        updateDigest(digest, connectionIdentity.getPrivateKeyPassword());
+        updateDigest(digest, password);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    private static void updateDigest(MessageDigest digest, String secret) {
+        if (secret == null) {
+            digest.update((byte) 0);
+        } else {
+            byte[] bytes = secret.getBytes();
+            digest.update((byte) 1);
+            digest.update((byte) (bytes.length >>> 24));
+            digest.update((byte) (bytes.length >>> 16));
+            digest.update((byte) (bytes.length >>> 8));
+            digest.update((byte) bytes.length);
+            digest.update(bytes);
         }
     }
 
     /**
      * Verifies that we can successfuly connect to the SSH server and run 'cvs server' command on it.
+     * Returns as soon as the server answered the valid-requests request, fails as soon as the
+     * command exited or if there is no answer within a minute.
      * 
      * @throws AuthenticationException if connection to the SSH server cannot be established (network problem)
      */ 
     public void verify() throws AuthenticationException {
         try {
             open();
+            Future<Void> verification = VERIFY_EXECUTOR.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    verifyProtocol();
+                    return null;
+                }
+            });
             try {
-                Thread.sleep(1000);
+                verification.get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new AuthenticationException(e.getCause(), "Error executing "+ CVS_SERVER_COMMAND +" on server. Set CVS_SERVER environment variable properly.");
+            } catch (TimeoutException e) {
+                // disconnecting the channel ends the pending read
+                verification.cancel(true);
+                throw new AuthenticationException("Timeout, no response from server.", "Timeout, no response from server.");
             } catch (InterruptedException e) {
-                // ignore
-            }
-            if (channel.getExitStatus() != -1) {
-                throw new AuthenticationException(CVS_SERVER_COMMAND, "Error executing "+ CVS_SERVER_COMMAND +" on server. Set CVS_SERVER environment variable properly.");
+                verification.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new AuthenticationException(e, "Verification of the SSH connection interrupted.");
             }
             close();
         } catch (CommandAbortedException e) {
@@ -178,22 +333,41 @@ public class SSHConnection extends AbstractConnection {
         } catch (IOException e) {
             throw new AuthenticationException(e,"SSH: close connection failed.");
         } finally {
-            reset();
+            disconnect(false);
         }
     }
 
     private void reset() {
         session = null;
         channel = null;
+        lease = null;
         setInputStream(null);
         setOutputStream(null);
     }
-    
-    public void close() throws IOException {
-        if (session != null) session.disconnect();
+
+    /**
+     * Closes the channel and gives the session back to the pool, or disconnects it if
+     * it is not pooled.
+     * 
+     * @param failed whether the session must not be used again
+     */
+    private void disconnect(boolean failed) {
         if (channel != null) channel.disconnect();
+        if (lease != null) {
+            if (failed) {
+                SESSION_POOL.invalidate(lease);
+            } else {
+                SESSION_POOL.release(lease);
+            }
+        } else if (session != null) {
+            session.disconnect();
+        }
         reset();
     }
+    
+    public void close() throws IOException {
+        disconnect(false);
+    }
 
     public boolean isOpen() {
         return channel != null && channel.isConnected();
@@ -211,6 +385,31 @@ public class SSHConnection extends AbstractConnection {
         modifier.modifyOutputStream(getOutputStream());
     }
 
+    /**
+     * Connects pooled sessions.
+     */
+    private class JSchSessionFactory implements SSHSessionPool.SessionFactory<Session> {
+        public Session connect() throws JSchException {
+            return createSession();
+        }
+
+        public boolean isAlive(Session session) {
+            if (!session.isConnected()) {
+                return false;
+            }
+            try {
+                session.sendKeepAliveMsg();
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        public void disconnect(Session session) {
+            session.disconnect();
+        }
+    }
+
     /**
      * Provides JSch with SSH password.
      */ 
@@ -289,6 +488,18 @@ public class SSHConnection extends AbstractConnection {
             return super.available();
         }
 
+        /**
+         * Blocks until data arrive. The channel's piped stream wakes up
+         * regularly and reacts to thread interrupts on its own.
+         */
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                checkChannelState();
+            }
+            return read;
+        }
+
         private void checkChannelState() throws IOException {
             int exitStatus = channel.getExitStatus();
             if (exitStatus > 0 || exitStatus < -1) throw new IOException("Error executing " + CVS_SERVER_COMMAND + " on server.\\\\nSet CVS_SERVER environment variable properly.");
@@ -0,0 +1,324 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.connection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Pool of authenticated SSH sessions shared by {@link SSHConnection}s. Every
+ * connection opens its own channel, sessions are keyed by everything that
+ * takes part in the authentication so a session is only shared by
+ * connections that would have authenticated the same way. A session carries
+ * at most a limited number of channels at a time, unused sessions are
+ * disconnected after an idle timeout by a daemon thread that runs only while
+ * the pool is not empty.
+ * 
+ * @param <S>
+ *            the session type, {@link com.jcraft.jsch.Session} outside of
+ *            tests
+ */
+final class SSHSessionPool<S> {
+
+    /**
+     * Creates, checks and disconnects sessions.
+     */
+    interface SessionFactory<S> {
+
+        /**
+         * Creates an authenticated session.
+         */
+        S connect() throws JSchException;
+
+        /**
+         * Health check before a pooled session is handed out again.
+         */
+        boolean isAlive(S session);
+
+        void disconnect(S session);
+    }
+
+    /**
+     * A session handed out by {@link SSHSessionPool#acquire}, to be given back
+     * by {@link SSHSessionPool#release} or {@link SSHSessionPool#invalidate}.
+     */
+    static final class Lease<S> {
+        private final PooledSession<S> pooled;
+        private final boolean reused;
+        private boolean returned;
+
+        Lease(final PooledSession<S> pooled, final boolean reused) {
+            this.pooled = pooled;
+            this.reused = reused;
+        }
+
+        S getSession() {
+            return pooled.session;
+        }
+
+        /**
+         * Returns whether the session was pooled already, as opposed to
+         * connected for this lease.
+         */
+        boolean isReused() {
+            return reused;
+        }
+    }
+
+    private static final class PooledSession<S> {
+        final String key;
+        final S session;
+        final SessionFactory<S> factory;
+        int channels;
+        long lastUsed;
+        boolean broken;
+
+        PooledSession(final String key, final S session, final SessionFactory<S> factory) {
+            this.key = key;
+            this.session = session;
+            this.factory = factory;
+        }
+    }
+
+    private final int maxChannels;
+    private final long idleTimeout;
+    private final Map<String, List<PooledSession<S>>> sessions = new HashMap<String, List<PooledSession<S>>>();
+    private Thread reaper;
+
+    /**
+     * @param maxChannels
+     *            maximum number of channels opened on one session at a time
+     * @param idleTimeout
+     *            milliseconds after which an unused session is disconnected
+     */
+    SSHSessionPool(final int maxChannels, final long idleTimeout) {
+        this.maxChannels = maxChannels;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns a healthy pooled session for the key, or connects a new one.
+     * 
+     * @param key
+     *            identifies everything the authentication depends on
+     */
+    Lease<S> acquire(final String key, final SessionFactory<S> factory) throws JSchException {
+        while (true) {
+            final PooledSession<S> candidate = reserve(key);
+            if (candidate == null) {
+                break;
+            }
+            // the health check talks to the server, it happens outside of the lock
+            final boolean alive = candidate.factory.isAlive(candidate.session);
+            final Lease<S> lease = new Lease<S>(candidate, true);
+            synchronized (this) {
+                if (alive && !candidate.broken) {
+                    return lease;
+                }
+                candidate.broken = true;
+            }
+            release(lease);
+        }
+
+        // the handshake happens outside of the lock
+        final S session = factory.connect();
+        synchronized (this) {
+            final PooledSession<S> pooled = new PooledSession<S>(key, session, factory);
+            pooled.channels = 1;
+            List<PooledSession<S>> list = sessions.get(key);
+            if (list == null) {
+                list = new ArrayList<PooledSession<S>>(2);
+                sessions.put(key, list);
+            }
+            list.add(pooled);
+            startReaper();
+            return new Lease<S>(pooled, false);
+        }
+    }
+
+    /**
+     * Takes a channel of a pooled session for the key that is not known to be
+     * broken and has a channel left, returns null if there is none.
+     */
+    private synchronized PooledSession<S> reserve(final String key) {
+        final List<PooledSession<S>> list = sessions.get(key);
+        if (list != null) {
+            for (final PooledSession<S> pooled : list) {
+                if (!pooled.broken && (pooled.channels < maxChannels)) {
+                    pooled.channels++;
+                    return pooled;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives back a session whose channel was closed, it stays connected
+     * until it is idle for too long.
+     */
+    void release(final Lease<S> lease) {
+        PooledSession<S> disconnect = null;
+        synchronized (this) {
+            if (lease.returned) {
+                return;
+            }
+            lease.returned = true;
+            final PooledSession<S> pooled = lease.pooled;
+            pooled.channels--;
+            pooled.lastUsed = System.currentTimeMillis();
+            if ((pooled.channels == 0) && pooled.broken) {
+                remove(pooled);
+                disconnect = pooled;
+            }
+        }
+        if (disconnect != null) {
+            disconnect.factory.disconnect(disconnect.session);
+        }
+    }
+
+    /**
+     * Gives back a session that failed. It is not handed out any more and is
+     * disconnected once its other channels are closed.
+     */
+    void invalidate(final Lease<S> lease) {
+        synchronized (this) {
+            lease.pooled.broken = true;
+        }
+        release(lease);
+    }
+
+    /**
+     * Disconnects all sessions that are not in use.
+     */
+    void closeIdle() {
+        disconnect(removeIdle(Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of pooled sessions.
+     */
+    synchronized int size() {
+        int size = 0;
+        for (final List<PooledSession<S>> list : sessions.values()) {
+            size += list.size();
+        }
+        return size;
+    }
+
+    private synchronized List<PooledSession<S>> removeIdle(final long idleBefore) {
+        final List<PooledSession<S>> idle = new ArrayList<PooledSession<S>>();
+        for (final Iterator<List<PooledSession<S>>> lists = sessions.values().iterator(); lists.hasNext();) {
+            final List<PooledSession<S>> list = lists.next();
+            for (final Iterator<PooledSession<S>> it = list.iterator(); it.hasNext();) {
+                final PooledSession<S> pooled = it.next();
+                if ((pooled.channels == 0) && (pooled.lastUsed < idleBefore)) {
+                    it.remove();
+                    idle.add(pooled);
+                }
+            }
+            if (list.isEmpty()) {
+                lists.remove();
+            }
+        }
+        return idle;
+    }
+
+    private void remove(final PooledSession<S> pooled) {
+        final List<PooledSession<S>> list = sessions.get(pooled.key);
+        if (list != null) {
+            list.remove(pooled);
+            if (list.isEmpty()) {
+                sessions.remove(pooled.key);
+            }
+        }
+    }
+
+    private static <S> void disconnect(final List<PooledSession<S>> sessions) {
+        for (final PooledSession<S> pooled : sessions) {
+            try {
+                pooled.factory.disconnect(pooled.session);
+            } catch (final RuntimeException ex) {
+                // the session is dropped anyway
+            }
+        }
+    }
+
+    private void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = new Thread(new Runnable() {
+            public void run() {
+                reap();
+            }
+        }, "CVS SSH session pool"); // NOI18N
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private void reap() {
+        while (true) {
+            synchronized (this) {
+                if (sessions.isEmpty()) {
+                    reaper = null;
+                    return;
+                }
+                try {
+                    wait(Math.max(1, idleTimeout / 2));
+                } catch (final InterruptedException ex) {
+                    reaper = null;
+                    return;
+                }
+            }
+            disconnect(removeIdle(System.currentTimeMillis() - idleTimeout));
+        }
+    }
+}
@@ -47,15 +47,29 @@
 package org.netbeans.lib.cvsclient.event;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.netbeans.lib.cvsclient.ClientServices;
+import org.netbeans.lib.cvsclient.util.BugLog;
 
 /**
  * This class is responsible for firing CVS events to registered listeners. It
  * can either fire events as they are generated or wait until a suitable
  * checkpoint and fire many events at once. This can prevent event storms from
  * degrading system performance.
+ * <p>
+ * Listeners added by {@link #addCVSListener(CVSListener)} are called on the
+ * thread that fires the event. Listeners added by
+ * {@link #addAsynchronousCVSListener(CVSListener)} are called in batches on a
+ * dispatch thread, in the order the events were fired, so that slow listeners
+ * do not hold up reading server responses.
  * 
  * @author Robert Greig
  */
@@ -63,12 +77,34 @@ public class EventManager implements Serializable {
 
     private static final long serialVersionUID = -2208537796604025512L;
 
+    private static final CVSListener[] NO_LISTENERS = new CVSListener[0];
+
+    /**
+     * Number of events queued for asynchronous listeners before firing
+     * blocks.
+     */
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /**
+     * Maximum number of events delivered to asynchronous listeners in one go.
+     */
+    private static final int BATCH_SIZE = 256;
+
     /**
      * Registered listeners for events. This is an array for performance when
      * firing events. We take the hit when adding or removing listeners - that
-     * should be a relatively rare occurrence.
+     * should be a relatively rare occurrence. The array is replaced, never
+     * modified, so firing needs neither a lock nor a copy.
      */
-    private CVSListener[] listeners;
+    private volatile CVSListener[] listeners = NO_LISTENERS;
+
+    /**
+     * Listeners called on the dispatch thread, copy-on-write like
+     * {@link #listeners}.
+     */
+    private volatile CVSListener[] asyncListeners = NO_LISTENERS;
+
+    private transient Dispatcher dispatcher;
 
     /**
      * Holds value of property fireEnhancedEventSet. If true, the library fires
@@ -102,17 +138,7 @@ public class EventManager implements Serializable {
      *            the listener to add
      */
     public synchronized void addCVSListener(final CVSListener listener) {
-        if ((listeners == null) || (listeners.length == 0)) {
-            listeners = new CVSListener[1];
-        } else {
-            // allocate a new array and copy existing listeners
-            final CVSListener[] l = new CVSListener[listeners.length + 1];
-            for (int i = 0; i < listeners.length; i++) {
-                l[i] = listeners[i];
-            }
-            listeners = l;
-        }
-        listeners[listeners.length - 1] = listener;
+        listeners = add(listeners, listener);
     }
 
     /**
@@ -122,25 +148,54 @@ public class EventManager implements Serializable {
      *            the listener to remove
      */
     public synchronized void removeCVSListener(final CVSListener listener) {
-        // TODO: test this method!!
-        if (listeners.length == 1) {
-            listeners = null;
-        } else {
-            final CVSListener[] l = new CVSListener[listeners.length - 1];
-            int i = 0;
-            while (i < l.length) {
-                if (listeners[i] == listener) {
-                    for (int j = i + 1; j < listeners.length; j++) {
-                        l[j - 1] = listeners[j];
-                    }
-                    break;
-                } else {
-                    l[i] = listeners[i];
+        listeners = remove(listeners, listener);
+    }
+
+    /**
+     * Add a listener that is called on the dispatch thread. Events are queued
+     * for it when fired; firing only waits if the listener falls more than a
+     * few thousand events behind.
+     * 
+     * @param listener
+     *            the listener to add
+     * @see #flushAsynchronousEvents()
+     */
+    public synchronized void addAsynchronousCVSListener(final CVSListener listener) {
+        asyncListeners = add(asyncListeners, listener);
+    }
+
+    /**
+     * Remove a listener added by
+     * {@link #addAsynchronousCVSListener(CVSListener)}. Events already queued
+     * are not delivered to it any more.
+     * 
+     * @param listener
+     *            the listener to remove
+     */
+    public synchronized void removeAsynchronousCVSListener(final CVSListener listener) {
+        asyncListeners = remove(asyncListeners, listener);
+    }
+
+    private static CVSListener[] add(final CVSListener[] array, final CVSListener listener) {
+        final CVSListener[] l = new CVSListener[array.length + 1];
+        System.arraycopy(array, 0, l, 0, array.length);
+        l[array.length] = listener;
+        return l;
+    }
+
+    private static CVSListener[] remove(final CVSListener[] array, final CVSListener listener) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == listener) {
+                if (array.length == 1) {
+                    return NO_LISTENERS;
                 }
-                i++;
+                final CVSListener[] l = new CVSListener[array.length - 1];
+                System.arraycopy(array, 0, l, 0, i);
+                System.arraycopy(array, i + 1, l, i, l.length - i);
+                return l;
             }
-            listeners = l;
         }
+        return array;
     }
 
     /**
@@ -150,8 +205,10 @@ public class EventManager implements Serializable {
      *            the event to send
      */
     public void fireCVSEvent(final CVSEvent e) {
+        final CVSListener[] l = listeners;
+        final boolean queue = asyncListeners.length > 0;
         // if we have no listeners, then there is nothing to do
-        if ((listeners == null) || (listeners.length == 0)) {
+        if ((l.length == 0) && !queue) {
             return;
         }
         if (e instanceof FileInfoEvent) {
@@ -160,15 +217,136 @@ public class EventManager implements Serializable {
                 return;
             }
         }
-        CVSListener[] l = null;
-        synchronized (listeners) {
-            l = new CVSListener[listeners.length];
-            System.arraycopy(listeners, 0, l, 0, l.length);
-        }
 
         for (final CVSListener element : l) {
             e.fireEvent(element);
         }
+        if (queue) {
+            getDispatcher().enqueue(e);
+        }
+    }
+
+    /**
+     * Waits until all events fired so far have been delivered to the
+     * asynchronous listeners.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void flushAsynchronousEvents() throws InterruptedException {
+        final Dispatcher d;
+        synchronized (this) {
+            d = dispatcher;
+        }
+        if (d != null) {
+            d.flush();
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (listeners == null) {
+            listeners = NO_LISTENERS;
+        }
+        if (asyncListeners == null) {
+            asyncListeners = NO_LISTENERS;
+        }
+    }
+
+    private synchronized Dispatcher getDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = new Dispatcher();
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Delivers queued events to the asynchronous listeners. The thread is
+     * started on demand and ends once the queue stays empty for a while.
+     */
+    private final class Dispatcher implements Runnable {
+
+        private static final long IDLE_TIMEOUT = 1000;
+
+        private final BlockingQueue<CVSEvent> queue = new ArrayBlockingQueue<CVSEvent>(QUEUE_CAPACITY);
+        private final List<CVSEvent> batch = new ArrayList<CVSEvent>(BATCH_SIZE);
+
+        /**
+         * Number of events enqueued and delivered, guarded by this.
+         */
+        private long enqueued;
+        private long delivered;
+        private boolean running;
+
+        void enqueue(final CVSEvent e) {
+            synchronized (this) {
+                enqueued++;
+                if (!running) {
+                    running = true;
+                    final Thread thread = new Thread(this, "CVS event dispatcher"); // NOI18N
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+            try {
+                queue.put(e);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                synchronized (this) {
+                    enqueued--;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void flush() throws InterruptedException {
+            final long target = enqueued;
+            while (delivered < target) {
+                wait();
+            }
+        }
+
+        public void run() {
+            while (true) {
+                try {
+                    final CVSEvent first = queue.poll(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        synchronized (this) {
+                            if (queue.isEmpty() && (delivered == enqueued)) {
+                                running = false;
+                                return;
+                            }
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    deliver();
+                } catch (final InterruptedException ex) {
+                    // keep delivering
+                }
+            }
+        }
+
+        private void deliver() {
+            try {
+                for (final CVSEvent e : batch) {
+                    for (final CVSListener listener : asyncListeners) {
+                        try {
+                            e.fireEvent(listener);
+                        } catch (final RuntimeException ex) {
+                            BugLog.getInstance().showException(ex);
+                        }
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    delivered += batch.size();
+                    notifyAll();
+                }
+                batch.clear();
+            }
+        }
     }
 
     /**
@@ -56,7 +56,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Date;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import org.netbeans.lib.cvsclient.command.GlobalOptions;
 import org.netbeans.lib.cvsclient.request.Request;
@@ -87,6 +92,11 @@ public class DefaultFileHandler implements FileHandler {
      */
     private static final int CHUNK_SIZE = 32768;
 
+    /**
+     * The gzip header as written by <code>GZIPOutputStream</code>.
+     */
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
     /**
      * The date the next file written should be marked as being modified on.
      */
@@ -98,6 +108,11 @@ public class DefaultFileHandler implements FileHandler {
 
     private GlobalOptions globalOptions;
 
+    private int transmitCompressionLevel;
+    private Deflater deflater;
+    private CompressedBuffer compressed;
+    private byte[] transmitChunk;
+
     private final boolean ignoreModeFromServer = System.getProperty("netbeans.cvs.ignoreModeFromServer") != null;
 
     /**
@@ -175,6 +190,22 @@ public class DefaultFileHandler implements FileHandler {
         return new FileInputStream(file);
     }
 
+    /**
+     * Tells whether files received from the server can be written straight to
+     * their destination. This is the case when the received bytes need no
+     * processing besides the line-ending conversion done by the
+     * {@link WriteTextFilePreprocessor}. The received bytes are staged in a
+     * temp file in the CVS folder next to the destination and renamed onto
+     * it once complete, so a transfer failing midway leaves the previous file
+     * intact. {@link #createOutputStream(File)} is not used for them.
+     * Subclasses that override {@link #getProcessedInputStream(File)} or
+     * {@link #createOutputStream(File)} must return <code>false</code> so that
+     * the data is stored in a temp file and read back through them.
+     */
+    protected boolean isDirectWriteSupported() {
+        return true;
+    }
+
     /**
      * Get any requests that must be sent before commands are sent, to init this
      * file handler.
@@ -207,33 +238,9 @@ public class DefaultFileHandler implements FileHandler {
             fileToSend = transmitTextFilePreprocessor.getPreprocessedTextFile(file);
         }
 
-        BufferedInputStream bis = null;
         try {
-            // first write the length of the file
-            long length = fileToSend.length();
-            dos.writeBytes(getLengthString(length), "US-ASCII");
-
-            bis = new BufferedInputStream(new FileInputStream(fileToSend));
-            // now transmit the file itself
-            final byte[] chunk = new byte[CHUNK_SIZE];
-            while (length > 0) {
-                final int bytesToRead = (length >= CHUNK_SIZE) ? CHUNK_SIZE : (int) length;
-                final int count = bis.read(chunk, 0, bytesToRead);
-                if (count == -1) {
-                    throw new IOException("Unexpected end of stream from " + fileToSend + ".");
-                }
-                length -= count;
-                dos.write(chunk, 0, count);
-            }
-            dos.flush();
+            transmitFile(fileToSend, dos);
         } finally {
-            if (bis != null) {
-                try {
-                    bis.close();
-                } catch (final IOException ex) {
-                    // ignore
-                }
-            }
             if (transmitTextFilePreprocessor != null) {
                 transmitTextFilePreprocessor.cleanup(fileToSend);
             }
@@ -254,35 +261,195 @@ public class DefaultFileHandler implements FileHandler {
             throw new IllegalArgumentException("File is either null or " + "does not exist. Cannot transmit.");
         }
 
-        BufferedInputStream bis = null;
+        transmitFile(file, dos);
+    }
+
+    /**
+     * Writes the length line followed by the file contents. When a
+     * compression level is set and the file is not empty the contents are
+     * sent in the gzipped <tt>z&lt;length&gt;</tt> form. The stream is not
+     * flushed, the client flushes before it waits for a response so that the
+     * files of one request batch go out together.
+     */
+    private void transmitFile(final File file, final LoggedDataOutputStream dos) throws IOException {
+        final long length = file.length();
+        if ((transmitCompressionLevel != 0) && (length > 0)) {
+            transmitCompressedFile(file, length, dos);
+            return;
+        }
 
+        dos.writeBytes(getLengthString(length), "US-ASCII");
+        final InputStream is = new FileInputStream(file);
         try {
-            bis = new BufferedInputStream(new FileInputStream(file));
-            // first write the length of the file
-            long length = file.length();
+            copy(is, file, length, dos);
+        } finally {
+            try {
+                is.close();
+            } catch (final IOException ex) {
+                // ignore
+            }
+        }
+    }
 
-            dos.writeBytes(getLengthString(length), "US-ASCII");
+    /**
+     * Sends the file gzipped. The compressed contents are collected in a
+     * reusable buffer because their length has to precede them; if they do
+     * not fit, the length is found by a counting pass and the file is
+     * compressed a second time straight into the stream.
+     */
+    private void transmitCompressedFile(final File file, final long length, final LoggedDataOutputStream dos)
+                    throws IOException {
+        if (deflater == null) {
+            deflater = new Deflater(transmitCompressionLevel, true);
+            compressed = new CompressedBuffer();
+        }
+        deflater.setLevel(transmitCompressionLevel);
+
+        compressed.reset();
+        compress(file, length, compressed);
+        dos.writeBytes("z" + getLengthString(compressed.size()), "US-ASCII"); // NOI18N
+        if (compressed.isComplete()) {
+            compressed.writeTo(dos);
+        } else {
+            compress(file, length, dos);
+        }
+    }
 
-            // now transmit the file itself
-            final byte[] chunk = new byte[CHUNK_SIZE];
+    /**
+     * Writes the file in gzip format, see RFC 1952.
+     */
+    private void compress(final File file, long length, final OutputStream out) throws IOException {
+        final byte[] chunk = getTransmitChunk();
+        final byte[] deflated = compressed.getDeflateChunk();
+        final CRC32 crc = compressed.getCrc();
+        deflater.reset();
+        crc.reset();
+        out.write(GZIP_HEADER);
+
+        final InputStream is = new FileInputStream(file);
+        try {
+            final long total = length;
             while (length > 0) {
                 final int bytesToRead = (length >= CHUNK_SIZE) ? CHUNK_SIZE : (int) length;
-                final int count = bis.read(chunk, 0, bytesToRead);
+                final int count = is.read(chunk, 0, bytesToRead);
                 if (count == -1) {
                     throw new IOException("Unexpected end of stream from " + file + ".");
                 }
                 length -= count;
-                dos.write(chunk, 0, count);
+                crc.update(chunk, 0, count);
+                deflater.setInput(chunk, 0, count);
+                while (!deflater.needsInput()) {
+                    out.write(deflated, 0, deflater.deflate(deflated, 0, deflated.length));
+                }
             }
-            dos.flush();
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(deflated, 0, deflater.deflate(deflated, 0, deflated.length));
+            }
+            writeInt((int) crc.getValue(), out);
+            writeInt((int) total, out);
         } finally {
-            if (bis != null) {
-                try {
-                    bis.close();
-                } catch (final IOException ex) {
-                    ex.printStackTrace();
+            try {
+                is.close();
+            } catch (final IOException ex) {
+                // ignore
+            }
+        }
+    }
+
+    private static void writeInt(final int value, final OutputStream out) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    private void copy(final InputStream is, final File file, long length, final OutputStream out) throws IOException {
+        final byte[] chunk = getTransmitChunk();
+        while (length > 0) {
+            final int bytesToRead = (length >= CHUNK_SIZE) ? CHUNK_SIZE : (int) length;
+            final int count = is.read(chunk, 0, bytesToRead);
+            if (count == -1) {
+                throw new IOException("Unexpected end of stream from " + file + ".");
+            }
+            length -= count;
+            out.write(chunk, 0, count);
+        }
+    }
+
+    private byte[] getTransmitChunk() {
+        if (transmitChunk == null) {
+            transmitChunk = new byte[CHUNK_SIZE];
+        }
+        return transmitChunk;
+    }
+
+    /**
+     * Sets the compression level for files sent to the server. Must only be
+     * set once the server accepted the <tt>gzip-file-contents</tt> request.
+     * 
+     * @param level
+     *            the compression level, 0 to send files uncompressed
+     */
+    public void setTransmitCompressionLevel(final int level) {
+        transmitCompressionLevel = level;
+    }
+
+    /**
+     * Collects compressed file contents up to {@link #MAX_BUFFERED_SIZE}
+     * bytes and keeps counting beyond it. Reused for all files sent through
+     * this handler.
+     */
+    private static final class CompressedBuffer extends OutputStream {
+
+        private static final int MAX_BUFFERED_SIZE = 1024 * 1024;
+
+        private final byte[] deflateChunk = new byte[CHUNK_SIZE];
+        private final CRC32 crc = new CRC32();
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private long size;
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] getDeflateChunk() {
+            return deflateChunk;
+        }
+
+        CRC32 getCrc() {
+            return crc;
+        }
+
+        long size() {
+            return size;
+        }
+
+        boolean isComplete() {
+            return size <= MAX_BUFFERED_SIZE;
+        }
+
+        void writeTo(final OutputStream out) throws IOException {
+            out.write(buffer, 0, (int) size);
+        }
+
+        @Override
+        public void write(final int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            if (size + len <= MAX_BUFFERED_SIZE) {
+                if (size + len > buffer.length) {
+                    final byte[] larger = new byte[(int) Math.min(MAX_BUFFERED_SIZE,
+                                    Math.max(size + len, buffer.length * 2L))];
+                    System.arraycopy(buffer, 0, larger, 0, (int) size);
+                    buffer = larger;
                 }
+                System.arraycopy(b, off, buffer, (int) size, len);
             }
+            size += len;
         }
     }
 
@@ -339,7 +506,40 @@ public class DefaultFileHandler implements FileHandler {
         final boolean readOnly = resetReadOnly(file, mode);
 
         createNewFile(file);
-        
+
+        if (isDirectWriteSupported()) {
+            // the processor converts line endings while the bytes arrive
+            final InputStream content = new ContentInputStream(dis, path, length);
+            File staged = null;
+            try {
+                staged = createStagingFile(file);
+                final File target = staged;
+                processor.copyTextFileToLocation(content, staged, new OutputStreamProvider() {
+                    public OutputStream createOutputStream() throws IOException {
+                        return new FileOutputStream(target);
+                    }
+                });
+                content.close();
+            } catch (final IOException ex) {
+                discard(content, staged);
+                throw ex;
+            } catch (final RuntimeException ex) {
+                discard(content, staged);
+                throw ex;
+            }
+            replace(staged, file);
+
+            if (modifiedDate != null) {
+                file.setLastModified(modifiedDate.getTime());
+                modifiedDate = null;
+            }
+            setFileMode(mode, file);
+            if (readOnly) {
+                FileUtils.setFileReadOnly(file, true);
+            }
+            return;
+        }
+
         // For CRLF conversion, we have to read the file
         // into a temp file, then do the conversion. This is because we cannot
         // perform a sequence of readLines() until we've read the file from
@@ -429,9 +629,35 @@ public class DefaultFileHandler implements FileHandler {
         final boolean readOnly = resetReadOnly(file, mode);
 
         createNewFile(file);
-        // FUTURE: optimisation possible - no need to use a temp file if there
-        // is no post processing required (e.g. unzipping). So perhaps enhance
-        // the interface to allow this stage to be optional
+
+        if (isDirectWriteSupported()) {
+            final InputStream content = new ContentInputStream(dis, path, length);
+            File staged = null;
+            try {
+                staged = createStagingFile(file);
+                writeBinaryFileDirectly(staged, content, length);
+                content.close();
+            } catch (final IOException ex) {
+                discard(content, staged);
+                throw ex;
+            } catch (final RuntimeException ex) {
+                discard(content, staged);
+                throw ex;
+            }
+            replace(staged, file);
+
+            if (modifiedDate != null) {
+                file.setLastModified(modifiedDate.getTime());
+                modifiedDate = null;
+            }
+            setFileMode(mode, file);
+            if (readOnly) {
+                FileUtils.setFileReadOnly(file, true);
+            }
+            return;
+        }
+
+        // the data must be post processed (e.g. unzipped), store it first
         final File cvsDir = new File(file.getParentFile(), "CVS");
         cvsDir.mkdir();
         final File tempFile = File.createTempFile("cvsPostConversion", "tmp", cvsDir); // NOI18N
@@ -492,6 +718,162 @@ public class DefaultFileHandler implements FileHandler {
         }
     }
 
+    /**
+     * Copies the received bytes to the file through its
+     * <code>FileChannel</code>.
+     */
+    private static void writeBinaryFileDirectly(final File file, final InputStream content, final int length)
+                    throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            transfer(Channels.newChannel(content), content, out, length);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Transfers <code>length</code> bytes from the channel reading the content
+     * to the file. Should the channel make no progress the rest is copied from
+     * the content stream.
+     */
+    static void transfer(final ReadableByteChannel source, final InputStream content, final FileOutputStream out,
+                    final long length) throws IOException {
+        final FileChannel channel = out.getChannel();
+        long position = 0;
+        while (position < length) {
+            final long count = channel.transferFrom(source, position, length - position);
+            if (count <= 0) {
+                // no progress, copy the rest chunk by chunk, the
+                // content stream reports a premature end itself
+                channel.position(position);
+                copyChunks(content, out);
+                break;
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Creates the temp file a directly written file is staged in, in the CVS
+     * folder so that it can be renamed onto the destination.
+     */
+    private static File createStagingFile(final File file) throws IOException {
+        final File cvsDir = new File(file.getParentFile(), "CVS"); // NOI18N
+        cvsDir.mkdir();
+        return File.createTempFile("cvsDirect", "tmp", cvsDir); // NOI18N
+    }
+
+    /**
+     * Moves a completely received file onto its destination.
+     */
+    private static void replace(final File staged, final File file) throws IOException {
+        if (staged.renameTo(file)) {
+            return;
+        }
+        // some platforms do not rename onto an existing file
+        file.delete();
+        if (!staged.renameTo(file)) {
+            staged.delete();
+            throw new IOException("Could not rename " + staged + " to " + file); // NOI18N
+        }
+    }
+
+    /**
+     * Drops a failed transfer. The rest of the content is skipped so that the
+     * server stream stays in sync, failures doing so are not reported, the
+     * transfer failed already.
+     */
+    private static void discard(final InputStream content, final File staged) {
+        try {
+            content.close();
+        } catch (final IOException ex) {
+            // the original failure is reported
+        }
+        if (staged != null) {
+            staged.delete();
+        }
+    }
+
+    private static void copyChunks(final InputStream content, final OutputStream out) throws IOException {
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        for (int count = content.read(chunk, 0, CHUNK_SIZE); count > 0; count = content.read(chunk, 0, CHUNK_SIZE)) {
+            out.write(chunk, 0, count);
+        }
+    }
+
+    /**
+     * Exposes the next <code>length</code> bytes of the server stream as a
+     * stream of its own. Closing it skips whatever was not consumed, so the
+     * server stream stays in sync even if the file could not be written.
+     * Skipping reads from the server, so closing can fail like reading.
+     */
+    private static final class ContentInputStream extends InputStream {
+
+        private final LoggedDataInputStream dis;
+        private final String path;
+        private int remaining;
+
+        ContentInputStream(final LoggedDataInputStream dis, final String path, final int length) {
+            this.dis = dis;
+            this.path = path;
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int ch = dis.read();
+            if (ch == -1) {
+                throw unexpectedEnd();
+            }
+            remaining--;
+            return ch;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            final int count = dis.read(b, off, Math.min(len, remaining));
+            if (count == -1) {
+                throw unexpectedEnd();
+            }
+            remaining -= count;
+            if (DEBUG) {
+                System.err.println("Still got: " + remaining + " to read"); // NOI18N
+            }
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return Math.min(remaining, dis.available());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (remaining <= 0) {
+                return;
+            }
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            while (remaining > 0) {
+                read(chunk, 0, CHUNK_SIZE);
+            }
+        }
+
+        private IOException unexpectedEnd() {
+            return new IOException("Unexpected end of stream: " + path + "\nMissing " + remaining
+                            + " bytes. Probably network communication failure.\nPlease try again."); // NOI18N
+        }
+    }
+
     /** Extension point allowing subclasses to change file creation logic. */
     protected boolean createNewFile(final File file) throws IOException {
         file.getParentFile().mkdirs();
@@ -75,4 +75,9 @@ public class GzippedFileHandler extends DefaultFileHandler {
     protected InputStream getProcessedInputStream(final File f) throws IOException {
         return new GZIPInputStream(new FileInputStream(f));
     }
+
+    @Override
+    protected boolean isDirectWriteSupported() {
+        return false;
+    }
 }
@@ -44,24 +44,27 @@
 
 package org.netbeans.lib.cvsclient.file;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.netbeans.lib.cvsclient.util.BugLog;
-import org.netbeans.lib.cvsclient.util.ByteArray;
 
 /**
  * File Processor that handles processing of rcs-diff response. (aka diff -n
  * format) The original file is read and a merge is created. At the same time
  * the correct line-ending is processed. It's possible to set the processor the
  * preffered line-ending. The default is dependant on the platform.
+ * <p>
+ * Both the original file and the diff are read into memory at once and
+ * indexed by line, the <tt>a</tt> and <tt>d</tt> commands are then applied as
+ * copies of line ranges. Runs of lines whose line-ending already matches the
+ * wanted one are written with a single write.
  * 
  * @author Milos Kleint
  */
@@ -69,7 +72,7 @@ public class WriteRcsDiffFilePreprocessor implements WriteTextFilePreprocessor {
 
     private static final long serialVersionUID = 2027110088476730991L;
 
-    private static final int READ_REMAINING = -2;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /**
      * line ending that will be used when writing the final result file.
@@ -113,113 +116,52 @@ public class WriteRcsDiffFilePreprocessor implements WriteTextFilePreprocessor {
      */
     public void copyTextFileToLocation(final InputStream processedInput, final File fileToWrite,
                     final OutputStreamProvider customOutput) throws IOException {
-        // Here we read the temp file in again, doing any processing required
-        // (for example, unzipping). We must not convert the bytes to characters
-        // because this would corrupt files, that were written in an encoding
-        // different from the current encoding.
-        ReadInfo tempFileReader = null;
-        OutputStream out = null;
-        ReadInfo tempDiffReader = null;
-        File tempFile = null;
+        // We must not convert the bytes to characters because this would
+        // corrupt files, that were written in an encoding different from the
+        // current encoding.
         // BUGLOG.. assert the fileToWrite Exists.. otherwise it has no sense.
-
+        OutputStream out = null;
         try {
-            tempDiffReader = new ReadInfo(new BufferedInputStream(processedInput));
-            tempFileReader = new ReadInfo(new BufferedInputStream(new FileInputStream(fileToWrite)));
-            tempFile = File.createTempFile(".#merg", "cvs"); // NOI18N
-
-            out = new BufferedOutputStream(new FileOutputStream(tempFile));
+            final Lines diff;
+            try {
+                diff = new Lines(readFully(processedInput, BUFFER_SIZE));
+            } finally {
+                processedInput.close();
+            }
+            final List<int[]> commands = parseCommands(diff);
 
-            byte[] diff = tempDiffReader.readLine();
-            while ((diff != null) && (diff.length > 0)) {
-                // System.out.println("diffline=" + diff);
-                if (diff[0] == 'd') {
-                    // now do delete..
-                    final int startLine = getStart(diff);
-                    final int count = getLength(diff);
-                    // System.out.println("deleting. start =" + startLine +
-                    // "  count=" + count);
-                    if ((startLine >= 0) && (count > 0)) {
-                        // read from file only if deletion is not some
-                        // from the beginning..
-                        readToLine(startLine - 1, tempFileReader, out);
-                        readToLine(startLine - 1 + count, tempFileReader, null);
-                        // null skips the lines..
-                    } else {
-                        // BugLog..
-                        BugLog.getInstance().bug("wrong parsing.." + new String(diff));
-                        throw new IOException(); // Interrupt the merging
-                                                 // process so that the file is
-                                                 // not corrupted.
-                    }
-                } else if (diff[0] == 'a') {
-                    // now add lines from the diff..
-                    final int startLine = getStart(diff);
-                    final int count = getLength(diff);
-                    // System.out.println("adding.. start =" + startLine +
-                    // "  count=" + count);
-                    if ((startLine >= 0) && (count > 0)) {
-                        readToLine(startLine, tempFileReader, out);
-                        tempDiffReader.setLineNumber(0);
-                        readToLine(count, tempDiffReader, out);
-                    } else {
-                        // BugLog..
-                        BugLog.getInstance().bug("wrong parsing.." + new String(diff));
-                        throw new IOException(); // Interrupt the merging
-                                                 // process so that the file is
-                                                 // not corrupted.
-                    }
-                }
-                // now process next difference.
-                diff = tempDiffReader.readLine();
+            final Lines original;
+            final InputStream in = new FileInputStream(fileToWrite);
+            try {
+                original = new Lines(readFully(in, (int) fileToWrite.length()));
+            } finally {
+                in.close();
             }
-            // read what's remaining..
-            readToLine(READ_REMAINING, tempFileReader, out);
 
-            if (tempFile != null) {
-                tempFileReader.close();
-                out.close();
-                InputStream in = null;
-                final OutputStream customOutputStream = customOutput.createOutputStream();
-                try {
-                    in = new BufferedInputStream(new FileInputStream(tempFile));
-                    while (true) {
-                        final int ch = in.read();
-                        if (ch == -1) {
-                            break;
-                        }
-                        customOutputStream.write(ch);
-                    }
-                } finally {
-                    if (in != null) {
-                        try {
-                            in.close();
-                        } catch (final IOException ex) {
-                        }
-                    }
-                    try {
-                        customOutputStream.close();
-                    } catch (final IOException ex) {
-                    }
+            // the whole original is in memory now, the file can be overwritten
+            final byte[] ending = getLineEnding().getBytes();
+            out = new BufferedOutputStream(customOutput.createOutputStream(), BUFFER_SIZE);
+            int originalLine = 0;
+            for (final int[] command : commands) {
+                final int startLine = command[1];
+                final int count = command[2];
+                if (command[0] == 'd') {
+                    original.write(originalLine, startLine - 1, ending, out);
+                    originalLine = Math.max(originalLine, Math.min(startLine - 1 + count, original.size()));
+                } else {
+                    original.write(originalLine, startLine, ending, out);
+                    originalLine = Math.max(originalLine, Math.min(startLine, original.size()));
+                    final int diffLine = command[3];
+                    diff.write(diffLine, diffLine + count, ending, out);
                 }
             }
+            // write what's remaining..
+            original.write(originalLine, original.size(), ending, out);
+            out.close();
+            out = null;
         } catch (final Exception exc) {
             BugLog.getInstance().showException(exc);
         } finally {
-            if (tempDiffReader != null) {
-                try {
-                    tempDiffReader.close();
-                } catch (final IOException ex) {
-                    // ignore
-                }
-            }
-            if (tempFileReader != null) {
-                try {
-                    tempFileReader.close();
-                } catch (final IOException ex) {
-                    // ignore
-                }
-            }
             if (out != null) {
                 try {
                     out.close();
@@ -227,38 +169,63 @@ public class WriteRcsDiffFilePreprocessor implements WriteTextFilePreprocessor {
                     // ignore
                 }
             }
-            if (tempFile != null) {
-                tempFile.delete();
-            }
         }
     }
 
     /**
-     * Reads lines from the reader until the specified line number is reached.
-     * Writes the lines to the writer
+     * Parses all the commands of the diff before anything is written so that a
+     * broken diff does not corrupt the file.
      * 
-     * @param finalLine
-     *            the last line to read/write. Special value -2 reads all that
-     *            is remaining in the reader.
-     * @param reader
-     *            - does not accept null.
-     * @param writer
-     *            the writer that the read lines are written to. Accepts null.
-     *            In such a case the read lines are discarded.
+     * @return for every command its letter, start line, count and, for
+     *         <tt>a</tt>, the index of the first added line in the diff
      */
-    private void readToLine(final int finalLine, final ReadInfo reader, final OutputStream out) throws IOException {
-        byte[] line;
-        while ((reader.getLineNumber() < finalLine) || (finalLine == READ_REMAINING)) {
-            line = reader.readLine();
-            if (line == null) {
-                // end of file..
-                return;
+    private static List<int[]> parseCommands(final Lines diff) throws IOException {
+        final List<int[]> commands = new ArrayList<int[]>();
+        int index = 0;
+        while ((index < diff.size()) && !diff.isEmpty(index)) {
+            final byte[] line = diff.get(index++);
+            if ((line[0] == 'd') || (line[0] == 'a')) {
+                final int startLine = getStart(line);
+                final int count = getLength(line);
+                if ((startLine < 0) || (count <= 0)) {
+                    // BugLog..
+                    BugLog.getInstance().bug("wrong parsing.." + new String(line));
+                    throw new IOException(); // Interrupt the merging
+                                             // process so that the file is
+                                             // not corrupted.
+                }
+                if (line[0] == 'a') {
+                    commands.add(new int[] { 'a', startLine, count, index });
+                    index += count;
+                } else {
+                    commands.add(new int[] { 'd', startLine, count });
+                }
             }
-            if (out != null) {
-                out.write(line);
-                out.write(getLineEnding().getBytes());
+        }
+        return commands;
+    }
+
+    private static byte[] readFully(final InputStream in, final int sizeHint) throws IOException {
+        byte[] bytes = new byte[Math.max(sizeHint, 16)];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                final byte[] larger = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, larger, 0, length);
+                bytes = larger;
             }
+            final int read = in.read(bytes, length, bytes.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
         }
+        if (length == bytes.length) {
+            return bytes;
+        }
+        final byte[] result = new byte[length];
+        System.arraycopy(bytes, 0, result, 0, length);
+        return result;
     }
 
     private static int indexOf(final byte[] bytes, final byte b) {
@@ -287,11 +254,9 @@ public class WriteRcsDiffFilePreprocessor implements WriteTextFilePreprocessor {
                 final int toReturn = Integer.parseInt(number);
                 return toReturn;
             } catch (final NumberFormatException exc) {
-                // System.out.println("diffLine=" + diffLine);
                 return -1;
             }
         }
-        // System.out.println("no space in diffline=" + diffLine);
         return -1;
     }
 
@@ -301,7 +266,6 @@ public class WriteRcsDiffFilePreprocessor implements WriteTextFilePreprocessor {
      * the diff to original file.
      */
     private static int getLength(final byte[] diffLine) {
-        // String trimmed = diffLine.trim();
         final int spacePos = indexOf(diffLine, (byte) ' ');
         if (spacePos > 0) {
             int end = indexOf(diffLine, (byte) ' ', spacePos + 1);
@@ -313,99 +277,134 @@ public class WriteRcsDiffFilePreprocessor implements WriteTextFilePreprocessor {
                 final int toReturn = Integer.parseInt(number);
                 return toReturn;
             } catch (final NumberFormatException exc) {
-                // System.out.println("numformat exception..=" + diffLine);
                 return -1;
             }
         }
-        // System.out.println("no space in diffline=" + diffLine);
         return -1;
     }
 
-    private static class ReadInfo {
+    /**
+     * Line index of a byte array. Lines end with LF or CRLF, a sole CR ends a
+     * line only on platforms that use it as the line separator. The
+     * line-termination bytes are not part of the line.
+     */
+    private static final class Lines {
 
         private static final boolean crLines = "\r".equals(System.getProperty("line.separator"));
 
-        private final PushbackInputStream in;
-        private int lineNumber;
-        private final ByteArray line;
+        private final byte[] bytes;
+
+        /**
+         * Line <tt>i</tt> (0 based) occupies <code>starts[i]</code> up to
+         * <code>ends[i]</code>, its line-ending continues up to
+         * <code>starts[i + 1]</code>.
+         */
+        private int[] starts;
+        private int[] ends;
+        private int size;
 
-        public ReadInfo(final InputStream in) {
-            this.in = new PushbackInputStream(in, 1);
-            lineNumber = 0;
-            line = new ByteArray();
+        Lines(final byte[] bytes) {
+            this.bytes = bytes;
+            starts = new int[Math.max(16, bytes.length / 32)];
+            ends = new int[starts.length];
+            int start = 0;
+            int i = 0;
+            while (i < bytes.length) {
+                final byte b = bytes[i];
+                if (b == '\n') {
+                    add(start, i);
+                    start = ++i;
+                } else if (b == '\r') {
+                    if ((i + 1 < bytes.length) && (bytes[i + 1] == '\n')) {
+                        add(start, i);
+                        i += 2;
+                        start = i;
+                    } else if (crLines) {
+                        add(start, i);
+                        start = ++i;
+                    } else {
+                        i++;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            if (start < bytes.length) {
+                add(start, bytes.length);
+            }
+            if (size == starts.length) {
+                starts = copyOf(starts, size + 1);
+            }
+            starts[size] = bytes.length;
         }
 
-        public int getLineNumber() {
-            return lineNumber;
+        private void add(final int start, final int end) {
+            if (size + 1 >= starts.length) {
+                starts = copyOf(starts, starts.length * 2);
+                ends = copyOf(ends, starts.length);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
         }
 
-        public void setLineNumber(final int lineNumber) {
-            this.lineNumber = lineNumber;
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty(final int index) {
+            return starts[index] == ends[index];
+        }
+
+        byte[] get(final int index) {
+            final byte[] line = new byte[ends[index] - starts[index]];
+            System.arraycopy(bytes, starts[index], line, 0, line.length);
+            return line;
         }
 
         /**
-         * Reads a line. The line-termination bytes are not added.
-         * 
-         * @return null When the end of the stream is reached.
+         * Writes lines <tt>from</tt> (inclusive, 0 based) to <tt>to</tt>
+         * (exclusive), each terminated by <tt>ending</tt>.
          */
-        public byte[] readLine() throws IOException {
-            line.reset();
-            boolean end = false;
-            do {
-                final int b = in.read();
-                if (b == -1) {
-                    end = true;
-                    break;
-                }
-                if (b == '\n') {
-                    lineNumber++;
-                    break;
-                }
-                if (b == '\r') {
-                    final int next = in.read();
-                    if (next == '\n') {
-                        lineNumber++;
-                        break;
-                    }
-                    in.unread(next);
-                    if (crLines) {
-                        lineNumber++;
-                        break;
+        void write(final int from, final int to, final byte[] ending, final OutputStream out) throws IOException {
+            final int last = Math.min(to, size);
+            int runStart = -1;
+            for (int i = from; i < last; i++) {
+                if (hasEnding(i, ending)) {
+                    if (runStart < 0) {
+                        runStart = starts[i];
                     }
+                    continue;
                 }
-                line.add((byte) b);
-            } while (true);
-            byte[] bytes = line.getBytes();
-            if (end && (bytes.length == 0)) {
-                bytes = null;
+                if (runStart >= 0) {
+                    out.write(bytes, runStart, starts[i] - runStart);
+                    runStart = -1;
+                }
+                out.write(bytes, starts[i], ends[i] - starts[i]);
+                out.write(ending);
+            }
+            if (runStart >= 0) {
+                out.write(bytes, runStart, starts[last] - runStart);
             }
-            return bytes;
-            /*
-             * StringBuffer toReturn = new StringBuffer(); while (true) { if
-             * (startIndex > readLength) { // System.out.println("reading..");
-             * readLength = reader.read(cchunk); // System.out.println("read=" +
-             * readLength); startIndex = 0; } if (startIndex >= readLength) {
-             * readLength = -1; if (toReturn.length() == 0) { return null; }
-             * else { lineNumber = lineNumber + 1; return toReturn.toString(); }
-             * } // System.out.println("startindex = " + startIndex +
-             * "   length=" + readLength); for (int i = startIndex; i <
-             * readLength; i++) { if (cchunk[i] == '\n') {
-             * toReturn.append(WriteRcsDiffFilePreprocessor
-             * .this.getLineEnding()); startIndex = i + 1; lineNumber =
-             * lineNumber + 1; // System.out.println("linenum=" + lineNumber);
-             * // System.out.println("line=" + toReturn.toString() + "--");
-             * return toReturn.toString(); } else { // could be maybe made
-             * faster by appending the whole array when // read all or
-             * encountering the newline.. toReturn.append(cchunk[i]); } }
-             * startIndex = readLength; }
-             */
         }
 
-        public void close() throws IOException {
-            if (in != null) {
-                in.close();
+        private boolean hasEnding(final int index, final byte[] ending) {
+            final int end = ends[index];
+            if (starts[index + 1] - end != ending.length) {
+                return false;
             }
+            for (int i = 0; i < ending.length; i++) {
+                if (bytes[end + i] != ending[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
-    } // end of inner class..
 
+        private static int[] copyOf(final int[] array, final int length) {
+            final int[] copy = new int[length];
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+            return copy;
+        }
+    }
 }
@@ -77,6 +77,15 @@ public class GzipFileContentsRequest extends Request {
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * Get the compression level the server is asked to use for file contents.
+     * 
+     * @return the compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
     /**
      * Get the request String that will be passed to the server
      * 
@@ -131,4 +131,14 @@ public class GzipStreamRequest extends Request {
     public boolean modifiesInputStream() {
         return true;
     }
+
+    /**
+     * Does this request modify the output stream?
+     * 
+     * @return true if it does, false otherwise
+     */
+    @Override
+    public boolean modifiesOutputStream() {
+        return true;
+    }
 }
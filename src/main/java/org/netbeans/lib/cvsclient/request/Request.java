@@ -113,4 +113,13 @@ public abstract class Request implements Serializable {
     public boolean modifiesInputStream() {
         return false;
     }
+
+    /**
+     * Does this request modify the output stream?
+     * 
+     * @return true if it does, false otherwise
+     */
+    public boolean modifiesOutputStream() {
+        return false;
+    }
 }
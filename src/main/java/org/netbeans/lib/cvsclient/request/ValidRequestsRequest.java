@@ -58,6 +58,27 @@ public class ValidRequestsRequest extends Request {
      */
     private static final long serialVersionUID = 8524746143835440725L;
 
+    private final boolean waitForResponse;
+
+    /**
+     * Creates a request whose response is read right away.
+     */
+    public ValidRequestsRequest() {
+        this(true);
+    }
+
+    /**
+     * Creates a request that may be pipelined with the next requests.
+     * 
+     * @param waitForResponse
+     *            <code>false</code> if the request is sent along with the
+     *            following ones and its response is read before the response
+     *            of the next request that expects one
+     */
+    public ValidRequestsRequest(final boolean waitForResponse) {
+        this.waitForResponse = waitForResponse;
+    }
+
     /**
      * Get the request String that will be passed to the server
      * 
@@ -77,6 +98,6 @@ public class ValidRequestsRequest extends Request {
      */
     @Override
     public boolean isResponseExpected() {
-        return true;
+        return waitForResponse;
     }
 }
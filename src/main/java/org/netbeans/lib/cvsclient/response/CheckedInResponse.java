@@ -48,10 +48,10 @@ package org.netbeans.lib.cvsclient.response;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
 import java.util.Date;
 
 import org.netbeans.lib.cvsclient.admin.Entry;
+import org.netbeans.lib.cvsclient.util.DateCodec;
 import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
 
 /**
@@ -66,12 +66,6 @@ class CheckedInResponse implements Response {
      * 
      */
     private static final long serialVersionUID = -4489238799861869876L;
-    /**
-     * The date Formatter used to parse and format dates. Format is:
-     * "EEE MMM dd HH:mm:ss yyyy"
-     */
-    private DateFormat dateFormatter;
-
     /**
      * Process the data for the response.
      * 
@@ -101,7 +95,7 @@ class CheckedInResponse implements Response {
             final File theFile = new File(absPath);
             final Date date = new Date(theFile.lastModified());
             final Entry entry = new Entry(entriesLine);
-            entry.setConflict(getDateFormatter().format(date));
+            entry.setConflict(DateCodec.formatLastModified(date.getTime()));
 
             // for added and removed entries set the conflict to Dummy
             // timestamp.
@@ -123,17 +117,4 @@ class CheckedInResponse implements Response {
         return false;
     }
 
-    /**
-     * Returns the DateFormatter instance that parses and formats date Strings.
-     * The exact format matches the one in Entry.getLastModifiedDateFormatter()
-     * method.
-     * 
-     */
-    protected DateFormat getDateFormatter() {
-        if (dateFormatter == null) {
-            dateFormatter = Entry.getLastModifiedDateFormatter();
-        }
-        return dateFormatter;
-    }
-
 }
@@ -50,6 +50,7 @@ import java.util.Date;
 
 import org.netbeans.lib.cvsclient.event.EnhancedMessageEvent;
 import org.netbeans.lib.cvsclient.event.EventManager;
+import org.netbeans.lib.cvsclient.util.DateCodec;
 import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
 
 /**
@@ -106,7 +107,7 @@ class MergedResponse extends UpdatedResponse {
             return "Result of merge"; // NOI18N
         } else {
             return "Result of merge+" + // NOI18N
-                            getDateFormatter().format(date);
+                            DateCodec.formatLastModified(date.getTime());
         }
     }
 
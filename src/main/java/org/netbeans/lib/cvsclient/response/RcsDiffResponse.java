@@ -48,12 +48,12 @@ package org.netbeans.lib.cvsclient.response;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
 import java.util.Date;
 
 import org.netbeans.lib.cvsclient.admin.Entry;
 import org.netbeans.lib.cvsclient.event.FileUpdatedEvent;
 import org.netbeans.lib.cvsclient.file.FileHandler;
+import org.netbeans.lib.cvsclient.util.DateCodec;
 import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
 
 /**
@@ -96,12 +96,6 @@ class RcsDiffResponse implements Response {
      */
     protected String localFile;
 
-    /**
-     * The date Formatter used to parse and format dates. Format is:
-     * "EEE MMM dd HH:mm:ss yyyy"
-     */
-    private DateFormat dateFormatter;
-
     /**
      * Process the data for the response.
      * 
@@ -210,7 +204,7 @@ class RcsDiffResponse implements Response {
      * @return the conflict field
      */
     protected String getEntryConflict(final Date date, final boolean hadConflicts) {
-        return getDateFormatter().format(date);
+        return DateCodec.formatLastModified(date.getTime());
     }
 
     /**
@@ -221,17 +215,4 @@ class RcsDiffResponse implements Response {
         return false;
     }
 
-    /**
-     * Returns the DateFormatter instance that parses and formats date Strings.
-     * The exact format matches the one in Entry.getLastModifiedDateFormatter()
-     * method.
-     * 
-     */
-    protected DateFormat getDateFormatter() {
-        if (dateFormatter == null) {
-            dateFormatter = Entry.getLastModifiedDateFormatter();
-        }
-        return dateFormatter;
-    }
-
 }
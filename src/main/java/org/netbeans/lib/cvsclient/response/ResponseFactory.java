@@ -47,6 +47,7 @@
 package org.netbeans.lib.cvsclient.response;
 
 import java.io.Serializable;
+import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
@@ -60,9 +61,17 @@ import java.util.ResourceBundle;
 public class ResponseFactory implements Serializable {
 
     private static final long serialVersionUID = 1158478080511422906L;
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1"); // NOI18N
     private final Map<String, Response> responseInstancesMap;
     private String previousResponse = null;
 
+    /**
+     * Byte trie over the keys of <code>responseInstancesMap</code>, lets
+     * {@link #createResponse(byte[], int, int)} dispatch straight from the
+     * network buffer.
+     */
+    private transient Node responseTrie;
+
     public ResponseFactory() {
         responseInstancesMap = new HashMap<String, Response>();
         responseInstancesMap.put("E", new ErrorMessageResponse()); // NOI18N
@@ -94,6 +103,49 @@ public class ResponseFactory implements Serializable {
 
     }
 
+    /**
+     * Looks up the response whose name is stored in the given bytes. Known
+     * responses are matched without creating a <code>String</code>.
+     * 
+     * @param name
+     *            buffer holding the response name
+     * @param offset
+     *            index of the first name byte
+     * @param length
+     *            number of name bytes
+     * @return the response handler
+     * @throws IllegalArgumentException
+     *             if the response is not known
+     */
+    public Response createResponse(final byte[] name, final int offset, final int length) {
+        Node node = getResponseTrie();
+        for (int i = offset; (node != null) && (i < offset + length); i++) {
+            node = node.next(name[i]);
+        }
+        if ((node != null) && (node.response != null)) {
+            previousResponse = node.name;
+            return node.response;
+        }
+        return createResponse(new String(name, offset, length, ISO_8859_1));
+    }
+
+    private Node getResponseTrie() {
+        if (responseTrie == null) {
+            final Node root = new Node();
+            for (final Map.Entry<String, Response> entry : responseInstancesMap.entrySet()) {
+                final String name = entry.getKey();
+                Node node = root;
+                for (int i = 0; i < name.length(); i++) {
+                    node = node.add((byte) name.charAt(i));
+                }
+                node.name = name;
+                node.response = entry.getValue();
+            }
+            responseTrie = root;
+        }
+        return responseTrie;
+    }
+
     public Response createResponse(final String responseName) {
         final Response response = responseInstancesMap.get(responseName);
         if (response != null) {
@@ -130,6 +182,45 @@ public class ResponseFactory implements Serializable {
         throw ex;
     }
 
+    /**
+     * Trie node. Response names share short prefixes only, so children are
+     * kept in small parallel arrays and scanned linearly.
+     */
+    private static final class Node {
+
+        private byte[] keys = new byte[0];
+        private Node[] children = new Node[0];
+        private String name;
+        private Response response;
+
+        Node next(final byte key) {
+            final byte[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node add(final byte key) {
+            Node child = next(key);
+            if (child == null) {
+                final int size = keys.length;
+                final byte[] newKeys = new byte[size + 1];
+                final Node[] newChildren = new Node[size + 1];
+                System.arraycopy(keys, 0, newKeys, 0, size);
+                System.arraycopy(children, 0, newChildren, 0, size);
+                child = new Node();
+                newKeys[size] = key;
+                newChildren[size] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+
     private static class IllegalArgumentException2 extends IllegalArgumentException {
 
         /**
@@ -48,7 +48,6 @@ package org.netbeans.lib.cvsclient.response;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
 import java.util.Date;
 
 import org.netbeans.lib.cvsclient.admin.Entry;
@@ -57,6 +56,7 @@ import org.netbeans.lib.cvsclient.event.FileAddedEvent;
 import org.netbeans.lib.cvsclient.event.FileInfoEvent;
 import org.netbeans.lib.cvsclient.event.FileUpdatedEvent;
 import org.netbeans.lib.cvsclient.file.FileHandler;
+import org.netbeans.lib.cvsclient.util.DateCodec;
 import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
 
 /**
@@ -99,12 +99,6 @@ class UpdatedResponse implements Response {
      */
     protected String localFile;
 
-    /**
-     * The date Formatter used to parse and format dates. Format is:
-     * "EEE MMM dd HH:mm:ss yyyy"
-     */
-    private DateFormat dateFormatter;
-
     /**
      * Process the data for the response.
      * 
@@ -235,20 +229,7 @@ class UpdatedResponse implements Response {
      * @return the conflict field
      */
     protected String getEntryConflict(final Date date, final boolean hadConflicts) {
-        return getDateFormatter().format(date);
-    }
-
-    /**
-     * Returns the DateFormatter instance that parses and formats date Strings.
-     * The exact format matches the one in Entry.getLastModifiedDateFormatter()
-     * method.
-     * 
-     */
-    protected DateFormat getDateFormatter() {
-        if (dateFormatter == null) {
-            dateFormatter = Entry.getLastModifiedDateFormatter();
-        }
-        return dateFormatter;
+        return DateCodec.formatLastModified(date.getTime());
     }
 
     /**
@@ -72,6 +72,19 @@ public class ByteArray extends Object {
         bytesBuffer[length++] = b;
     }
 
+    /**
+     * Add a range of bytes to the byte array.
+     */
+    public void add(final byte[] bytes, final int offset, final int len) {
+        if (bytesBuffer.length < length + len) {
+            final byte[] newBytesBuffer = new byte[Math.max(length + len, length + length / 2)];
+            System.arraycopy(bytesBuffer, 0, newBytesBuffer, 0, length);
+            bytesBuffer = newBytesBuffer;
+        }
+        System.arraycopy(bytes, offset, bytesBuffer, length, len);
+        length += len;
+    }
+
     /**
      * Get the array of bytes.
      */
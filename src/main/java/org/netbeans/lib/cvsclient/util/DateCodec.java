@@ -0,0 +1,351 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient.util;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Parses and formats the fixed date formats of the CVS administrative files
+ * and of the log output. Unlike <code>SimpleDateFormat</code> the methods keep
+ * no state, so they can be called from any thread without locking and
+ * without creating formatter instances.
+ * <ul>
+ * <li>Entries timestamps: <tt>EEE MMM dd HH:mm:ss yyyy</tt> in GMT, e.g.
+ * <tt>Thu Mar 24 15:14:27 2005</tt>. The day may also be space padded as
+ * written by the command line client.
+ * <li>RCS log dates: <tt>yyyy-MM-dd HH:mm:ss [Z]</tt> or
+ * <tt>yyyy/MM/dd HH:mm:ss</tt>, GMT unless a <tt>+hhmm</tt> offset follows.
+ * <li>Sticky dates: <tt>yyyy.MM.dd.HH.mm.ss</tt> in the default time zone.
+ * </ul>
+ * Like a lenient <code>SimpleDateFormat</code>, out of range fields roll over
+ * into the next unit.
+ */
+public final class DateCodec {
+
+    private static final String[] DAYS = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" }; // NOI18N
+
+    private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", // NOI18N
+                    "Oct", "Nov", "Dec" }; // NOI18N
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private DateCodec() {
+    }
+
+    /**
+     * Formats a time as an Entries timestamp, e.g.
+     * <tt>Thu Mar 24 15:14:27 2005</tt>.
+     */
+    public static String formatLastModified(final long time) {
+        final long days = floorDiv(time, MILLIS_PER_DAY);
+        final int millisOfDay = (int) (time - days * MILLIS_PER_DAY);
+        final int[] civil = civilFromDays(days);
+        final StringBuffer buffer = new StringBuffer(24);
+        buffer.append(DAYS[(int) floorMod(days + 4, 7)]).append(' ');
+        buffer.append(MONTHS[civil[1] - 1]).append(' ');
+        append2(buffer, civil[2]).append(' ');
+        appendTime(buffer, millisOfDay, ':').append(' ');
+        buffer.append(civil[0]);
+        return buffer.toString();
+    }
+
+    /**
+     * Parses an Entries timestamp.
+     * 
+     * @throws ParseException
+     *             if the text is not a valid timestamp
+     */
+    public static Date parseLastModified(final String text) throws ParseException {
+        final Cursor cursor = new Cursor(text);
+        cursor.skipLetters();
+        cursor.skipSpaces(1);
+        final int month = cursor.month();
+        cursor.skipSpaces(1);
+        final int day = cursor.number();
+        cursor.skipSpaces(1);
+        final int hour = cursor.number();
+        cursor.expect(':');
+        final int minute = cursor.number();
+        cursor.expect(':');
+        final int second = cursor.number();
+        cursor.skipSpaces(1);
+        final int year = cursor.number();
+        return new Date(toMillis(year, month, day, hour, minute, second));
+    }
+
+    /**
+     * Parses a date from the log output, e.g. <tt>2005/03/24 15:14:27</tt> or
+     * <tt>2005-03-24 15:14:27 +0100</tt>.
+     * 
+     * @throws ParseException
+     *             if the text is not a valid date
+     */
+    public static Date parseRcsDate(final String text) throws ParseException {
+        final Cursor cursor = new Cursor(text);
+        final int year = cursor.number();
+        cursor.expectDateSeparator();
+        final int month = cursor.number();
+        cursor.expectDateSeparator();
+        final int day = cursor.number();
+        cursor.skipSpaces(1);
+        final int hour = cursor.number();
+        cursor.expect(':');
+        final int minute = cursor.number();
+        cursor.expect(':');
+        final int second = cursor.number();
+        long time = toMillis(year, month, day, hour, minute, second);
+        if (cursor.skipSpaces(0) > 0) {
+            time -= cursor.zoneOffset();
+        }
+        return new Date(time);
+    }
+
+    /**
+     * Parses a sticky date, e.g. <tt>2005.03.24.15.14.27</tt>, in the default
+     * time zone.
+     * 
+     * @throws ParseException
+     *             if the text is not a valid date
+     */
+    public static Date parseStickyDate(final String text) throws ParseException {
+        final Cursor cursor = new Cursor(text);
+        final int[] fields = new int[6];
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                cursor.expect('.');
+            }
+            fields[i] = cursor.number();
+        }
+        final long local = toMillis(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+        final TimeZone zone = TimeZone.getDefault();
+        long time = local - zone.getOffset(local - zone.getRawOffset());
+        // the offset may differ on the other side of a daylight saving switch
+        time = local - zone.getOffset(time);
+        return new Date(time);
+    }
+
+    /**
+     * Formats a sticky date in the default time zone.
+     */
+    public static String formatStickyDate(final Date date) {
+        final long time = date.getTime();
+        final long local = time + TimeZone.getDefault().getOffset(time);
+        final long days = floorDiv(local, MILLIS_PER_DAY);
+        final int[] civil = civilFromDays(days);
+        final StringBuffer buffer = new StringBuffer(19);
+        buffer.append(civil[0]).append('.');
+        append2(buffer, civil[1]).append('.');
+        append2(buffer, civil[2]).append('.');
+        appendTime(buffer, (int) (local - days * MILLIS_PER_DAY), '.');
+        return buffer.toString();
+    }
+
+    private static long toMillis(final int year, final int month, final int day, final int hour, final int minute,
+                    final int second) {
+        // months roll over into years, days and times are linear anyway
+        final int y = year + (int) floorDiv(month - 1, 12);
+        final int m = (int) floorMod(month - 1, 12) + 1;
+        final long days = daysFromCivil(y, m, 1) + day - 1;
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     */
+    private static long daysFromCivil(int year, final int month, final int day) {
+        year -= month <= 2 ? 1 : 0;
+        final long era = floorDiv(year, 400);
+        final long yearOfEra = year - era * 400;
+        final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Year, month and day of the given days since 1970-01-01.
+     */
+    private static int[] civilFromDays(long days) {
+        days += 719468;
+        final long era = floorDiv(days, 146097);
+        final long dayOfEra = days - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long mp = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return new int[] { year, month, day };
+    }
+
+    private static StringBuffer appendTime(final StringBuffer buffer, final int millisOfDay, final char separator) {
+        final int seconds = millisOfDay / 1000;
+        append2(buffer, seconds / 3600).append(separator);
+        append2(buffer, (seconds / 60) % 60).append(separator);
+        return append2(buffer, seconds % 60);
+    }
+
+    private static StringBuffer append2(final StringBuffer buffer, final int value) {
+        if (value < 10) {
+            buffer.append('0');
+        }
+        return buffer.append(value);
+    }
+
+    private static long floorDiv(final long x, final long y) {
+        final long q = x / y;
+        return ((x % y != 0) && ((x < 0) != (y < 0))) ? q - 1 : q;
+    }
+
+    private static long floorMod(final long x, final long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Reading position within a date string.
+     */
+    private static final class Cursor {
+
+        private final String text;
+
+        private int pos;
+
+        Cursor(final String text) {
+            this.text = text;
+        }
+
+        int number() throws ParseException {
+            final int start = pos;
+            int value = 0;
+            while ((pos < text.length()) && (pos - start < 9)) {
+                final char ch = text.charAt(pos);
+                if ((ch < '0') || (ch > '9')) {
+                    break;
+                }
+                value = value * 10 + (ch - '0');
+                pos++;
+            }
+            if (pos == start) {
+                throw error();
+            }
+            return value;
+        }
+
+        int month() throws ParseException {
+            if (pos + 3 <= text.length()) {
+                for (int i = 0; i < MONTHS.length; i++) {
+                    if (text.regionMatches(true, pos, MONTHS[i], 0, 3)) {
+                        pos += 3;
+                        return i + 1;
+                    }
+                }
+            }
+            throw error();
+        }
+
+        /**
+         * @return offset of a <tt>+hhmm</tt> or <tt>-hhmm</tt> zone in
+         *         milliseconds
+         */
+        long zoneOffset() throws ParseException {
+            if (pos >= text.length()) {
+                return 0;
+            }
+            final char sign = text.charAt(pos);
+            if ((sign != '+') && (sign != '-')) {
+                return 0;
+            }
+            pos++;
+            final int start = pos;
+            final int value = number();
+            if (pos - start != 4) {
+                throw error();
+            }
+            final long offset = ((value / 100) * 60 + value % 100) * 60000L;
+            return sign == '-' ? -offset : offset;
+        }
+
+        void skipLetters() throws ParseException {
+            final int start = pos;
+            while ((pos < text.length()) && Character.isLetter(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                throw error();
+            }
+        }
+
+        int skipSpaces(final int minimum) throws ParseException {
+            final int start = pos;
+            while ((pos < text.length()) && (text.charAt(pos) == ' ')) {
+                pos++;
+            }
+            if (pos - start < minimum) {
+                throw error();
+            }
+            return pos - start;
+        }
+
+        void expect(final char ch) throws ParseException {
+            if ((pos >= text.length()) || (text.charAt(pos) != ch)) {
+                throw error();
+            }
+            pos++;
+        }
+
+        void expectDateSeparator() throws ParseException {
+            if ((pos >= text.length()) || ((text.charAt(pos) != '-') && (text.charAt(pos) != '/'))) {
+                throw error();
+            }
+            pos++;
+        }
+
+        private ParseException error() {
+            return new ParseException("Unparseable date: \"" + text + "\"", pos); // NOI18N
+        }
+    }
+}
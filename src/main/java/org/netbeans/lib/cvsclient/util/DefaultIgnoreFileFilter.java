@@ -48,22 +48,36 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 /**
+ * The global patterns and the patterns of every directory's
+ * <code>.cvsignore</code> are compiled into an {@link IgnorePatternMatcher}.
+ * Parsed <code>.cvsignore</code> files are cached per directory and read again
+ * only if their modification time or size changes.
+ * 
  * @author Milos Kleint, Thomas Singer
  */
 public class DefaultIgnoreFileFilter implements IgnoreFileFilter {
     private static final long serialVersionUID = -5534031149474237036L;
 
+    /**
+     * Number of directories whose <code>.cvsignore</code> is cached.
+     */
+    private static final int DIRECTORY_CACHE_SIZE = 1024;
+
+    private static final DirectoryIgnores NO_IGNORES = new DirectoryIgnores(0, 0, true, null);
+
     private final List<StringPattern> patterns = new LinkedList<StringPattern>();
 
-    private final List<StringPattern> localPatterns = new LinkedList<StringPattern>();
-    private boolean processGlobalPatterns = true;
-    private boolean processLocalPatterns = false;
-    private File lastDirectory = null;
+    private transient IgnorePatternMatcher globalMatcher;
+    private transient Map<File, DirectoryIgnores> directoryIgnores;
+    private transient File lastDirectory;
+    private transient DirectoryIgnores lastIgnores;
 
     public DefaultIgnoreFileFilter() {
     }
@@ -91,6 +105,7 @@ public class DefaultIgnoreFileFilter implements IgnoreFileFilter {
             clearPatterns();
         } else {
             patterns.add(pattern);
+            globalMatcher = null;
         }
     }
 
@@ -103,6 +118,7 @@ public class DefaultIgnoreFileFilter implements IgnoreFileFilter {
             clearPatterns();
         } else {
             patterns.add(new SimpleStringPattern(pattern));
+            globalMatcher = null;
         }
     }
 
@@ -112,6 +128,7 @@ public class DefaultIgnoreFileFilter implements IgnoreFileFilter {
      */
     public void clearPatterns() {
         patterns.clear();
+        globalMatcher = null;
     }
 
     /**
@@ -125,52 +142,68 @@ public class DefaultIgnoreFileFilter implements IgnoreFileFilter {
      * @param noneCvsFile
      *            is the name of the file to be checked.
      */
-    public boolean shouldBeIgnored(final File directory, final String noneCvsFile) {
-        // current implementation ignores the directory parameter.
-        // in future or different implementations can add the directory
-        // dependant .cvsignore lists
+    public synchronized boolean shouldBeIgnored(final File directory, final String noneCvsFile) {
         if (lastDirectory != directory) {
             lastDirectory = directory;
-            processGlobalPatterns = true;
-            processLocalPatterns = false;
-            localPatterns.clear();
-            final String filename = directory.getPath() + File.separator + ".cvsignore"; // NOI18N
-            final File cvsIgnoreFile = new File(filename);
-            if (cvsIgnoreFile.exists()) {
-                try {
-                    final List<String> list = parseCvsIgnoreFile(cvsIgnoreFile);
-                    for (final String string : list) {
-                        final String s = string.toString();
-                        if (s.equals("!")) { // NOI18N
-                            processGlobalPatterns = false;
-                            localPatterns.clear();
-                        } else {
-                            localPatterns.add(new SimpleStringPattern(s));
-                        }
-                    }
-                } catch (final IOException ex) {
-                    // ignore exception
-                }
+            lastIgnores = getDirectoryIgnores(directory);
+        }
+        if (lastIgnores.processGlobalPatterns) {
+            if (globalMatcher == null) {
+                globalMatcher = new IgnorePatternMatcher(patterns);
+            }
+            if (globalMatcher.matches(noneCvsFile)) {
+                return true;
             }
-            processLocalPatterns = localPatterns.size() > 0;
         }
-        if (processGlobalPatterns) {
-            for (final StringPattern stringPattern : patterns) {
-                final StringPattern pattern = stringPattern;
-                if (pattern.doesMatch(noneCvsFile)) {
-                    return true;
+        return (lastIgnores.localMatcher != null) && lastIgnores.localMatcher.matches(noneCvsFile);
+    }
+
+    /**
+     * Returns the parsed <code>.cvsignore</code> of the directory, from the
+     * cache if the file did not change since it was parsed.
+     */
+    private DirectoryIgnores getDirectoryIgnores(final File directory) {
+        if (directoryIgnores == null) {
+            directoryIgnores = new LinkedHashMap<File, DirectoryIgnores>(64, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<File, DirectoryIgnores> eldest) {
+                    return size() > DIRECTORY_CACHE_SIZE;
                 }
-            }
+            };
         }
-        if (processLocalPatterns) {
-            for (final StringPattern stringPattern : localPatterns) {
-                final StringPattern pattern = stringPattern;
-                if (pattern.doesMatch(noneCvsFile)) {
-                    return true;
+        final File cvsIgnoreFile = new File(directory, ".cvsignore"); // NOI18N
+        final long lastModified = cvsIgnoreFile.lastModified();
+        final long length = cvsIgnoreFile.length();
+        final DirectoryIgnores cached = directoryIgnores.get(directory);
+        if ((cached != null) && (cached.lastModified == lastModified) && (cached.length == length)) {
+            return cached;
+        }
+
+        DirectoryIgnores ignores = NO_IGNORES;
+        if ((lastModified != 0) && cvsIgnoreFile.isFile()) {
+            boolean processGlobalPatterns = true;
+            final List<StringPattern> localPatterns = new LinkedList<StringPattern>();
+            try {
+                for (final String s : parseCvsIgnoreFile(cvsIgnoreFile)) {
+                    if (s.equals("!")) { // NOI18N
+                        processGlobalPatterns = false;
+                        localPatterns.clear();
+                    } else {
+                        localPatterns.add(new SimpleStringPattern(s));
+                    }
                 }
+            } catch (final IOException ex) {
+                // ignore exception
             }
+            final IgnorePatternMatcher localMatcher = new IgnorePatternMatcher(localPatterns);
+            ignores = new DirectoryIgnores(lastModified, length, processGlobalPatterns,
+                            localMatcher.isEmpty() ? null : localMatcher);
         }
-        return false;
+        directoryIgnores.put(directory, ignores);
+        return ignores;
     }
 
     /**
@@ -197,4 +230,22 @@ public class DefaultIgnoreFileFilter implements IgnoreFileFilter {
         }
         return toReturn;
     }
+
+    /**
+     * Parsed <code>.cvsignore</code> of a directory.
+     */
+    private static final class DirectoryIgnores {
+        final long lastModified;
+        final long length;
+        final boolean processGlobalPatterns;
+        final IgnorePatternMatcher localMatcher;
+
+        DirectoryIgnores(final long lastModified, final long length, final boolean processGlobalPatterns,
+                        final IgnorePatternMatcher localMatcher) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.processGlobalPatterns = processGlobalPatterns;
+            this.localMatcher = localMatcher;
+        }
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches a file name against many ignore patterns at once. Patterns without
+ * wildcards, <tt>*suffix</tt> and <tt>prefix*</tt> patterns (the vast
+ * majority in practice) are looked up in hash sets, one lookup per distinct
+ * suffix or prefix length. Only the remaining patterns are tried one by one.
+ * The results are the same as those of {@link StringPattern#doesMatch} on
+ * every pattern.
+ */
+final class IgnorePatternMatcher {
+
+    private static final char MATCH_EACH = '*';
+    private static final char MATCH_ONE = '?';
+
+    private boolean matchAll;
+    private final Set<String> names = new HashSet<String>();
+    private final Set<String> suffixes = new HashSet<String>();
+    private final Set<String> prefixes = new HashSet<String>();
+    private int[] suffixLengths;
+    private int[] prefixLengths;
+    private final List<StringPattern> others = new ArrayList<StringPattern>();
+
+    /**
+     * @param patterns
+     *            the patterns to match, {@link SimpleStringPattern}s are
+     *            compiled, other patterns are tried one by one
+     */
+    IgnorePatternMatcher(final Collection<StringPattern> patterns) {
+        for (final StringPattern pattern : patterns) {
+            if ((pattern instanceof SimpleStringPattern) == false || !add(pattern.toString())) {
+                others.add(pattern);
+            }
+        }
+        suffixLengths = lengths(suffixes);
+        prefixLengths = lengths(prefixes);
+    }
+
+    /**
+     * Returns whether there are no patterns at all.
+     */
+    boolean isEmpty() {
+        return !matchAll && names.isEmpty() && suffixes.isEmpty() && prefixes.isEmpty() && others.isEmpty();
+    }
+
+    /**
+     * Returns whether the name matches any of the patterns.
+     */
+    boolean matches(final String name) {
+        if (matchAll || names.contains(name)) {
+            return true;
+        }
+        final int length = name.length();
+        for (final int suffixLength : suffixLengths) {
+            if (suffixLength > length) {
+                break;
+            }
+            if (suffixes.contains(name.substring(length - suffixLength))) {
+                return true;
+            }
+        }
+        for (final int prefixLength : prefixLengths) {
+            if (prefixLength > length) {
+                break;
+            }
+            if (prefixes.contains(name.substring(0, prefixLength))) {
+                return true;
+            }
+        }
+        for (final StringPattern pattern : others) {
+            if (pattern.doesMatch(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compiles the pattern if it is one of the simple forms.
+     * 
+     * @return <code>false</code> if it has to be matched by
+     *         {@link SimpleStringPattern}
+     */
+    private boolean add(final String pattern) {
+        final int firstWildcard = indexOfWildcard(pattern, 0);
+        if (firstWildcard < 0) {
+            names.add(pattern);
+            return true;
+        }
+        if (pattern.charAt(firstWildcard) != MATCH_EACH) {
+            return false;
+        }
+        if (pattern.length() == 1) {
+            matchAll = true;
+            return true;
+        }
+        if ((firstWildcard == 0) && (indexOfWildcard(pattern, 1) < 0)) {
+            suffixes.add(pattern.substring(1));
+            return true;
+        }
+        if (firstWildcard == pattern.length() - 1) {
+            prefixes.add(pattern.substring(0, firstWildcard));
+            return true;
+        }
+        return false;
+    }
+
+    private static int indexOfWildcard(final String pattern, final int start) {
+        for (int i = start; i < pattern.length(); i++) {
+            final char ch = pattern.charAt(i);
+            if ((ch == MATCH_EACH) || (ch == MATCH_ONE)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] lengths(final Set<String> strings) {
+        final Set<Integer> lengths = new HashSet<Integer>();
+        for (final String string : strings) {
+            lengths.add(Integer.valueOf(string.length()));
+        }
+        final int[] result = new int[lengths.size()];
+        int i = 0;
+        for (final Integer length : lengths) {
+            result[i++] = length.intValue();
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Byte ring buffer between the threads logging protocol data and the
+ * {@link Logger} drain thread that writes it to the log file.
+ * <p>
+ * Producers claim a range of the ring with a compare-and-set, copy their
+ * bytes and publish the range in claim order, so logging never takes a lock.
+ * When the ring is full producers wait for the drain thread rather than drop
+ * data. Draining, rotation and closing are guarded by the instance lock.
+ * <p>
+ * A log file is rotated once it reaches the maximum size: <tt>name.1</tt>
+ * becomes <tt>name.2</tt> and so on up to the maximum number of files, the
+ * full file becomes <tt>name.1</tt>, optionally gzipped to
+ * <tt>name.1.gz</tt>, and a new file is started.
+ */
+final class LogRingBuffer {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final byte[] buffer;
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long published;
+    private volatile long consumed;
+
+    private final File file;
+    private final long maxSize;
+    private final int maxFiles;
+    private final boolean compress;
+
+    private OutputStream out;
+    private long written;
+    private boolean dirty;
+
+    private volatile Thread drainer;
+
+    /**
+     * Creates a ring that drains into the given file.
+     * 
+     * @param capacity
+     *            ring size in bytes, rounded up to a power of two
+     * @param maxSize
+     *            size at which the file is rotated, 0 to never rotate
+     * @param maxFiles
+     *            number of rotated files kept
+     * @param compress
+     *            whether rotated files are gzipped
+     */
+    LogRingBuffer(final int capacity, final File file, final long maxSize, final int maxFiles, final boolean compress)
+                    throws IOException {
+        this(capacity, file, new BufferedOutputStream(new FileOutputStream(file, maxSize > 0)), maxSize, maxFiles,
+                        compress);
+        written = file.length();
+    }
+
+    /**
+     * Creates a ring that drains into the given stream, without rotation.
+     */
+    LogRingBuffer(final int capacity, final OutputStream out) {
+        this(capacity, null, out, 0, 0, false);
+    }
+
+    private LogRingBuffer(final int capacity, final File file, final OutputStream out, final long maxSize,
+                    final int maxFiles, final boolean compress) {
+        int size = CHUNK_SIZE;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new byte[size];
+        mask = size - 1;
+        this.file = file;
+        this.out = out;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+        this.compress = compress;
+    }
+
+    /**
+     * Sets the thread woken up when the ring runs full, null to let producers
+     * drain a full ring themselves.
+     */
+    void setDrainer(final Thread drainer) {
+        this.drainer = drainer;
+    }
+
+    void write(final int b) {
+        final long start = claim(1);
+        buffer[(int) start & mask] = (byte) b;
+        publish(start, start + 1);
+    }
+
+    void write(final byte[] b, int off, int len) {
+        while (len > 0) {
+            final int count = Math.min(len, buffer.length / 2);
+            final long start = claim(count);
+            final int index = (int) start & mask;
+            final int first = Math.min(count, buffer.length - index);
+            System.arraycopy(b, off, buffer, index, first);
+            System.arraycopy(b, off + first, buffer, 0, count - first);
+            publish(start, start + count);
+            off += count;
+            len -= count;
+        }
+    }
+
+    private long claim(final int count) {
+        while (true) {
+            final long start = claimed.get();
+            if (start + count - consumed > buffer.length) {
+                final Thread thread = drainer;
+                if ((thread != null) && thread.isAlive()) {
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(100000);
+                } else {
+                    // no drain thread (any more), the producer drains itself
+                    drain();
+                }
+            } else if (claimed.compareAndSet(start, start + count)) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Ranges are published in the order they were claimed, a producer waits
+     * for the ones claimed before it.
+     */
+    private void publish(final long start, final long end) {
+        while (published != start) {
+            Thread.yield();
+        }
+        published = end;
+    }
+
+    /**
+     * Writes all published bytes to the log.
+     * 
+     * @return true if there were any
+     */
+    synchronized boolean drain() {
+        final long end = published;
+        long position = consumed;
+        if (position == end) {
+            return false;
+        }
+        try {
+            while (position < end) {
+                final int index = (int) position & mask;
+                int count = (int) Math.min(end - position, buffer.length - index);
+                if (maxSize > 0) {
+                    if (written >= maxSize) {
+                        rotate();
+                    }
+                    count = (int) Math.min(count, maxSize - written);
+                }
+                if (out != null) {
+                    out.write(buffer, index, count);
+                }
+                written += count;
+                position += count;
+                consumed = position;
+            }
+            dirty = true;
+        } catch (final IOException ex) {
+            consumed = end;
+            throw new LogException(ex);
+        }
+        return true;
+    }
+
+    /**
+     * Drains the ring and flushes the log.
+     */
+    synchronized void flush() {
+        drain();
+        if (dirty && (out != null)) {
+            try {
+                out.flush();
+                dirty = false;
+            } catch (final IOException ex) {
+                throw new LogException(ex);
+            }
+        }
+    }
+
+    /**
+     * Drains the ring and closes the log. Standard streams are only flushed.
+     */
+    synchronized void close() {
+        try {
+            flush();
+        } finally {
+            if ((file != null) && (out != null)) {
+                try {
+                    out.close();
+                } catch (final IOException ex) {
+                    // ignore
+                }
+            }
+            out = null;
+        }
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        final String suffix = compress ? ".gz" : ""; // NOI18N
+        new File(file.getPath() + '.' + maxFiles + suffix).delete();
+        for (int i = maxFiles - 1; i > 0; i--) {
+            new File(file.getPath() + '.' + i + suffix).renameTo(new File(file.getPath() + '.' + (i + 1) + suffix));
+        }
+        if (maxFiles > 0) {
+            final File rotated = new File(file.getPath() + ".1"); // NOI18N
+            if (file.renameTo(rotated) && compress) {
+                gzip(rotated, new File(rotated.getPath() + suffix));
+            }
+        }
+        out = new BufferedOutputStream(new FileOutputStream(file));
+        written = 0;
+    }
+
+    private static void gzip(final File source, final File target) throws IOException {
+        final InputStream in = new FileInputStream(source);
+        try {
+            final OutputStream gzip = new GZIPOutputStream(new FileOutputStream(target));
+            try {
+                final byte[] chunk = new byte[CHUNK_SIZE];
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    gzip.write(chunk, 0, read);
+                }
+            } finally {
+                gzip.close();
+            }
+        } finally {
+            in.close();
+        }
+        source.delete();
+    }
+
+    /**
+     * Wraps an IOException of the log file, reported by {@link Logger}.
+     */
+    static final class LogException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        LogException(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
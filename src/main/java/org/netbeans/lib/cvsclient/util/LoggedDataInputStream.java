@@ -51,25 +51,78 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
 
 /**
  * This input stream worked exactly like the normal DataInputStream except that
  * it logs anything read to a file
+ * <p>
+ * Data are pulled from the underlying stream in bulk into an internal buffer
+ * and lines are scanned directly over that buffer. In blocking mode the
+ * underlying stream is read directly; it must then wake up on
+ * {@link Thread#interrupt()} by itself (see
+ * {@link org.netbeans.lib.cvsclient.connection.InterruptibleSocketInputStream}). Otherwise the stream falls back to
+ * polling {@link InputStream#available()}.
  * 
  * @author Robert Greig
  */
 public class LoggedDataInputStream extends FilterInputStream {
 
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * How long to sleep between two <tt>available()</tt> probes in polling
+     * mode.
+     */
+    private static final long POLL_INTERVAL = 100;
+
     private long counter;
 
+    private final boolean blocking;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
     /**
-     * Construct a logged stream using the specified underlying stream
+     * Position of the next byte to be read from the buffer.
+     */
+    private int pos;
+
+    /**
+     * Number of valid bytes in the buffer.
+     */
+    private int count;
+
+    /**
+     * Construct a logged stream using the specified underlying stream. The
+     * stream polls for available data so that reads can be interrupted.
      * 
      * @param in
      *            the stream
      */
     public LoggedDataInputStream(final InputStream in) {
+        this(in, false);
+    }
+
+    /**
+     * Construct a logged stream using the specified underlying stream
+     * 
+     * @param in
+     *            the stream
+     * @param blocking
+     *            <code>true</code> if reads of the underlying stream can block,
+     *            because the stream itself reacts to thread interrupts by
+     *            throwing {@link InterruptedIOException}
+     */
+    public LoggedDataInputStream(final InputStream in, final boolean blocking) {
         super(in);
+        this.blocking = blocking;
+    }
+
+    /**
+     * Returns whether the underlying stream is read in blocking mode.
+     */
+    public boolean isBlocking() {
+        return blocking;
     }
 
     /**
@@ -94,36 +147,33 @@ public class LoggedDataInputStream extends FilterInputStream {
      *             at stream end
      */
     public ByteArray readLineBytes() throws IOException {
-        int ch;
         boolean throwEOF = true;
         final ByteArray byteArray = new ByteArray();
         loop: while (true) {
-            if (Thread.interrupted()) {
-                Thread.currentThread().interrupt();
-                break;
-            }
-            if (in.available() == 0) {
+            if (pos == count) {
+                final int read;
                 try {
-                    Thread.sleep(100);
-                } catch (final InterruptedException iex) {
-                    Thread.currentThread().interrupt();
+                    read = fill();
+                } catch (final InterruptedIOException iex) {
                     break loop;
                 }
-                continue;
-            }
-            ch = in.read();
-            counter++;
-            switch (ch) {
-            case -1:
-                if (throwEOF) {
-                    throw new EOFException();
+                if (read == -1) {
+                    if (throwEOF) {
+                        throw new EOFException();
+                    }
+                    break loop;
                 }
-            case '\n':
-                break loop;
-            default:
-                byteArray.add((byte) ch);
             }
             throwEOF = false;
+            for (int i = pos; i < count; i++) {
+                if (buffer[i] == '\n') {
+                    byteArray.add(buffer, pos, i - pos);
+                    pos = i + 1;
+                    break loop;
+                }
+            }
+            byteArray.add(buffer, pos, count - pos);
+            pos = count;
         }
         final byte[] bytes = byteArray.getBytes();
         Logger.logInput(bytes);
@@ -138,37 +188,69 @@ public class LoggedDataInputStream extends FilterInputStream {
      *            blocks until specifid number of bytes is read.
      */
     public byte[] readBytes(int len) throws IOException {
-        int ch;
         final ByteArray byteArray = new ByteArray();
-        loop: while (len != 0) {
-            if (Thread.interrupted()) {
-                Thread.currentThread().interrupt();
-                break;
-            }
-            if (in.available() == 0) {
+        while (len != 0) {
+            if (pos == count) {
+                final int read;
                 try {
-                    Thread.sleep(100);
-                } catch (final InterruptedException iex) {
-                    Thread.currentThread().interrupt();
-                    break loop;
+                    read = fill();
+                } catch (final InterruptedIOException iex) {
+                    break;
+                }
+                if (read == -1) {
+                    break;
                 }
-                continue;
-            }
-            ch = in.read();
-            counter++;
-            switch (ch) {
-            case -1:
-                break loop;
-            default:
-                byteArray.add((byte) ch);
-                len--;
             }
+            final int chunk = Math.min(len, count - pos);
+            byteArray.add(buffer, pos, chunk);
+            pos += chunk;
+            len -= chunk;
         }
         final byte[] bytes = byteArray.getBytes();
         Logger.logInput(bytes);
         return bytes;
     }
 
+    /**
+     * Refills the internal buffer. Keeps the interrupt status of the current
+     * thread set if the read was interrupted.
+     * 
+     * @return number of bytes read or <code>-1</code> at stream end
+     * @throws InterruptedIOException
+     *             on thread interrupt
+     */
+    private int fill() throws IOException {
+        pos = 0;
+        count = 0;
+        int read;
+        try {
+            if (blocking) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException();
+                }
+                read = in.read(buffer, 0, buffer.length);
+            } else {
+                int available;
+                while ((available = in.available()) == 0) {
+                    try {
+                        Thread.sleep(POLL_INTERVAL);
+                    } catch (final InterruptedException iex) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                read = in.read(buffer, 0, Math.min(available, buffer.length));
+            }
+        } catch (final InterruptedIOException iex) {
+            Thread.currentThread().interrupt();
+            throw iex;
+        }
+        if (read > 0) {
+            count = read;
+            counter += read;
+        }
+        return read;
+    }
+
     /**
      * Closes this input stream and releases any system resources associated
      * with the stream.
@@ -178,18 +260,25 @@ public class LoggedDataInputStream extends FilterInputStream {
         in.close();
     }
 
+    /**
+     * Returns the number of bytes that can be read without blocking, including
+     * the bytes already buffered.
+     */
+    @Override
+    public int available() throws IOException {
+        if (pos < count) {
+            return count - pos;
+        }
+        return in.available();
+    }
+
     /**
      * Reads up to byte.length bytes of data from this input stream into an
      * array of bytes.
      */
     @Override
     public int read(final byte[] b) throws IOException {
-        final int read = in.read(b);
-        if (read != -1) {
-            Logger.logInput(b, 0, read);
-            counter += read;
-        }
-        return read;
+        return read(b, 0, b.length);
     }
 
     /**
@@ -198,6 +287,16 @@ public class LoggedDataInputStream extends FilterInputStream {
      */
     @Override
     public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos < count) {
+            final int read = Math.min(len, count - pos);
+            System.arraycopy(buffer, pos, b, off, read);
+            pos += read;
+            Logger.logInput(b, off, read);
+            return read;
+        }
         final int read = in.read(b, off, len);
         if (read != -1) {
             Logger.logInput(b, off, read);
@@ -208,10 +307,18 @@ public class LoggedDataInputStream extends FilterInputStream {
 
     @Override
     public long skip(final long n) throws IOException {
-        final long skip = super.skip(n);
+        long skip;
+        if (pos < count) {
+            skip = Math.min(n, count - pos);
+            pos += skip;
+        } else {
+            skip = in.skip(n);
+            if (skip > 0) {
+                counter += skip;
+            }
+        }
         if (skip > 0) {
             Logger.logInput(new String("<skipped " + skip + " bytes>").getBytes("utf8")); // NOI18N
-            counter += skip;
         }
         return skip;
     }
@@ -224,24 +331,38 @@ public class LoggedDataInputStream extends FilterInputStream {
      */
     @Override
     public int read() throws IOException {
-        while (in.available() == 0) {
-            try {
-                Thread.sleep(100);
-            } catch (final InterruptedException iex) {
-                Thread.currentThread().interrupt();
-                throw new InterruptedIOException();
+        if (pos == count) {
+            if (fill() == -1) {
+                return -1;
             }
         }
-
-        final int i = super.read();
-        if (i != -1) {
-            Logger.logInput((char) i);
-            counter++;
-        }
+        final int i = buffer[pos++] & 0xff;
+        Logger.logInput((char) i);
         return i;
     }
 
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the underlying stream. Bytes that were already buffered but not
+     * consumed yet are handed over to the returned stream, so it can safely
+     * be wrapped and passed back to {@link #setUnderlyingStream}.
+     */
     public InputStream getUnderlyingStream() {
+        if (pos < count) {
+            final PushbackInputStream pushback = new PushbackInputStream(in, count - pos);
+            try {
+                pushback.unread(buffer, pos, count - pos);
+            } catch (final IOException ex) {
+                throw new IllegalStateException(ex.getMessage());
+            }
+            pos = 0;
+            count = 0;
+            in = pushback;
+        }
         return in;
     }
 
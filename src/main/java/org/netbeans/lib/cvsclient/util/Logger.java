@@ -46,27 +46,33 @@
  *****************************************************************************/
 package org.netbeans.lib.cvsclient.util;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Handles the logging of communication to and from the server
+ * <p>
+ * Logged data is copied into ring buffers and written to the log files by a
+ * background thread, so that logging costs the protocol threads little more
+ * than a memory copy. The log files are rotated by size when the
+ * <tt>cvsClientLog.maxSize</tt> property is set, keeping
+ * <tt>cvsClientLog.maxFiles</tt> old files (5 by default) that are gzipped if
+ * <tt>cvsClientLog.compress</tt> is <code>true</code>.
  * 
  * @author Robert Greig
  * @author Petr Kuzel rewriten to streams
  */
 public final class Logger {
     /**
-     * The output stream to use to write communication sent to the server
+     * The buffer for communication sent to the server
      */
-    private static OutputStream outLogStream;
+    private static volatile LogRingBuffer outLog;
 
     /**
-     * The output stream to use to write communication received from the server
+     * The buffer for communication received from the server
      */
-    private static OutputStream inLogStream;
+    private static volatile LogRingBuffer inLog;
 
     /**
      * The log files path. If the property is set to the constant "system" then
@@ -75,50 +81,145 @@ public final class Logger {
      */
     private static final String LOG_PROPERTY = "cvsClientLog"; // NOI18N
 
+    /**
+     * Size in bytes of each ring buffer.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
     /**
      * Whether we are logging or not
      */
-    private static boolean logging;
+    private static volatile boolean logging;
+
+    private static Drainer drainer;
+
+    private static boolean shutdownHookAdded;
 
     static {
         setLogging(System.getProperty(LOG_PROPERTY));
     }
 
     public static void setLogging(final String logPath) {
-        logging = (logPath != null);
+        setLogging(logPath, Long.getLong(LOG_PROPERTY + ".maxSize", 0).longValue(), // NOI18N
+                        Integer.getInteger(LOG_PROPERTY + ".maxFiles", 5).intValue(), // NOI18N
+                        Boolean.getBoolean(LOG_PROPERTY + ".compress")); // NOI18N
+    }
+
+    /**
+     * Starts logging to the given path, stopping any previous logging first.
+     * 
+     * @param logPath
+     *            the path of the log files without the <tt>.in</tt> and
+     *            <tt>.out</tt> extensions, "system" for System.err or
+     *            <code>null</code> to stop logging
+     * @param maxSize
+     *            size at which a log file is rotated, 0 to never rotate
+     * @param maxFiles
+     *            number of rotated files kept for each log
+     * @param compress
+     *            whether rotated files are gzipped
+     */
+    public static synchronized void setLogging(final String logPath, final long maxSize, final int maxFiles,
+                    final boolean compress) {
+        stopLogging();
+        if (logPath == null) {
+            return;
+        }
 
         try {
-            if (logging) {
-                if (logPath.equals("system")) { // NOI18N
-                    outLogStream = System.err;
-                    inLogStream = System.err;
-                } else {
-                    outLogStream = new BufferedOutputStream(new FileOutputStream(logPath + ".out")); // NOI18N
-                    inLogStream = new BufferedOutputStream(new FileOutputStream(logPath + ".in")); // NOI18N
-                }
+            if (logPath.equals("system")) { // NOI18N
+                outLog = new LogRingBuffer(BUFFER_SIZE, System.err);
+                inLog = outLog;
+            } else {
+                outLog = new LogRingBuffer(BUFFER_SIZE, new File(logPath + ".out"), maxSize, maxFiles, compress); // NOI18N
+                inLog = new LogRingBuffer(BUFFER_SIZE, new File(logPath + ".in"), maxSize, maxFiles, compress); // NOI18N
             }
         } catch (final IOException e) {
             System.err.println("Unable to create log files: " + e); // NOI18N
             System.err.println("Logging DISABLED"); // NOI18N
-            logging = false;
-            try {
-                if (outLogStream != null) {
-                    outLogStream.close();
-                }
-            } catch (final IOException ex2) {
-                // ignore, if we get one here we really are screwed
+            if (outLog != null) {
+                outLog.close();
             }
+            outLog = null;
+            inLog = null;
+            return;
+        }
 
-            try {
-                if (inLogStream != null) {
-                    inLogStream.close();
+        drainer = new Drainer(inLog, outLog);
+        final Thread thread = new Thread(drainer, "CVS protocol logger"); // NOI18N
+        thread.setDaemon(true);
+        inLog.setDrainer(thread);
+        outLog.setDrainer(thread);
+        thread.start();
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread("CVS protocol logger shutdown") { // NOI18N
+                @Override
+                public void run() {
+                    synchronized (Logger.class) {
+                        stopLogging();
+                    }
                 }
-            } catch (final IOException ex2) {
-                // ignore, if we get one here we really are screwed
+            });
+            shutdownHookAdded = true;
+        }
+        logging = true;
+    }
+
+    private static void stopLogging() {
+        logging = false;
+        if (drainer != null) {
+            drainer.stop();
+            drainer = null;
+        }
+        final LogRingBuffer in = inLog;
+        final LogRingBuffer out = outLog;
+        inLog = null;
+        outLog = null;
+        try {
+            if (in != null) {
+                in.close();
+            }
+            if ((out != null) && (out != in)) {
+                out.close();
             }
+        } catch (final LogRingBuffer.LogException ex) {
+            System.err.println("Could not write to log file: " + ex.getCause()); // NOI18N
         }
     }
 
+    /**
+     * Writes everything logged so far to the log files.
+     */
+    public static void flush() {
+        final LogRingBuffer in = inLog;
+        final LogRingBuffer out = outLog;
+        try {
+            if (in != null) {
+                in.flush();
+            }
+            if ((out != null) && (out != in)) {
+                out.flush();
+            }
+        } catch (final LogRingBuffer.LogException ex) {
+            disable(ex);
+        }
+    }
+
+    private static synchronized void disable(final LogRingBuffer.LogException ex) {
+        if (!logging) {
+            return;
+        }
+        System.err.println("Could not write to log file: " + ex.getCause()); // NOI18N
+        System.err.println("Logging DISABLED."); // NOI18N
+        logging = false;
+        if (drainer != null) {
+            drainer.stop();
+            drainer = null;
+        }
+        inLog = null;
+        outLog = null;
+    }
+
     /**
      * Log a message received from the server. The message is logged if logging
      * is enabled
@@ -142,13 +243,13 @@ public final class Logger {
             return;
         }
 
-        try {
-            inLogStream.write(received, offset, len);
-            inLogStream.flush();
-        } catch (final IOException ex) {
-            System.err.println("Could not write to log file: " + ex); // NOI18N
-            System.err.println("Logging DISABLED."); // NOI18N
-            logging = false;
+        final LogRingBuffer log = inLog;
+        if (log != null) {
+            try {
+                log.write(received, offset, len);
+            } catch (final LogRingBuffer.LogException ex) {
+                disable(ex);
+            }
         }
     }
 
@@ -164,13 +265,13 @@ public final class Logger {
             return;
         }
 
-        try {
-            inLogStream.write(received);
-            inLogStream.flush();
-        } catch (final IOException ex) {
-            System.err.println("Could not write to log file: " + ex); // NOI18N
-            System.err.println("Logging DISABLED."); // NOI18N
-            logging = false;
+        final LogRingBuffer log = inLog;
+        if (log != null) {
+            try {
+                log.write(received);
+            } catch (final LogRingBuffer.LogException ex) {
+                disable(ex);
+            }
         }
     }
 
@@ -186,13 +287,75 @@ public final class Logger {
             return;
         }
 
-        try {
-            outLogStream.write(sent);
-            outLogStream.flush();
-        } catch (final IOException ex) {
-            System.err.println("Could not write to log file: " + ex); // NOI18N
-            System.err.println("Logging DISABLED."); // NOI18N
-            logging = false;
+        final LogRingBuffer log = outLog;
+        if (log != null) {
+            try {
+                log.write(sent, 0, sent.length);
+            } catch (final LogRingBuffer.LogException ex) {
+                disable(ex);
+            }
+        }
+    }
+
+    /**
+     * Moves logged data from the ring buffers to the log files, flushing
+     * them whenever there is nothing more to write.
+     */
+    private static final class Drainer implements Runnable {
+
+        private static final long INTERVAL = 1000000;
+
+        private final LogRingBuffer in;
+        private final LogRingBuffer out;
+        private volatile boolean stopped;
+        private Thread thread;
+
+        Drainer(final LogRingBuffer in, final LogRingBuffer out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        public void run() {
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            try {
+                while (!stopped) {
+                    boolean drained = in.drain();
+                    if (out != in) {
+                        drained |= out.drain();
+                    }
+                    if (!drained) {
+                        in.flush();
+                        out.flush();
+                    }
+                    LockSupport.parkNanos(drained ? INTERVAL : 10 * INTERVAL);
+                }
+            } catch (final LogRingBuffer.LogException ex) {
+                if (!stopped) {
+                    disable(ex);
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            // producers that still hold on to the buffers must not wait for
+            // this thread any more
+            in.setDrainer(null);
+            out.setDrainer(null);
+            final Thread current;
+            synchronized (this) {
+                current = thread;
+            }
+            if ((current != null) && (current != Thread.currentThread())) {
+                LockSupport.unpark(current);
+                try {
+                    current.join(1000);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 }
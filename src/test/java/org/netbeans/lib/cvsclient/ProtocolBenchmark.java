@@ -0,0 +1,341 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
+import org.netbeans.lib.cvsclient.command.Command;
+import org.netbeans.lib.cvsclient.command.GlobalOptions;
+import org.netbeans.lib.cvsclient.command.annotate.AnnotateCommand;
+import org.netbeans.lib.cvsclient.command.checkout.CheckoutCommand;
+import org.netbeans.lib.cvsclient.command.log.RlogCommand;
+import org.netbeans.lib.cvsclient.command.status.StatusCommand;
+import org.netbeans.lib.cvsclient.connection.PServerConnection;
+import org.netbeans.lib.cvsclient.event.CVSAdapter;
+import org.netbeans.lib.cvsclient.event.FileAddedEvent;
+import org.netbeans.lib.cvsclient.event.FileInfoEvent;
+import org.netbeans.lib.cvsclient.event.FileUpdatedEvent;
+
+/**
+ * Replays large synthetic server transcripts through {@link PseudoCvsServer}
+ * over a loopback socket and reports end to end {@link Client} throughput.
+ * <p>
+ * Four transcripts are generated: a checkout of <tt>files</tt> files of
+ * <tt>size</tt> bytes each, an rlog of <tt>revisions</tt> revisions, an
+ * annotate of <tt>lines</tt> lines and a status of <tt>files</tt> files. Each
+ * one is reported as units (files, revisions or lines) per second, MB of
+ * server responses per second, bytes allocated per unit by the thread
+ * running the command and the garbage collections that happened meanwhile.
+ * Nothing leaves the machine, the benchmark runs fully offline.
+ * <p>
+ * Run with:
+ * 
+ * <pre>
+ *   java -cp target/classes:target/test-classes org.netbeans.lib.cvsclient.ProtocolBenchmark [files] [size] [revisions] [lines]
+ * </pre>
+ */
+public class ProtocolBenchmark {
+
+    private static final String HANDSHAKE = "I LOVE YOU\n" // NOI18N
+                    + "Valid-requests Root Valid-responses valid-requests Repository Directory Max-dotdot " // NOI18N
+                    + "Static-directory Sticky Checkin-prog Update-prog Entry Kopt Checkin-time Modified " // NOI18N
+                    + "Is-modified UseUnchanged Unchanged Notify Questionable Case Argument Argumentx " // NOI18N
+                    + "Global_option Gzip-stream wrapper-sendme-rcsOptions Set expand-modules ci co update " // NOI18N
+                    + "diff log rlog add remove update-patches gzip-file-contents status rdiff tag rtag " // NOI18N
+                    + "import admin export history release watch-on watch-off watch-add watch-remove " // NOI18N
+                    + "watchers editors init annotate rannotate noop version\n" // NOI18N
+                    + "ok\n"; // NOI18N
+
+    private static final String MODULE = "bench"; // NOI18N
+
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    public static void main(final String[] args) throws Exception {
+        final int files = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        final int revisions = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        final int lines = args.length > 3 ? Integer.parseInt(args[3]) : 50000;
+
+        final Scenario[] scenarios = {
+            new Scenario("checkout", "files", files, createCheckout(files, size)) { // NOI18N
+                @Override
+                Command createCommand() {
+                    final CheckoutCommand checkout = new CheckoutCommand();
+                    checkout.setModule(MODULE);
+                    return checkout;
+                }
+            },
+            new Scenario("rlog    ", "revisions", revisions, createRlog(revisions)) { // NOI18N
+                @Override
+                Command createCommand() {
+                    final RlogCommand rlog = new RlogCommand();
+                    rlog.setModule(MODULE + "/file.txt"); // NOI18N
+                    return rlog;
+                }
+            },
+            new Scenario("annotate", "lines", lines, createAnnotate(lines)) { // NOI18N
+                @Override
+                Command createCommand() {
+                    return new AnnotateCommand();
+                }
+            },
+            new Scenario("status  ", "files", files, createStatus(files)) { // NOI18N
+                @Override
+                Command createCommand() {
+                    return new StatusCommand();
+                }
+            },
+        };
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + (round + 1)); // NOI18N
+            for (int i = 0; i < scenarios.length; i++) {
+                scenarios[i].run();
+            }
+        }
+    }
+
+    private static byte[] createCheckout(final int files, final int size) throws IOException {
+        final StringBuffer content = new StringBuffer(size);
+        while (content.length() < size) {
+            final int length = Math.min(64, size - content.length()) - 1;
+            for (int i = 0; i < length; i++) {
+                content.append((char) ('a' + i % 26));
+            }
+            content.append('\n');
+        }
+
+        final StringBuffer sb = new StringBuffer(HANDSHAKE);
+        sb.append("Module-expansion ").append(MODULE).append('\n'); // NOI18N
+        sb.append("ok\n"); // NOI18N
+        for (int i = 0; i < files; i++) {
+            final String directory = MODULE + "/d" + (i / FILES_PER_DIRECTORY) + '/'; // NOI18N
+            final String name = "f" + i + ".txt"; // NOI18N
+            sb.append("Created ").append(directory).append('\n'); // NOI18N
+            sb.append("/cvs/").append(directory).append(name).append('\n'); // NOI18N
+            sb.append('/').append(name).append("/1.1///\n"); // NOI18N
+            sb.append("u=rw,g=rw,o=rw\n"); // NOI18N
+            sb.append(size).append('\n');
+            sb.append(content);
+        }
+        sb.append("ok\n"); // NOI18N
+        return sb.toString().getBytes("US-ASCII"); // NOI18N
+    }
+
+    private static byte[] createRlog(final int revisions) throws IOException {
+        final StringBuffer sb = new StringBuffer(HANDSHAKE);
+        sb.append("M \n"); // NOI18N
+        sb.append("M RCS file: /cvs/").append(MODULE).append("/file.txt,v\n"); // NOI18N
+        sb.append("M head: 1.").append(revisions).append('\n'); // NOI18N
+        sb.append("M branch:\n"); // NOI18N
+        sb.append("M locks: strict\n"); // NOI18N
+        sb.append("M access list:\n"); // NOI18N
+        sb.append("M symbolic names:\n"); // NOI18N
+        sb.append("M keyword substitution: kv\n"); // NOI18N
+        sb.append("M total revisions: ").append(revisions).append(";\tselected revisions: ").append(revisions) // NOI18N
+                        .append('\n');
+        sb.append("M description:\n"); // NOI18N
+        for (int i = revisions; i > 0; i--) {
+            sb.append("M ----------------------------\n"); // NOI18N
+            sb.append("M revision 1.").append(i).append('\n'); // NOI18N
+            sb.append("M date: 2008/09/11 10:").append(i % 60 / 10).append(i % 10) // NOI18N
+                            .append(":00;  author: user").append(i % 7) // NOI18N
+                            .append(";  state: Exp;  lines: +1 -0\n"); // NOI18N
+            sb.append("M Change number ").append(i).append('\n'); // NOI18N
+        }
+        sb.append("M =============================================================================\n"); // NOI18N
+        sb.append("ok\n"); // NOI18N
+        return sb.toString().getBytes("US-ASCII"); // NOI18N
+    }
+
+    private static byte[] createAnnotate(final int lines) throws IOException {
+        final StringBuffer sb = new StringBuffer(HANDSHAKE);
+        sb.append("E Annotations for file.txt\n"); // NOI18N
+        sb.append("E ***************\n"); // NOI18N
+        for (int i = 0; i < lines; i++) {
+            sb.append("M 1.").append(i % 50 + 1).append("          (user").append(i % 7) // NOI18N
+                            .append("    11-Sep-08): line ").append(i).append(" of the annotated file\n"); // NOI18N
+        }
+        sb.append("ok\n"); // NOI18N
+        return sb.toString().getBytes("US-ASCII"); // NOI18N
+    }
+
+    private static byte[] createStatus(final int files) throws IOException {
+        final StringBuffer sb = new StringBuffer(HANDSHAKE);
+        sb.append("E cvs server: Examining .\n"); // NOI18N
+        for (int i = 0; i < files; i++) {
+            sb.append("M ===================================================================\n"); // NOI18N
+            sb.append("M File: f").append(i).append(".txt             \tStatus: Up-to-date\n"); // NOI18N
+            sb.append("M \n"); // NOI18N
+            sb.append("M    Working revision:\t1.1\n"); // NOI18N
+            sb.append("M    Repository revision:\t1.1\t/cvs/").append(MODULE).append("/f").append(i) // NOI18N
+                            .append(".txt,v\n"); // NOI18N
+            sb.append("M    Sticky Tag:\t\t(none)\n"); // NOI18N
+            sb.append("M    Sticky Date:\t\t(none)\n"); // NOI18N
+            sb.append("M    Sticky Options:\t(none)\n"); // NOI18N
+            sb.append("M \n"); // NOI18N
+        }
+        sb.append("ok\n"); // NOI18N
+        return sb.toString().getBytes("US-ASCII"); // NOI18N
+    }
+
+    /**
+     * One transcript and the command that consumes it.
+     */
+    private abstract static class Scenario extends CVSAdapter {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String unit;
+        private final int units;
+        private final byte[] transcript;
+
+        private int updated;
+        private int infos;
+
+        Scenario(final String name, final String unit, final int units, final byte[] transcript) {
+            this.name = name;
+            this.unit = unit;
+            this.units = units;
+            this.transcript = transcript;
+        }
+
+        abstract Command createCommand();
+
+        @Override
+        public void fileAdded(final FileAddedEvent e) {
+            updated++;
+        }
+
+        @Override
+        public void fileUpdated(final FileUpdatedEvent e) {
+            updated++;
+        }
+
+        @Override
+        public void fileInfoGenerated(final FileInfoEvent e) {
+            infos++;
+        }
+
+        void run() throws Exception {
+            final File tmpDir = TestKit.createTmpFolder("protocolBenchmark"); // NOI18N
+            final PseudoCvsServer cvss = new PseudoCvsServer(new ByteArrayInputStream(transcript));
+            try {
+                new Thread(cvss, "PseudoCvsServer").start(); // NOI18N
+                final String cvsRoot = cvss.getCvsRoot();
+                final GlobalOptions gtx = new GlobalOptions();
+                gtx.setCVSRoot(cvsRoot);
+                final PServerConnection connection = new PServerConnection(CVSRoot.parse(cvsRoot));
+                final Client client = new Client(connection, new StandardAdminHandler());
+                client.setLocalPath(tmpDir.getAbsolutePath());
+                client.getEventManager().addCVSListener(this);
+                updated = 0;
+                infos = 0;
+
+                final long[] gcBefore = collections();
+                final long allocatedBefore = allocatedBytes();
+                final long start = System.nanoTime();
+                try {
+                    client.executeCommand(createCommand(), gtx);
+                } finally {
+                    connection.close();
+                }
+                final long nanos = System.nanoTime() - start;
+                final long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+                final long[] gcAfter = collections();
+
+                System.out.println(name + ": " + units + " " + unit + " in " + (nanos / 1000000) + " ms, " // NOI18N
+                                + (units * 1000000000L / Math.max(1, nanos)) + " " + unit + "/sec, " // NOI18N
+                                + (transcript.length * 1000000000L / 1048576 / Math.max(1, nanos)) + " MB/sec, " // NOI18N
+                                + (allocated < 0 ? "n/a" : String.valueOf(allocated / units)) + " bytes/" // NOI18N
+                                + unit.substring(0, unit.length() - 1) + ", " // NOI18N
+                                + (gcAfter[0] - gcBefore[0]) + " GCs in " + (gcAfter[1] - gcBefore[1]) + " ms" // NOI18N
+                                + " (" + updated + " files written, " + infos + " file infos)"); // NOI18N
+            } finally {
+                cvss.stop();
+                TestKit.deleteRecursively(tmpDir);
+            }
+        }
+    }
+
+    /**
+     * @return number of collections and accumulated collection time in
+     *         milliseconds over all collectors
+     */
+    private static long[] collections() {
+        long count = 0;
+        long time = 0;
+        for (final GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+
+    /**
+     * Uses the HotSpot specific <tt>getThreadAllocatedBytes</tt> when
+     * available.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            final Method method = Class.forName("com.sun.management.ThreadMXBean") // NOI18N
+                            .getMethod("getThreadAllocatedBytes", long.class); // NOI18N
+            return ((Long) method.invoke(bean, Thread.currentThread().getId())).longValue();
+        } catch (final Exception ex) {
+            return -1;
+        }
+    }
+}
@@ -244,6 +244,18 @@ public final class PseudoCvsServer implements Runnable {
                 if (consumeInput()) {
                     return;
                 }
+                if (simulationMode == 0) {
+                    // nothing to simulate, replay in chunks so that large
+                    // transcripts are not throttled by the server
+                    final byte[] chunk = new byte[8192];
+                    int read;
+                    while ((read = fakeDataStream.read(chunk)) != -1) {
+                        socketOut.write(chunk, 0, read);
+                        if (consumeInput()) {
+                            return;
+                        }
+                    }
+                }
                 int nextByte = fakeDataStream.read();
                 while (nextByte != -1) {
                     if (outputCounter-- == 0) {
@@ -365,7 +377,18 @@ public final class PseudoCvsServer implements Runnable {
         while (stopped == false) {
             try {
                 wait(100);
-                consumeInput();
+                if (clientSocket.isClosed() == false) {
+                    consumeInput();
+                }
+            } catch (InterruptedException e) {
+                throwable = e;
+            }
+        }
+        // a fast client may stop us before its last requests arrived
+        for (int grace = 0; grace < 5 && clientSocket.isClosed() == false; grace++) {
+            consumeInput();
+            try {
+                wait(20);
             } catch (InterruptedException e) {
                 throwable = e;
             }
@@ -44,22 +44,31 @@
 
 package org.netbeans.lib.cvsclient;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
+import org.netbeans.lib.cvsclient.command.FileInfoContainer;
 import org.netbeans.lib.cvsclient.command.GlobalOptions;
+import org.netbeans.lib.cvsclient.command.log.LogInformation;
+import org.netbeans.lib.cvsclient.command.log.LogRevisionInformation;
 import org.netbeans.lib.cvsclient.command.log.RlogCommand;
 import org.netbeans.lib.cvsclient.connection.Connection;
 import org.netbeans.lib.cvsclient.connection.PServerConnection;
+import org.netbeans.lib.cvsclient.event.CVSAdapter;
+import org.netbeans.lib.cvsclient.event.FileInfoEvent;
 
 /**
  * Rlog command testcase.
@@ -148,5 +157,71 @@ public class RlogTest {
         TestKit.deleteRecursively(tmpDir);
 
     }
-    
+
+    /**
+     * With streaming revisions each revision is fired on its own, after the
+     * header of its file.
+     */
+    @Test
+    public void testStreamingRevisions() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("rlogTest");
+        final StringBuffer sb = new StringBuffer();
+        sb.append("I LOVE YOU\n");
+        sb.append("Valid-requests Root Valid-responses valid-requests Directory Argument rlog\n");
+        sb.append("ok\n");
+        for (int f = 0; f < 2; f++) {
+            sb.append("M \n");
+            sb.append("M RCS file: /cvs/folder/file" + f + ",v\n");
+            sb.append("M head: 1.3\n");
+            sb.append("M symbolic names:\n");
+            sb.append("M \trelease: 1.2\n");
+            sb.append("M keyword substitution: kv\n");
+            sb.append("M total revisions: 3;\tselected revisions: 3\n");
+            sb.append("M description:\n");
+            for (int i = 3; i > 0; i--) {
+                sb.append("M ----------------------------\n");
+                sb.append("M revision 1." + i + "\n");
+                sb.append("M date: 2008/09/11 10:00:0" + i + ";  author: user;  state: Exp;  lines: +1 -0\n");
+                sb.append("M message " + i + "\n");
+            }
+            sb.append("M =============================================================================\n");
+        }
+        sb.append("ok\n");
+
+        final PseudoCvsServer cvss = new PseudoCvsServer(new ByteArrayInputStream(sb.toString().getBytes("US-ASCII")));
+        final List<String> events = new ArrayList<String>();
+        try {
+            new Thread(cvss).start();
+            String cvsRoot = cvss.getCvsRoot();
+            GlobalOptions gtx = new GlobalOptions();
+            gtx.setCVSRoot(cvsRoot);
+            Connection connection = new PServerConnection(CVSRoot.parse(cvsRoot));
+            Client client = new Client(connection, new StandardAdminHandler());
+            client.setLocalPath(tmpDir.getAbsolutePath());
+            client.getEventManager().addCVSListener(new CVSAdapter() {
+                @Override
+                public void fileInfoGenerated(FileInfoEvent e) {
+                    FileInfoContainer info = e.getInfoContainer();
+                    if (info instanceof LogInformation) {
+                        LogInformation header = (LogInformation) info;
+                        assertTrue(header.getRevisionList().isEmpty());
+                        events.add(header.getRepositoryFilename() + " " + header.getSymName("release").getRevision());
+                    } else {
+                        LogInformation.Revision revision = ((LogRevisionInformation) info).getRevision();
+                        events.add(revision.getNumber() + " " + revision.getMessage().trim());
+                    }
+                }
+            });
+
+            RlogCommand rlog = new RlogCommand();
+            rlog.setModule("folder");
+            rlog.setStreamingRevisions(true);
+            assertTrue(client.executeCommand(rlog, gtx));
+        } finally {
+            cvss.stop();
+            TestKit.deleteRecursively(tmpDir);
+        }
+        assertEquals("[/cvs/folder/file0,v 1.2, 1.3 message 3, 1.2 message 2, 1.1 message 1, "
+                + "/cvs/folder/file1,v 1.2, 1.3 message 3, 1.2 message 2, 1.1 message 1]", events.toString());
+    }
 }
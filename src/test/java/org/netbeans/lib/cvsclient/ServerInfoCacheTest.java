@@ -0,0 +1,258 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
+import org.netbeans.lib.cvsclient.command.GlobalOptions;
+import org.netbeans.lib.cvsclient.command.KeywordSubstitutionOptions;
+import org.netbeans.lib.cvsclient.command.checkout.CheckoutCommand;
+import org.netbeans.lib.cvsclient.command.status.StatusCommand;
+import org.netbeans.lib.cvsclient.connection.PServerConnection;
+import org.netbeans.lib.cvsclient.event.CVSAdapter;
+import org.netbeans.lib.cvsclient.event.MessageEvent;
+import org.netbeans.lib.cvsclient.util.SimpleStringPattern;
+import org.netbeans.lib.cvsclient.util.StringPattern;
+
+/**
+ * Server information cache test suite.
+ */
+public class ServerInfoCacheTest {
+
+    private static final String VALID_REQUESTS = "Root Valid-responses valid-requests Directory Entry Modified "
+            + "Unchanged UseUnchanged Argument Global_option status noop";
+
+    @After
+    public void tearDown() {
+        ServerInfoCache.setTimeToLive(ServerInfoCache.DEFAULT_TIME_TO_LIVE);
+        ServerInfoCache.invalidateAll();
+    }
+
+    @Test
+    public void testValidRequests() throws Exception {
+        Set<String> requests = ServerInfoCache.putValidRequests(":pserver:a@host:/cvs", VALID_REQUESTS);
+        assertTrue(requests.contains("status"));
+        assertTrue(requests.contains("valid-requests"));
+        assertSame(requests, ServerInfoCache.getValidRequests(":pserver:a@host:/cvs"));
+        assertSame(requests, ServerInfoCache.putValidRequests(":pserver:a@host:/cvs", VALID_REQUESTS));
+        assertNull(ServerInfoCache.getValidRequests(":pserver:b@host:/cvs"));
+
+        ServerInfoCache.invalidate(":pserver:a@host:/cvs");
+        assertNull(ServerInfoCache.getValidRequests(":pserver:a@host:/cvs"));
+
+        ServerInfoCache.setTimeToLive(60 * 60 * 1000);
+        ServerInfoCache.putValidRequests(":pserver:a@host:/cvs", VALID_REQUESTS);
+        assertNotNull(ServerInfoCache.getValidRequests(":pserver:a@host:/cvs"));
+        ServerInfoCache.setTimeToLive(1);
+        ServerInfoCache.putValidRequests(":pserver:a@host:/cvs", VALID_REQUESTS);
+        Thread.sleep(50);
+        assertNull(ServerInfoCache.getValidRequests(":pserver:a@host:/cvs"));
+
+        ServerInfoCache.setTimeToLive(0);
+        assertNotNull(ServerInfoCache.putValidRequests(":pserver:a@host:/cvs", VALID_REQUESTS));
+        assertNull(ServerInfoCache.getValidRequests(":pserver:a@host:/cvs"));
+    }
+
+    @Test
+    public void testModuleExpansion() throws Exception {
+        List<String> modules = new ArrayList<String>(Arrays.asList("a", "b"));
+        ServerInfoCache.putModuleExpansion(":pserver:a@host:/cvs", modules, Arrays.asList("a", "b/dir"));
+        modules.add("c");
+        assertEquals(Arrays.asList("a", "b/dir"),
+                ServerInfoCache.getModuleExpansion(":pserver:a@host:/cvs", Arrays.asList("a", "b")));
+        assertNull(ServerInfoCache.getModuleExpansion(":pserver:a@host:/cvs", Arrays.asList("b", "a")));
+        assertNull(ServerInfoCache.getModuleExpansion(":pserver:b@host:/cvs", Arrays.asList("a", "b")));
+
+        Map<StringPattern, KeywordSubstitutionOptions> wrappers = Collections.singletonMap(
+                (StringPattern) new SimpleStringPattern("*.gif"), KeywordSubstitutionOptions.BINARY);
+        ServerInfoCache.putWrappers(":pserver:a@host:/cvs", wrappers);
+        assertSame(wrappers, ServerInfoCache.getWrappers(":pserver:a@host:/cvs"));
+
+        ServerInfoCache.invalidate(":pserver:a@host:/cvs");
+        assertNull(ServerInfoCache.getModuleExpansion(":pserver:a@host:/cvs", Arrays.asList("a", "b")));
+        assertNull(ServerInfoCache.getWrappers(":pserver:a@host:/cvs"));
+    }
+
+    /**
+     * A checkout of modules whose expansion is cached skips expand-modules.
+     */
+    @Test
+    public void testCachedModuleExpansion() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("serverInfoCacheTest");
+        try {
+            String transcript = "I LOVE YOU\n"
+                    + "Valid-requests " + VALID_REQUESTS + " co expand-modules\n"
+                    + "ok\n"
+                    + "ok\n";
+            PseudoCvsServer cvss = new PseudoCvsServer(new ByteArrayInputStream(transcript.getBytes("US-ASCII")));
+            ByteArrayOutputStream requests = new ByteArrayOutputStream();
+            cvss.logRequests(requests);
+            Thread server = new Thread(cvss);
+            server.start();
+
+            String cvsRoot = cvss.getCvsRoot();
+            ServerInfoCache.putModuleExpansion(cvsRoot, Arrays.asList("module"), Arrays.asList("module"));
+            GlobalOptions gtx = new GlobalOptions();
+            gtx.setCVSRoot(cvsRoot);
+            Client client = new Client(new PServerConnection(CVSRoot.parse(cvsRoot)), new StandardAdminHandler());
+            client.setLocalPath(tmpDir.getAbsolutePath());
+
+            CheckoutCommand checkout = new CheckoutCommand(true, new String[] {"module"});
+            assertTrue(client.executeCommand(checkout, gtx));
+            cvss.stop();
+            server.join();
+
+            String sent = requests.toString("US-ASCII");
+            assertTrue(sent, sent.indexOf("\nco\n") > 0);
+            assertEquals(sent, -1, sent.indexOf("expand-modules"));
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * An expansion the server failed or answered without modules is not
+     * cached.
+     */
+    @Test
+    public void testFailedModuleExpansion() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("serverInfoCacheTest");
+        try {
+            String[] answers = { "error  cannot expand modules\n", "ok\n" };
+            for (String answer : answers) {
+                String transcript = "I LOVE YOU\n"
+                        + "Valid-requests " + VALID_REQUESTS + " co expand-modules\n"
+                        + "ok\n"
+                        + answer
+                        + "ok\n";
+                PseudoCvsServer cvss = new PseudoCvsServer(new ByteArrayInputStream(transcript.getBytes("US-ASCII")));
+                Thread server = new Thread(cvss);
+                server.start();
+
+                String cvsRoot = cvss.getCvsRoot();
+                GlobalOptions gtx = new GlobalOptions();
+                gtx.setCVSRoot(cvsRoot);
+                Client client = new Client(new PServerConnection(CVSRoot.parse(cvsRoot)), new StandardAdminHandler());
+                client.setLocalPath(tmpDir.getAbsolutePath());
+
+                client.executeCommand(new CheckoutCommand(true, new String[] {"module"}), gtx);
+                cvss.stop();
+                server.join();
+
+                assertNull(answer, ServerInfoCache.getModuleExpansion(cvsRoot, Arrays.asList("module")));
+            }
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * With the valid requests cached the command goes out right behind
+     * valid-requests and the answers to both are read in order.
+     */
+    @Test
+    public void testPipelinedValidRequests() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("serverInfoCacheTest");
+        try {
+            String transcript = "I LOVE YOU\n"
+                    + "Valid-requests " + VALID_REQUESTS + "\n"
+                    + "ok\n"
+                    + "M status output\n"
+                    + "ok\n";
+            PseudoCvsServer cvss = new PseudoCvsServer(new ByteArrayInputStream(transcript.getBytes("US-ASCII")));
+            ByteArrayOutputStream requests = new ByteArrayOutputStream();
+            cvss.logRequests(requests);
+            Thread server = new Thread(cvss);
+            server.start();
+
+            String cvsRoot = cvss.getCvsRoot();
+            Set<String> cached = ServerInfoCache.putValidRequests(cvsRoot, VALID_REQUESTS);
+            GlobalOptions gtx = new GlobalOptions();
+            gtx.setCVSRoot(cvsRoot);
+            Client client = new Client(new PServerConnection(CVSRoot.parse(cvsRoot)), new StandardAdminHandler());
+            client.setLocalPath(tmpDir.getAbsolutePath());
+            final List<String> messages = new ArrayList<String>();
+            client.getEventManager().addCVSListener(new CVSAdapter() {
+                public void messageSent(MessageEvent e) {
+                    messages.add(e.getMessage());
+                }
+            });
+
+            StatusCommand status = new StatusCommand();
+            status.setFiles(new File[] {new File(tmpDir, "placeholder")});
+            client.executeCommand(status, gtx);
+            cvss.stop();
+            server.join();
+
+            assertTrue(messages.toString(), messages.contains("status output"));
+            assertSame(cached, ServerInfoCache.getValidRequests(cvsRoot));
+            assertTrue(client.isValidRequest("status"));
+            assertFalse(client.isValidRequest("gzip-file-contents"));
+            String sent = requests.toString("US-ASCII");
+            assertTrue(sent, sent.indexOf("valid-requests") < sent.indexOf("\nstatus"));
+            assertEquals(sent.indexOf("valid-requests"), sent.lastIndexOf("valid-requests"));
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+}
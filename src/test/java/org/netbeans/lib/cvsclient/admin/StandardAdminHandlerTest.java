@@ -43,13 +43,24 @@
  */
 package org.netbeans.lib.cvsclient.admin;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.netbeans.lib.cvsclient.TestKit;
+import org.netbeans.lib.cvsclient.command.GlobalOptions;
 
 /**
  *
@@ -132,6 +143,170 @@ public class StandardAdminHandlerTest {
         }
     }
 
+    /**
+     * Entry changes are logged to Entries.Log and merged into Entries once the
+     * server moves to another directory or the handler is flushed.
+     */
+    @Test
+    public void testBatchedEntries() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("test_StandardAdminHandlerTest");
+        try {
+            GlobalOptions options = new GlobalOptions();
+            options.setCVSRoot(":pserver:anoncvs@127.0.0.1:2401/cvs");
+            StandardAdminHandler instance = new StandardAdminHandler();
+
+            File dir = new File(tmpDir, "a");
+            for (int i = 0; i < 10; i++) {
+                instance.updateAdminData(dir.getPath(), "module/a/f" + i, createEntry("f" + i, "1.1"), options);
+            }
+            instance.updateAdminData(dir.getPath(), "module/a/f3", createEntry("f3", "1.2"), options);
+            instance.removeEntry(new File(dir, "f5"));
+
+            assertTrue(new File(dir, "CVS/Entries.Log").exists());
+            assertEquals("1.2", instance.getEntry(new File(dir, "f3")).getRevision());
+            assertNull(instance.getEntry(new File(dir, "f5")));
+
+            // moving to another directory flushes the first one
+            instance.updateAdminData(new File(tmpDir, "b").getPath(), "module/b/g", createEntry("g", "1.1"), options);
+            assertFalse(new File(dir, "CVS/Entries.Log").exists());
+            instance.flush();
+            assertFalse(new File(tmpDir, "b/CVS/Entries.Log").exists());
+
+            Set<String> names = new HashSet<String>();
+            for (Iterator<Entry> it = new StandardAdminHandler().getEntries(dir); it.hasNext();) {
+                Entry entry = it.next();
+                assertTrue(entry.getName(), names.add(entry.getName()));
+                assertEquals("f3".equals(entry.getName()) ? "1.2" : "1.1", entry.getRevision());
+            }
+            assertEquals(9, names.size());
+            assertFalse(names.contains("f5"));
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * Workspaces updated concurrently must not serialize on one lock. The
+     * first Entries rewrite of every workspace waits inside the lock until
+     * all workspaces are rewriting, with any lock shared between workspaces
+     * the wait times out.
+     */
+    @Test
+    public void testConcurrentWorkspaces() throws Exception {
+        final int THREADS = 4;
+        final int ROUNDS = 5;
+        final File tmpDir = TestKit.createTmpFolder("test_StandardAdminHandlerTest");
+        final CountDownLatch allRewriting = new CountDownLatch(THREADS);
+        final Set<Thread> rewriting = Collections.synchronizedSet(new HashSet<Thread>());
+        StandardAdminHandler.t9yBeforeRenameSync(new Runnable() {
+            public void run() {
+                if (!rewriting.add(Thread.currentThread())) {
+                    return;
+                }
+                allRewriting.countDown();
+                try {
+                    if (!allRewriting.await(10, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Workspaces serialized");
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            final GlobalOptions options = new GlobalOptions();
+            options.setCVSRoot(":pserver:anoncvs@127.0.0.1:2401/cvs");
+            final Exception[] failures = new Exception[THREADS];
+            Thread[] threads = new Thread[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                final int workspace = t;
+                threads[t] = new Thread("Workspace " + t) {
+                    public void run() {
+                        try {
+                            StandardAdminHandler instance = new StandardAdminHandler();
+                            File dir = new File(tmpDir, "w" + workspace);
+                            for (int i = 0; i < ROUNDS; i++) {
+                                instance.updateAdminData(dir.getPath(), "module/f" + i, createEntry("f" + i, "1.1"), options);
+                                instance.flush();
+                            }
+                        } catch (Exception ex) {
+                            failures[workspace] = ex;
+                        }
+                    }
+                };
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            for (Exception failure : failures) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            assertEquals(0, allRewriting.getCount());
+
+            for (int t = 0; t < THREADS; t++) {
+                int count = 0;
+                for (Iterator<Entry> it = new StandardAdminHandler().getEntries(new File(tmpDir, "w" + t)); it.hasNext();) {
+                    assertEquals("1.1", it.next().getRevision());
+                    count++;
+                }
+                assertEquals(ROUNDS, count);
+            }
+        } finally {
+            StandardAdminHandler.t9yBeforeRenameSync(null);
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * Paths with <tt>.</tt> and <tt>..</tt> segments share the key, lock and
+     * pending entries of the directory they denote.
+     */
+    @Test
+    public void testDirectoryKey() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("test_StandardAdminHandlerTest");
+        try {
+            File dir = new File(tmpDir, "a");
+            File key = StandardAdminHandler.directoryKey(dir);
+            assertEquals(key, StandardAdminHandler.directoryKey(new File(tmpDir, "a/b/../../a")));
+            assertEquals(key, StandardAdminHandler.directoryKey(new File(tmpDir, "./a/.")));
+            assertEquals(key, StandardAdminHandler.directoryKey(new File(new File(tmpDir, "b/.."), "a")));
+
+            GlobalOptions options = new GlobalOptions();
+            options.setCVSRoot(":pserver:anoncvs@127.0.0.1:2401/cvs");
+            StandardAdminHandler instance = new StandardAdminHandler();
+            assertTrue(new File(dir, "b").mkdirs());
+            instance.updateAdminData(dir.getPath(), "module/a/f1", createEntry("f1", "1.1"), options);
+            instance.updateAdminData(new File(tmpDir, "a/b/../../a").getPath(), "module/a/f2",
+                    createEntry("f2", "1.1"), options);
+            // the second path did not count as another directory
+            assertTrue(new File(dir, "CVS/Entries.Log").exists());
+            instance.flush();
+            assertFalse(new File(dir, "CVS/Entries.Log").exists());
+
+            int count = 0;
+            for (Iterator<Entry> it = new StandardAdminHandler().getEntries(dir); it.hasNext(); it.next()) {
+                count++;
+            }
+            assertEquals(2, count);
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    private static Entry createEntry(String name, String revision) {
+        Entry entry = new Entry();
+        entry.setName(name);
+        entry.setRevision(revision);
+        return entry;
+    }
+
     private class SyncTwo implements Runnable {
         
         int counter;
@@ -0,0 +1,202 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.ClientServices;
+import org.netbeans.lib.cvsclient.command.checkout.CheckoutCommand;
+import org.netbeans.lib.cvsclient.event.CVSAdapter;
+import org.netbeans.lib.cvsclient.event.EventManager;
+import org.netbeans.lib.cvsclient.event.FileInfoEvent;
+
+/**
+ * Piped files builder test suite.
+ */
+public class PipedFilesBuilderTest {
+
+    /**
+     * Piped files are passed to the sink as they arrive, one stream per file,
+     * without any temporary file.
+     */
+    @Test
+    public void testSink() throws Exception {
+        final Map<String, ByteArrayOutputStream> streams = new LinkedHashMap<String, ByteArrayOutputStream>();
+        final List<String> closed = new ArrayList<String>();
+        PipedFileSink sink = new PipedFileSink() {
+            public OutputStream openFile(final String filename) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream() {
+                    public void close() {
+                        closed.add(filename);
+                    }
+                };
+                streams.put(filename, out);
+                return out;
+            }
+        };
+        final List<PipedFileInformation> infos = new ArrayList<PipedFileInformation>();
+        EventManager eventManager = createEventManager(infos);
+        CheckoutCommand command = new CheckoutCommand();
+        command.setLocalDirectory("/work");
+        PipedFilesBuilder builder = new PipedFilesBuilder(eventManager, command, sink);
+
+        String nl = System.getProperty("line.separator");
+        builder.parseLine("Checking out module/a.txt", true);
+        builder.parseLine("RCS:  /cvs/module/a.txt,v", true);
+        builder.parseLine("VERS: 1.3", true);
+        builder.parseLine("***************", true);
+        builder.parseLine("first", false);
+        assertEquals("first" + nl, streams.get("module/a.txt").toString("ISO-8859-1"));
+        builder.parseLine("second", false);
+        builder.parseLine("Checking out module/b.bin", true);
+        assertEquals(1, closed.size());
+        byte[] bytes = new byte[] {0, 1, 2, (byte) 0xff};
+        builder.parseBytes(bytes, 3);
+        builder.outputDone();
+
+        assertEquals("first" + nl + "second" + nl, streams.get("module/a.txt").toString("ISO-8859-1"));
+        assertEquals(3, streams.get("module/b.bin").size());
+        assertEquals(2, closed.size());
+        assertEquals(2, infos.size());
+        assertEquals(new File("/work", "module/a.txt"), infos.get(0).getFile());
+        assertEquals("1.3", infos.get(0).getRepositoryRevision());
+        assertNull(infos.get(0).getTempFile());
+        assertTrue(infos.get(1).getFile().getPath().endsWith("b.bin"));
+    }
+
+    /**
+     * Content of a file the sink fails to open or write, or declines, is
+     * dropped up to the next file header, it never ends up in a headerless
+     * file and no event is fired for a declined file.
+     */
+    @Test
+    public void testSinkFailure() throws Exception {
+        final Map<String, ByteArrayOutputStream> streams = new LinkedHashMap<String, ByteArrayOutputStream>();
+        PipedFileSink sink = new PipedFileSink() {
+            public OutputStream openFile(final String filename) throws IOException {
+                if (filename == null || filename.endsWith("closed.txt")) {
+                    throw new IOException(filename);
+                }
+                if (filename.endsWith("skipped.txt")) {
+                    return null;
+                }
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                streams.put(filename, buffer);
+                return new OutputStream() {
+                    public void write(int b) throws IOException {
+                        write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (filename.endsWith("full.txt") && buffer.size() > 0) {
+                            throw new IOException("disk full");
+                        }
+                        buffer.write(b, off, len);
+                    }
+                };
+            }
+        };
+        final List<PipedFileInformation> infos = new ArrayList<PipedFileInformation>();
+        EventManager eventManager = createEventManager(infos);
+        CheckoutCommand command = new CheckoutCommand();
+        command.setLocalDirectory("/work");
+        PipedFilesBuilder builder = new PipedFilesBuilder(eventManager, command, sink);
+
+        String nl = System.getProperty("line.separator");
+        builder.parseLine("Checking out module/closed.txt", true);
+        builder.parseLine("lost", false);
+        builder.parseBytes(new byte[] {1, 2}, 2);
+        builder.parseLine("Checking out module/full.txt", true);
+        builder.parseLine("kept", false);
+        builder.parseLine("lost", false);
+        builder.parseLine("lost", false);
+        builder.parseLine("Checking out module/skipped.txt", true);
+        builder.parseLine("RCS:  /cvs/module/skipped.txt,v", true);
+        builder.parseLine("VERS: 1.1", true);
+        builder.parseLine("***************", true);
+        builder.parseLine("lost", false);
+        builder.parseLine("Checking out module/c.txt", true);
+        builder.parseLine("third", false);
+        builder.outputDone();
+
+        assertEquals(2, streams.size());
+        assertEquals("kept", streams.get("module/full.txt").toString("ISO-8859-1"));
+        assertEquals("third" + nl, streams.get("module/c.txt").toString("ISO-8859-1"));
+        assertEquals(1, infos.size());
+        assertEquals(new File("/work", "module/c.txt"), infos.get(0).getFile());
+    }
+
+    private EventManager createEventManager(final List<PipedFileInformation> infos) {
+        final GlobalOptions options = new GlobalOptions();
+        ClientServices services = (ClientServices) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {ClientServices.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "getGlobalOptions".equals(method.getName()) ? options : null;
+                    }
+                });
+        EventManager eventManager = new EventManager(services);
+        eventManager.addCVSListener(new CVSAdapter() {
+            public void fileInfoGenerated(FileInfoEvent e) {
+                infos.add((PipedFileInformation) e.getInfoContainer());
+            }
+        });
+        return eventManager;
+    }
+}
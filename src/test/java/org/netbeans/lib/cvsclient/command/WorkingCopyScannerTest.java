@@ -0,0 +1,234 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.CVSRoot;
+import org.netbeans.lib.cvsclient.Client;
+import org.netbeans.lib.cvsclient.TestKit;
+import org.netbeans.lib.cvsclient.admin.Entry;
+import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
+import org.netbeans.lib.cvsclient.connection.PServerConnection;
+
+/**
+ * Working copy scanner test suite.
+ */
+public class WorkingCopyScannerTest {
+
+    /**
+     * Directories are scanned in parallel but must be visited in the order of
+     * their Entries files, depth-first.
+     */
+    @Test
+    public void testDepthFirstOrder() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("test_WorkingCopyScannerTest");
+        try {
+            createDirectory(tmpDir, "module", "/f1/1.1///\nD/b////\nD/a////\n");
+            createDirectory(new File(tmpDir, "b"), "module/b", "/f2/1.1///\nD/x////\n");
+            createDirectory(new File(tmpDir, "b/x"), "module/b/x", "/f3/1.1///\n/f4/1.2///\nD\n");
+            createDirectory(new File(tmpDir, "a"), "module/a", "D\n");
+            // directory without CVS folder is not visited
+            new File(tmpDir, "b/unversioned").mkdirs();
+
+            Client client = new Client(new PServerConnection(CVSRoot.parse(":pserver:anoncvs@127.0.0.1:2401/cvs")),
+                    new StandardAdminHandler());
+            WorkingCopyScanner scanner = new WorkingCopyScanner(client, true);
+            List<String> visited = new ArrayList<String>();
+            try {
+                visit(scanner.scan(tmpDir), visited);
+            } finally {
+                scanner.dispose();
+            }
+
+            assertEquals(Arrays.asList(new String[] {
+                "/cvs/module [f1]",
+                "/cvs/module/b [f2]",
+                "/cvs/module/b/x [f3, f4]",
+                "/cvs/module/a []",
+            }), visited);
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * Admin handlers need not be thread-safe, they are called on the thread
+     * that walks the tree only.
+     */
+    @Test
+    public void testAdminDataReadOnCallingThread() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("test_WorkingCopyScannerTest");
+        try {
+            createDirectory(tmpDir, "module", "/f1/1.1///\nD/b////\nD/a////\n");
+            createDirectory(new File(tmpDir, "b"), "module/b", "/f2/1.1///\nD\n");
+            createDirectory(new File(tmpDir, "a"), "module/a", "D\n");
+
+            final Set<Thread> callers = Collections.synchronizedSet(new HashSet<Thread>());
+            Client client = new Client(new PServerConnection(CVSRoot.parse(":pserver:anoncvs@127.0.0.1:2401/cvs")),
+                    new StandardAdminHandler() {
+                        public boolean exists(File file) {
+                            callers.add(Thread.currentThread());
+                            return super.exists(file);
+                        }
+
+                        public Iterator<Entry> getEntries(File directory) throws IOException {
+                            callers.add(Thread.currentThread());
+                            return super.getEntries(directory);
+                        }
+
+                        public String getRepositoryForDirectory(String directory, String repository)
+                                throws IOException {
+                            callers.add(Thread.currentThread());
+                            return super.getRepositoryForDirectory(directory, repository);
+                        }
+
+                        public String getStickyTagForDirectory(File directory) {
+                            callers.add(Thread.currentThread());
+                            return super.getStickyTagForDirectory(directory);
+                        }
+                    });
+            WorkingCopyScanner scanner = new WorkingCopyScanner(client, true);
+            List<String> visited = new ArrayList<String>();
+            try {
+                visit(scanner.scan(tmpDir), visited);
+            } finally {
+                scanner.dispose();
+            }
+
+            assertEquals(3, visited.size());
+            assertEquals(Collections.singleton(Thread.currentThread()), callers);
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * Files carry the stats taken when their directory was listed, scanners
+     * sharing the pool do not stop each other's scans.
+     */
+    @Test
+    public void testFileStats() throws Exception {
+        File tmpDir = TestKit.createTmpFolder("test_WorkingCopyScannerTest");
+        try {
+            createDirectory(tmpDir, "module", "/f1/1.1///\n/gone/1.1///\nD/sub////\n");
+            File f1 = new File(tmpDir, "f1");
+            write(f1, "data");
+            f1.setLastModified(1000000000000L);
+            new File(tmpDir, "sub/CVS").mkdirs();
+
+            Client client = new Client(new PServerConnection(CVSRoot.parse(":pserver:anoncvs@127.0.0.1:2401/cvs")),
+                    new StandardAdminHandler());
+            WorkingCopyScanner other = new WorkingCopyScanner(client, true);
+            other.scan(tmpDir);
+            other.dispose();
+            WorkingCopyScanner scanner = new WorkingCopyScanner(client, true);
+            try {
+                WorkingCopyScanner.ScannedDirectory scanned = scanner.scan(tmpDir);
+                File file = scanned.getFile("f1");
+                assertEquals(f1, file);
+                assertTrue(file.isFile());
+                assertEquals(1000000000000L, file.lastModified());
+                // the stats are not taken again
+                f1.setLastModified(2000000000000L);
+                assertEquals(1000000000000L, scanned.getFile("f1").lastModified());
+
+                assertTrue(scanned.getFile("sub").isDirectory());
+                assertFalse(scanned.getFile("gone").exists());
+                assertEquals(1, scanned.getSubdirectories().size());
+            } finally {
+                scanner.dispose();
+            }
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    private static void visit(WorkingCopyScanner.ScannedDirectory scanned, List<String> visited) throws IOException {
+        assertTrue(scanned.isVersioned());
+        List<String> files = new ArrayList<String>();
+        for (Entry entry : scanned.getEntries()) {
+            if (!entry.isDirectory()) {
+                files.add(entry.getName());
+            }
+        }
+        visited.add(scanned.getRepository() + " " + files);
+        for (File subdirectory : scanned.getSubdirectories()) {
+            visit(scanned.getSubdirectory(subdirectory), visited);
+        }
+    }
+
+    private static void createDirectory(File directory, String repository, String entries) throws IOException {
+        File CVSdir = new File(directory, "CVS");
+        CVSdir.mkdirs();
+        write(new File(CVSdir, "Repository"), repository + "\n");
+        write(new File(CVSdir, "Entries"), entries);
+    }
+
+    private static void write(File file, String data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data.getBytes("utf8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.command.annotate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class AnnotateInformationTest {
+
+    @Test
+    public void testColumns() {
+        AnnotateInformation info = new AnnotateInformation();
+        info.addAnnotatedLine("1.1          (alice    01-Jan-05): first line");
+        info.addAnnotatedLine("not annotated");
+        info.addAnnotatedLine("1.2          (bob      02-Feb-06): žluťoučký kůň");
+        info.addAnnotatedLine("1.1          (alice    01-Jan-05): ");
+        info.addAnnotatedLine("1.1          (alice    01-Jan-05):");
+
+        assertEquals(4, info.getLineCount());
+        assertEquals("first line", info.getContent(1));
+        assertEquals("žluťoučký kůň", info.getContent(2));
+        assertEquals("", info.getContent(3));
+        assertEquals("", info.getContent(4));
+        assertSame(info.getAuthor(1), info.getAuthor(3));
+        assertEquals("1.2", info.getRevision(2));
+
+        AnnotateLine line = info.getLine(2);
+        assertEquals(2, line.getLineNum());
+        assertEquals("bob", line.getAuthor());
+        assertEquals("02-Feb-06", line.getDateString());
+        assertNotNull(line.getDate());
+    }
+
+    @Test
+    public void testIteration() {
+        AnnotateInformation info = new AnnotateInformation();
+        assertNull(info.getFirstLine());
+        for (int i = 0; i < 1000; i++) {
+            info.addAnnotatedLine("1." + (i % 7) + " (user" + (i % 3) + " 01-Jan-05): line " + i);
+        }
+        int count = 0;
+        for (AnnotateLine line = info.getFirstLine(); line != null; line = info.getNextLine()) {
+            count++;
+            assertEquals(count, line.getLineNum());
+            assertEquals("line " + (count - 1), line.getContent());
+            assertEquals("user" + ((count - 1) % 3), line.getAuthor());
+        }
+        assertEquals(1000, count);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient.command.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.netbeans.lib.cvsclient.command.CommandUtils;
+import org.netbeans.lib.cvsclient.event.EventManager;
+import org.netbeans.lib.cvsclient.util.StringInterner;
+
+/**
+ * Feeds a synthetic rlog transcript to {@link LogBuilder} and reports the
+ * parsing throughput. The log message deduplication is also measured alone,
+ * against the former linear lookup in a growing list.
+ * <p>
+ * Run with:
+ * 
+ * <pre>
+ *   java -cp target/classes:target/test-classes org.netbeans.lib.cvsclient.command.log.LogBuilderBenchmark [revisions] [messages]
+ * </pre>
+ */
+public class LogBuilderBenchmark {
+
+    private static final int REVISIONS_PER_FILE = 10;
+
+    public static void main(final String[] args) throws Exception {
+        final int revisions = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        final int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        final String[] messages = createMessages(revisions, distinct);
+        System.out.println(revisions + " revisions, " + distinct + " distinct messages"); // NOI18N
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            final List<String> list = new ArrayList<String>(500);
+            for (final String message : messages) {
+                CommandUtils.findUniqueString(message, list);
+            }
+            report("dedup list    ", revisions, System.nanoTime() - start); // NOI18N
+
+            start = System.nanoTime();
+            final StringInterner interner = new StringInterner();
+            for (final String message : messages) {
+                CommandUtils.findUniqueString(message, interner);
+            }
+            report("dedup interner", revisions, System.nanoTime() - start); // NOI18N
+
+            start = System.nanoTime();
+            parse(messages);
+            report("LogBuilder    ", revisions, System.nanoTime() - start); // NOI18N
+        }
+    }
+
+    /**
+     * Commits touch several files, so each message is used for a run of
+     * revisions of consecutive files.
+     */
+    private static String[] createMessages(final int revisions, final int distinct) {
+        final Random random = new Random(42);
+        final String[] pool = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            pool[i] = "Fixed issue #" + (100000 + i) + ": " + Long.toString(random.nextLong(), 36) + "\n"; // NOI18N
+        }
+        final String[] messages = new String[revisions];
+        for (int i = 0; i < revisions; i++) {
+            // new String() simulates messages read from the network
+            messages[i] = new String(pool[random.nextInt(distinct)]);
+        }
+        return messages;
+    }
+
+    private static void parse(final String[] messages) {
+        final LogBuilder builder = new LogBuilder(new EventManager(null), null);
+        int file = 0;
+        for (int i = 0; i < messages.length; i += REVISIONS_PER_FILE, file++) {
+            final int count = Math.min(REVISIONS_PER_FILE, messages.length - i);
+            builder.parseLine("RCS file: /cvs/module/dir" + (file % 100) + "/File" + file + ".java,v", false); // NOI18N
+            builder.parseLine("head: 1." + count, false); // NOI18N
+            builder.parseLine("branch:", false); // NOI18N
+            builder.parseLine("locks: strict", false); // NOI18N
+            builder.parseLine("access list:", false); // NOI18N
+            builder.parseLine("symbolic names:", false); // NOI18N
+            builder.parseLine("\tRELEASE_1: 1.1", false); // NOI18N
+            builder.parseLine("keyword substitution: kv", false); // NOI18N
+            builder.parseLine("total revisions: " + count + ";\tselected revisions: " + count, false); // NOI18N
+            builder.parseLine("description:", false); // NOI18N
+            for (int r = count; r > 0; r--) {
+                builder.parseLine("----------------------------", false); // NOI18N
+                builder.parseLine("revision 1." + r, false); // NOI18N
+                builder.parseLine("date: 2005/03/24 15:14:27;  author: user" + (r % 7) // NOI18N
+                                + ";  state: Exp;  lines: +1 -0", false); // NOI18N
+                final String message = messages[i + count - r];
+                builder.parseLine(message.substring(0, message.length() - 1), false);
+            }
+            builder.parseLine("=============================================================================", false); // NOI18N
+        }
+        builder.outputDone();
+    }
+
+    private static void report(final String name, final int revisions, final long nanos) {
+        System.out.println(name + ": " + (nanos / 1000000) + " ms, " // NOI18N
+                        + (revisions * 1000000000L / Math.max(1, nanos)) + " revisions/sec"); // NOI18N
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.command.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LogInformationTest {
+
+    @Test
+    public void testLookups() {
+        final LogInformation info = new LogInformation();
+        for (final String number : new String[] { "1.3", "1.2.4.2", "1.2.4.1", "1.2", "1.1.1.1", "1.1" }) {
+            info.addRevision(info.createNewRevision(number));
+        }
+        info.addSymbolicName("release_1", "1.2");
+        info.addSymbolicName("fix_branch", "1.2.0.4");
+        info.addSymbolicName("fix_1", "1.2.4.1");
+        info.addSymbolicName("fix_1_again", "1.2.4.1");
+        info.addSymbolicName("vendor", "1.1.1");
+
+        assertEquals("1.2.4.1", info.getRevision("1.2.4.1").getNumber());
+        assertNull(info.getRevision("1.4"));
+        assertEquals("1.2.0.4", info.getSymName("fix_branch").getRevision());
+        assertNull(info.getSymName("missing"));
+        assertEquals(2, info.getSymNamesForRevision("1.2.4.1").size());
+        assertTrue(info.getSymNamesForRevision("1.3").isEmpty());
+
+        assertEquals("[1.2.4.2, 1.2.4.1]", numbers(info.getRevisionsOnBranch("fix_branch")));
+        assertEquals("[1.2.4.2, 1.2.4.1]", numbers(info.getRevisionsOnBranch("1.2.4")));
+        assertEquals("[1.3, 1.2, 1.1]", numbers(info.getRevisionsOnBranch("1")));
+        assertEquals("[1.1.1.1]", numbers(info.getRevisionsOnBranch("vendor")));
+        assertTrue(info.getRevisionsOnBranch("release_1").isEmpty());
+        assertEquals(2, info.getSymNamesOnBranch("fix_branch").size());
+        assertEquals("release_1", info.getSymNamesOnBranch("1").get(0).getName());
+
+        // indexes follow later additions
+        info.addRevision(info.createNewRevision("1.4"));
+        info.addSymbolicName("release_2", "1.4");
+        assertEquals("1.4", info.getRevision("1.4").getNumber());
+        assertEquals("1.4", info.getSymName("release_2").getRevision());
+        assertEquals("[1.3, 1.2, 1.1, 1.4]", numbers(info.getRevisionsOnBranch("1")));
+    }
+
+    private static String numbers(final List<LogInformation.Revision> revisions) {
+        final List<String> numbers = new ArrayList<String>();
+        for (final LogInformation.Revision revision : revisions) {
+            numbers.add(revision.getNumber());
+        }
+        return numbers.toString();
+    }
+}
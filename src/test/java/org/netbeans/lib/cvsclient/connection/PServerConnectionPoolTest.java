@@ -0,0 +1,289 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Warm pserver connection pool test suite. The server authenticates every
+ * connection and then answers each request line with an "ok" line.
+ */
+public class PServerConnectionPoolTest {
+
+    private ServerSocket server;
+    private final List<Socket> accepted = new ArrayList<Socket>();
+    private volatile String authResponse = "I LOVE YOU\n";
+    private volatile CountDownLatch authGate;
+    private int closed;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread("Fake pserver") {
+            public void run() {
+                while (true) {
+                    try {
+                        final Socket socket = server.accept();
+                        synchronized (accepted) {
+                            accepted.add(socket);
+                            accepted.notifyAll();
+                        }
+                        new Thread("Fake pserver connection") {
+                            public void run() {
+                                serve(socket);
+                            }
+                        }.start();
+                    } catch (IOException ex) {
+                        return;
+                    }
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        PServerConnection.setWarmConnections(0);
+        server.close();
+        synchronized (accepted) {
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Every taken connection is authenticated already and replaced in the
+     * background.
+     */
+    @Test
+    public void testTakeAndRefill() throws Exception {
+        PServerConnectionPool pool = new PServerConnectionPool(60000);
+        PServerConnection template = createConnection();
+
+        assertNull(pool.take("key", template, 2));
+        waitForSize(pool, 2);
+        assertEquals(2, getAccepted());
+
+        for (int i = 0; i < 5; i++) {
+            PServerConnection connection = pool.take("key", template, 2);
+            assertNotNull(connection);
+            assertEquals("ok noop", exchange(connection, "noop"));
+            connection.close();
+            waitForSize(pool, 2);
+        }
+        assertEquals(7, getAccepted());
+
+        pool.closeIdle();
+        assertEquals(0, pool.size());
+    }
+
+    /**
+     * Warm connections nobody asked for are closed after the idle timeout.
+     */
+    @Test
+    public void testIdleTimeout() throws Exception {
+        PServerConnectionPool pool = new PServerConnectionPool(100);
+        assertNull(pool.take("key", createConnection(), 3));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (getAccepted() < 3 || pool.size() > 0) {
+            assertTrue("Warm connections not closed", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Connections that fail to authenticate are not pooled, the caller opens
+     * its own and gets the error.
+     */
+    @Test
+    public void testAuthenticationFailure() throws Exception {
+        authResponse = "I HATE YOU\n";
+        PServerConnectionPool pool = new PServerConnectionPool(60000);
+        PServerConnection template = createConnection();
+        assertNull(pool.take("key", template, 2));
+        waitForAccepted(2);
+        Thread.sleep(200);
+        assertEquals(0, pool.size());
+        assertNull(pool.take("key", template, 2));
+    }
+
+    /**
+     * Connections that finish warming up after the pool was emptied are
+     * closed, not pooled.
+     */
+    @Test
+    public void testCloseWhileWarmingUp() throws Exception {
+        authGate = new CountDownLatch(1);
+        PServerConnectionPool pool = new PServerConnectionPool(60000);
+        assertNull(pool.take("key", createConnection(), 2));
+        waitForAccepted(2);
+        pool.closeIdle();
+        authGate.countDown();
+        waitForClosed(2);
+        assertEquals(0, pool.size());
+    }
+
+    /**
+     * With warm connections enabled open() does not wait for the handshake.
+     */
+    @Test
+    public void testOpen() throws Exception {
+        PServerConnection.setWarmConnections(1);
+
+        PServerConnection first = createConnection();
+        first.open();
+        assertEquals("ok first", exchange(first, "first"));
+        first.close();
+        waitForAccepted(2);
+
+        PServerConnection second = createConnection();
+        second.open();
+        assertTrue(second.isOpen());
+        assertEquals("ok second", exchange(second, "second"));
+        second.close();
+        waitForAccepted(3);
+        assertEquals(3, getAccepted());
+    }
+
+    private PServerConnection createConnection() {
+        PServerConnection connection = new PServerConnection();
+        connection.setHostName("127.0.0.1");
+        connection.setPort(server.getLocalPort());
+        connection.setRepository("/cvs");
+        connection.setUserName("anoncvs");
+        return connection;
+    }
+
+    private static String exchange(PServerConnection connection, String request) throws IOException {
+        connection.getOutputStream().writeBytes(request + "\n");
+        connection.getOutputStream().flush();
+        return connection.getInputStream().readLine();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            OutputStream out = socket.getOutputStream();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.endsWith("AUTH REQUEST") && line.startsWith("END")) {
+                    CountDownLatch gate = authGate;
+                    if (gate != null) {
+                        gate.await();
+                    }
+                    out.write(authResponse.getBytes("US-ASCII"));
+                    out.flush();
+                    break;
+                }
+            }
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                out.write(("ok " + line + "\n").getBytes("US-ASCII"));
+                out.flush();
+            }
+            synchronized (accepted) {
+                closed++;
+                accepted.notifyAll();
+            }
+        } catch (IOException ex) {
+            // client went away
+        } catch (InterruptedException ex) {
+            // test is over
+        }
+    }
+
+    private int getAccepted() {
+        synchronized (accepted) {
+            return accepted.size();
+        }
+    }
+
+    private void waitForAccepted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        synchronized (accepted) {
+            while (accepted.size() < count) {
+                assertTrue("Only " + accepted.size() + " connections", System.currentTimeMillis() < deadline);
+                accepted.wait(100);
+            }
+        }
+    }
+
+    private void waitForClosed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        synchronized (accepted) {
+            while (closed < count) {
+                assertTrue("Only " + closed + " connections closed", System.currentTimeMillis() < deadline);
+                accepted.wait(100);
+            }
+        }
+    }
+
+    private static void waitForSize(PServerConnectionPool pool, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.size() != size) {
+            assertTrue("Pool size " + pool.size(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jcraft.jsch.JSchException;
+
+/**
+ * SSH session pool test suite. Sessions are faked by loopback sockets, every
+ * "handshake" connects a new socket.
+ */
+public class SSHSessionPoolTest {
+
+    private ServerSocket server;
+    private final List<FakeSession> connected = new ArrayList<FakeSession>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        for (FakeSession session : connected) {
+            session.socket.close();
+        }
+    }
+
+    /**
+     * Consecutive connections to the same host share one handshake.
+     */
+    @Test
+    public void testReuse() throws Exception {
+        SSHSessionPool<FakeSession> pool = new SSHSessionPool<FakeSession>(8, 60000);
+        FakeFactory factory = new FakeFactory();
+        FakeSession first = null;
+        for (int i = 0; i < 300; i++) {
+            SSHSessionPool.Lease<FakeSession> lease = pool.acquire("user@host:22", factory);
+            assertEquals(i > 0, lease.isReused());
+            if (first == null) {
+                first = lease.getSession();
+            }
+            assertSame(first, lease.getSession());
+            pool.release(lease);
+        }
+        assertEquals(1, factory.connects);
+
+        SSHSessionPool.Lease<FakeSession> other = pool.acquire("other@host:22", factory);
+        assertNotSame(first, other.getSession());
+        assertEquals(2, factory.connects);
+        pool.release(other);
+        assertEquals(2, pool.size());
+
+        pool.closeIdle();
+        assertEquals(0, pool.size());
+        assertTrue(first.socket.isClosed());
+    }
+
+    /**
+     * A session carries a limited number of channels at a time.
+     */
+    @Test
+    public void testMaxChannels() throws Exception {
+        SSHSessionPool<FakeSession> pool = new SSHSessionPool<FakeSession>(3, 60000);
+        FakeFactory factory = new FakeFactory();
+        List<SSHSessionPool.Lease<FakeSession>> leases = new ArrayList<SSHSessionPool.Lease<FakeSession>>();
+        for (int i = 0; i < 7; i++) {
+            leases.add(pool.acquire("key", factory));
+        }
+        assertEquals(3, factory.connects);
+        assertSame(leases.get(0).getSession(), leases.get(2).getSession());
+        assertNotSame(leases.get(2).getSession(), leases.get(3).getSession());
+
+        pool.release(leases.get(1));
+        assertSame(leases.get(0).getSession(), pool.acquire("key", factory).getSession());
+        assertEquals(3, factory.connects);
+    }
+
+    /**
+     * Dead sessions are not handed out, failed ones are disconnected once
+     * their last channel is closed.
+     */
+    @Test
+    public void testHealthCheck() throws Exception {
+        SSHSessionPool<FakeSession> pool = new SSHSessionPool<FakeSession>(8, 60000);
+        FakeFactory factory = new FakeFactory();
+        SSHSessionPool.Lease<FakeSession> lease = pool.acquire("key", factory);
+        pool.release(lease);
+        lease.getSession().socket.close();
+        SSHSessionPool.Lease<FakeSession> fresh = pool.acquire("key", factory);
+        assertFalse(fresh.isReused());
+        assertEquals(2, factory.connects);
+        assertEquals(1, pool.size());
+
+        SSHSessionPool.Lease<FakeSession> shared = pool.acquire("key", factory);
+        assertSame(fresh.getSession(), shared.getSession());
+        pool.invalidate(shared);
+        assertFalse(fresh.getSession().socket.isClosed());
+        assertFalse(pool.acquire("key", factory).isReused());
+        pool.release(fresh);
+        assertTrue(fresh.getSession().socket.isClosed());
+        assertEquals(1, pool.size());
+    }
+
+    /**
+     * A blocking health check does not hold up the pool, and a session
+     * invalidated meanwhile is not handed out.
+     */
+    @Test(timeout = 20000)
+    public void testHealthCheckOutsideOfLock() throws Exception {
+        final SSHSessionPool<FakeSession> pool = new SSHSessionPool<FakeSession>(8, 60000);
+        final CountDownLatch checking = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        final boolean[] block = new boolean[1];
+        final FakeFactory factory = new FakeFactory() {
+            @Override
+            public boolean isAlive(FakeSession session) {
+                if (!block[0]) {
+                    return super.isAlive(session);
+                }
+                checking.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.isAlive(session);
+            }
+        };
+        final SSHSessionPool.Lease<FakeSession> first = pool.acquire("key", factory);
+        final SSHSessionPool.Lease<FakeSession> second = pool.acquire("key", factory);
+        assertSame(first.getSession(), second.getSession());
+        pool.release(first);
+        block[0] = true;
+        final List<SSHSessionPool.Lease<FakeSession>> checked = new ArrayList<SSHSessionPool.Lease<FakeSession>>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    checked.add(pool.acquire("key", factory));
+                } catch (JSchException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+        thread.start();
+        assertTrue(checking.await(10, TimeUnit.SECONDS));
+
+        // the checked session was invalidated by another connection meanwhile
+        SSHSessionPool.Lease<FakeSession> other = pool.acquire("other", new FakeFactory());
+        assertEquals(2, pool.size());
+        pool.release(other);
+        pool.invalidate(second);
+        assertFalse(first.getSession().socket.isClosed());
+        resume.countDown();
+        thread.join();
+
+        assertFalse(checked.get(0).isReused());
+        assertNotSame(first.getSession(), checked.get(0).getSession());
+        assertTrue(first.getSession().socket.isClosed());
+    }
+
+    /**
+     * Unused sessions are disconnected after the idle timeout.
+     */
+    @Test
+    public void testIdleEviction() throws Exception {
+        SSHSessionPool<FakeSession> pool = new SSHSessionPool<FakeSession>(8, 100);
+        FakeFactory factory = new FakeFactory();
+        SSHSessionPool.Lease<FakeSession> idle = pool.acquire("idle", factory);
+        SSHSessionPool.Lease<FakeSession> busy = pool.acquire("busy", factory);
+        pool.release(idle);
+        for (int i = 0; i < 50 && pool.size() > 1; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, pool.size());
+        assertTrue(idle.getSession().socket.isClosed());
+        assertFalse(busy.getSession().socket.isClosed());
+
+        pool.release(busy);
+        for (int i = 0; i < 50 && pool.size() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, pool.size());
+        assertTrue(busy.getSession().socket.isClosed());
+    }
+
+    private static final class FakeSession {
+        final Socket socket;
+
+        FakeSession(Socket socket) {
+            this.socket = socket;
+        }
+    }
+
+    private class FakeFactory implements SSHSessionPool.SessionFactory<FakeSession> {
+        int connects;
+
+        public FakeSession connect() throws JSchException {
+            try {
+                FakeSession session = new FakeSession(new Socket(server.getInetAddress(), server.getLocalPort()));
+                connected.add(session);
+                connects++;
+                return session;
+            } catch (IOException ex) {
+                throw new JSchException(ex.getMessage());
+            }
+        }
+
+        public boolean isAlive(FakeSession session) {
+            return !session.socket.isClosed();
+        }
+
+        public void disconnect(FakeSession session) {
+            try {
+                session.socket.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+}
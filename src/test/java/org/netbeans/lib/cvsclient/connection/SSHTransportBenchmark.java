@@ -0,0 +1,391 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.connection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.netbeans.lib.cvsclient.Client;
+import org.netbeans.lib.cvsclient.TestKit;
+import org.netbeans.lib.cvsclient.admin.StandardAdminHandler;
+import org.netbeans.lib.cvsclient.command.CommandAbortedException;
+import org.netbeans.lib.cvsclient.command.GlobalOptions;
+import org.netbeans.lib.cvsclient.command.status.StatusCommand;
+import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
+import org.netbeans.lib.cvsclient.util.LoggedDataOutputStream;
+
+/**
+ * Runs <tt>status</tt> commands over a loopback socket framed like an SSH
+ * channel and reports request throughput for the stream wrapping used by
+ * {@link SSHConnection} with and without the request buffer.
+ * <p>
+ * Two channel flavours are measured: one that packs writes into a packet
+ * until it is flushed or full, as JSch 0.1.46 does, and one that sends a
+ * packet for every write call. Every packet is framed as an
+ * <tt>SSH_MSG_CHANNEL_DATA</tt> message. Each status covers <tt>files</tt>
+ * locally modified files; <tt>commands</tt> status commands are run per
+ * measurement. Nothing leaves the machine.
+ * <p>
+ * Run with:
+ * 
+ * <pre>
+ *   java -cp target/classes:target/test-classes org.netbeans.lib.cvsclient.connection.SSHTransportBenchmark [files] [commands]
+ * </pre>
+ */
+public class SSHTransportBenchmark {
+
+    private static final String VALID_REQUESTS = "Valid-requests Root Valid-responses valid-requests Directory " // NOI18N
+                    + "Entry Modified Unchanged UseUnchanged Questionable Argument Argumentx Global_option status noop\n" // NOI18N
+                    + "ok\n"; // NOI18N
+
+    private static final int SSH_MSG_CHANNEL_DATA = 94;
+
+    private static final int MAX_PACKET = 32768;
+
+    public static void main(final String[] args) throws Exception {
+        final int files = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int commands = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        final File tmpDir = TestKit.createTmpFolder("sshTransportBenchmark"); // NOI18N
+        final Server server = new Server(createStatus(files));
+        try {
+            final File workDir = createWorkingCopy(tmpDir, files);
+            new Thread(server, "SSH transport benchmark server").start(); // NOI18N
+            for (int round = 0; round < 3; round++) {
+                System.out.println("Round " + (round + 1)); // NOI18N
+                run("packed channel,   unbuffered", workDir, server, files, commands, true, false); // NOI18N
+                run("packed channel,   buffered  ", workDir, server, files, commands, true, true); // NOI18N
+                run("per-write packets, unbuffered", workDir, server, files, commands, false, false); // NOI18N
+                run("per-write packets, buffered  ", workDir, server, files, commands, false, true); // NOI18N
+            }
+        } finally {
+            server.close();
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    private static void run(final String name, final File workDir, final Server server, final int files,
+                    final int commands, final boolean packed, final boolean buffered) throws Exception {
+        final AtomicLong packets = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final long start = System.nanoTime();
+        for (int i = 0; i < commands; i++) {
+            final FramedConnection connection = new FramedConnection(server.getPort(), packed, buffered, packets,
+                            bytes);
+            final GlobalOptions options = new GlobalOptions();
+            options.setCVSRoot(":ext:bench@127.0.0.1:/cvs"); // NOI18N
+            final Client client = new Client(connection, new StandardAdminHandler());
+            client.setLocalPath(workDir.getAbsolutePath());
+            try {
+                client.executeCommand(new StatusCommand(), options);
+            } finally {
+                connection.close();
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        System.out.println(name + ": " + commands + " x " + files + " files in " + (nanos / 1000000) + " ms, " // NOI18N
+                        + ((long) commands * files * 1000000000L / Math.max(1, nanos)) + " files/sec, " // NOI18N
+                        + (packets.get() / commands) + " packets/status, " // NOI18N
+                        + (bytes.get() / commands) + " request bytes/status"); // NOI18N
+    }
+
+    private static File createWorkingCopy(final File tmpDir, final int files) throws IOException {
+        final File workDir = new File(tmpDir, "bench"); // NOI18N
+        final File cvsDir = new File(workDir, "CVS"); // NOI18N
+        cvsDir.mkdirs();
+        write(new File(cvsDir, "Root"), ":ext:bench@127.0.0.1:/cvs\n"); // NOI18N
+        write(new File(cvsDir, "Repository"), "bench\n"); // NOI18N
+        final StringBuffer entries = new StringBuffer();
+        for (int i = 0; i < files; i++) {
+            entries.append("/f").append(i).append(".txt/1.1/Thu Jan  1 00:00:00 2009//\n"); // NOI18N
+            write(new File(workDir, "f" + i + ".txt"), "modified " + i + "\n"); // NOI18N
+        }
+        write(new File(cvsDir, "Entries"), entries.toString()); // NOI18N
+        return workDir;
+    }
+
+    private static byte[] createStatus(final int files) throws IOException {
+        final StringBuffer sb = new StringBuffer();
+        sb.append("E cvs server: Examining .\n"); // NOI18N
+        for (int i = 0; i < files; i++) {
+            sb.append("M ===================================================================\n"); // NOI18N
+            sb.append("M File: f").append(i).append(".txt             \tStatus: Locally Modified\n"); // NOI18N
+            sb.append("M \n"); // NOI18N
+            sb.append("M    Working revision:\t1.1\n"); // NOI18N
+            sb.append("M    Repository revision:\t1.1\t/cvs/bench/f").append(i).append(".txt,v\n"); // NOI18N
+            sb.append("M \n"); // NOI18N
+        }
+        sb.append("ok\n"); // NOI18N
+        return sb.toString().getBytes("US-ASCII"); // NOI18N
+    }
+
+    private static void write(final File file, final String contents) throws IOException {
+        final FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Client side of the loopback channel, wrapped the way {@link SSHConnection}
+     * wraps a JSch channel.
+     */
+    private static final class FramedConnection extends AbstractConnection {
+        private static final long serialVersionUID = 1L;
+
+        private final int port;
+        private final boolean packed;
+        private final boolean buffered;
+        private final AtomicLong packets;
+        private final AtomicLong bytes;
+        private transient Socket socket;
+
+        FramedConnection(final int port, final boolean packed, final boolean buffered, final AtomicLong packets,
+                        final AtomicLong bytes) {
+            this.port = port;
+            this.packed = packed;
+            this.buffered = buffered;
+            this.packets = packets;
+            this.bytes = bytes;
+            setRepository("/cvs"); // NOI18N
+        }
+
+        public void open() throws AuthenticationException, CommandAbortedException {
+            try {
+                socket = new Socket(InetAddress.getByName("127.0.0.1"), port); // NOI18N
+                socket.setTcpNoDelay(true);
+                final OutputStream channel = new ChannelOutputStream(socket.getOutputStream(), packed, packets,
+                                bytes);
+                setOutputStream(buffered ? SSHConnection.createOutputStream(channel)
+                                : new LoggedDataOutputStream(channel));
+                setInputStream(new LoggedDataInputStream(socket.getInputStream(), true));
+            } catch (final IOException ex) {
+                throw new AuthenticationException(ex, ex.getMessage());
+            }
+        }
+
+        public void verify() throws AuthenticationException {
+        }
+
+        public void close() throws IOException {
+            if (socket != null) {
+                socket.close();
+                socket = null;
+            }
+        }
+
+        public boolean isOpen() {
+            return socket != null;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void modifyInputStream(final ConnectionModifier modifier) throws IOException {
+            modifier.modifyInputStream(getInputStream());
+        }
+
+        public void modifyOutputStream(final ConnectionModifier modifier) throws IOException {
+            modifier.modifyOutputStream(getOutputStream());
+        }
+    }
+
+    /**
+     * Frames written data as channel data messages. Packed, data are collected
+     * until flushed or a packet is full, otherwise every write is a packet.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final boolean packed;
+        private final AtomicLong packets;
+        private final AtomicLong bytes;
+        private final byte[] packet = new byte[MAX_PACKET];
+        private int length;
+
+        ChannelOutputStream(final OutputStream out, final boolean packed, final AtomicLong packets,
+                        final AtomicLong bytes) {
+            this.out = new DataOutputStream(out);
+            this.packed = packed;
+            this.packets = packets;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                final int chunk = Math.min(len, packet.length - length);
+                System.arraycopy(b, off, packet, length, chunk);
+                length += chunk;
+                off += chunk;
+                len -= chunk;
+                if (!packed || (length == packet.length)) {
+                    sendPacket();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            sendPacket();
+        }
+
+        private void sendPacket() throws IOException {
+            if (length == 0) {
+                return;
+            }
+            out.writeInt(1 + 4 + 4 + length);
+            out.writeByte(SSH_MSG_CHANNEL_DATA);
+            out.writeInt(0);
+            out.writeInt(length);
+            out.write(packet, 0, length);
+            out.flush();
+            packets.incrementAndGet();
+            bytes.addAndGet(length);
+            length = 0;
+        }
+    }
+
+    /**
+     * Deframes requests and answers <tt>valid-requests</tt>,
+     * <tt>wrapper-sendme-rcsOptions</tt> and <tt>status</tt>.
+     */
+    private static final class Server implements Runnable {
+        private final ServerSocket serverSocket;
+        private final byte[] status;
+
+        Server(final byte[] status) throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1")); // NOI18N
+            this.status = status;
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        public void run() {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (final IOException ex) {
+                    return;
+                }
+                new Thread(new Runnable() {
+                    public void run() {
+                        serve(socket);
+                    }
+                }, "SSH transport benchmark connection").start(); // NOI18N
+            }
+        }
+
+        private void serve(final Socket socket) {
+            try {
+                socket.setTcpNoDelay(true);
+                final DataInputStream in = new DataInputStream(socket.getInputStream());
+                final OutputStream out = socket.getOutputStream();
+                final ByteArrayOutputStream line = new ByteArrayOutputStream();
+                byte[] data = new byte[MAX_PACKET];
+                while (true) {
+                    in.readInt();
+                    in.readByte();
+                    in.readInt();
+                    final int length = in.readInt();
+                    if (length > data.length) {
+                        data = new byte[length];
+                    }
+                    in.readFully(data, 0, length);
+                    for (int i = 0; i < length; i++) {
+                        if (data[i] != '\n') {
+                            line.write(data[i]);
+                            continue;
+                        }
+                        final String request = line.toString("US-ASCII").trim(); // NOI18N
+                        line.reset();
+                        if (request.equals("valid-requests")) { // NOI18N
+                            out.write(VALID_REQUESTS.getBytes("US-ASCII")); // NOI18N
+                            out.flush();
+                        } else if (request.equals("wrapper-sendme-rcsOptions")) { // NOI18N
+                            out.write("ok\n".getBytes("US-ASCII")); // NOI18N
+                            out.flush();
+                        } else if (request.equals("status")) { // NOI18N
+                            out.write(status);
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (final IOException ex) {
+                // the client closed the connection
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
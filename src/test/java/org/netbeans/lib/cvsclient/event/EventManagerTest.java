@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class EventManagerTest {
+
+    /**
+     * A slow asynchronous listener gets every event in order without holding
+     * up the firing thread.
+     */
+    @Test
+    public void testAsynchronousListener() throws Exception {
+        final int EVENTS = 200;
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final EventManager manager = new EventManager(null);
+        final List<String> syncMessages = new ArrayList<String>();
+        final List<String> asyncMessages = Collections.synchronizedList(new ArrayList<String>());
+        manager.addCVSListener(new CVSAdapter() {
+            @Override
+            public void messageSent(final MessageEvent e) {
+                syncMessages.add(e.getMessage());
+            }
+        });
+        manager.addAsynchronousCVSListener(new CVSAdapter() {
+            @Override
+            public void messageSent(final MessageEvent e) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                asyncMessages.add(e.getMessage());
+            }
+        });
+
+        // the listener blocks until every event has been fired
+        for (int i = 0; i < EVENTS; i++) {
+            manager.fireCVSEvent(new MessageEvent(this, "line " + i, false));
+        }
+        assertEquals(EVENTS, syncMessages.size());
+        assertTrue("Listener never called", blocked.await(10, TimeUnit.SECONDS));
+        assertTrue(asyncMessages.isEmpty());
+
+        release.countDown();
+        manager.flushAsynchronousEvents();
+        assertEquals(syncMessages, asyncMessages);
+    }
+
+    @Test
+    public void testRemoveListener() throws Exception {
+        final EventManager manager = new EventManager(null);
+        final int[] counts = new int[3];
+        final CVSListener[] listeners = new CVSListener[3];
+        for (int i = 0; i < listeners.length; i++) {
+            final int index = i;
+            listeners[i] = new CVSAdapter() {
+                @Override
+                public void messageSent(final MessageEvent e) {
+                    counts[index]++;
+                }
+            };
+            manager.addCVSListener(listeners[i]);
+        }
+        manager.removeCVSListener(listeners[1]);
+        manager.removeCVSListener(new CVSAdapter());
+        manager.fireCVSEvent(new MessageEvent(this, "line", false));
+        assertEquals(1, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(1, counts[2]);
+
+        manager.removeCVSListener(listeners[0]);
+        manager.removeCVSListener(listeners[2]);
+        manager.fireCVSEvent(new MessageEvent(this, "line", false));
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[2]);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.TestKit;
+import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
+import org.netbeans.lib.cvsclient.util.LoggedDataOutputStream;
+
+public class DefaultFileHandlerTest {
+
+    /**
+     * Files are sent in the <tt>z&lt;length&gt;</tt> form once a compression
+     * level is set, both when the compressed data fits the reusable buffer
+     * and when it has to be compressed twice.
+     */
+    @Test
+    public void testCompressedTransmission() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("test_DefaultFileHandlerTest");
+        try {
+            final byte[] text = new byte[200000];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = (byte) (i % 80 == 79 ? '\n' : 'a' + i % 26);
+            }
+            final byte[] random = new byte[3 * 1024 * 1024];
+            new Random(42).nextBytes(random);
+
+            final DefaultFileHandler handler = new DefaultFileHandler();
+            handler.setTransmitCompressionLevel(6);
+            for (final byte[] contents : new byte[][] { text, random, text }) {
+                final File file = createFile(tmpDir, contents);
+                final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+                handler.transmitBinaryFile(file, new LoggedDataOutputStream(sent));
+
+                final InputStream in = new ByteArrayInputStream(sent.toByteArray());
+                final String lengthLine = readLine(in);
+                assertEquals('z', lengthLine.charAt(0));
+                assertEquals(Integer.parseInt(lengthLine.substring(1)), in.available());
+                assertArrayEquals(contents, readFully(new GZIPInputStream(in)));
+            }
+
+            handler.setTransmitCompressionLevel(0);
+            final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+            handler.transmitBinaryFile(createFile(tmpDir, text), new LoggedDataOutputStream(sent));
+            final InputStream in = new ByteArrayInputStream(sent.toByteArray());
+            assertEquals(String.valueOf(text.length), readLine(in));
+            assertArrayEquals(text, readFully(in));
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * A transfer making no progress midway continues from the content stream
+     * without losing or misplacing any byte.
+     */
+    @Test
+    public void testStalledTransfer() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("test_DefaultFileHandlerTest");
+        try {
+            final byte[] contents = new byte[100000];
+            new Random(42).nextBytes(contents);
+            final InputStream content = new ByteArrayInputStream(contents);
+            final ReadableByteChannel channel = Channels.newChannel(content);
+            final ReadableByteChannel stalling = new ReadableByteChannel() {
+                private int reads;
+
+                public int read(final ByteBuffer dst) throws IOException {
+                    // the first transfer ends with the second read, the
+                    // next one makes no progress at all
+                    if ((++reads == 2) || (reads == 3)) {
+                        return 0;
+                    }
+                    final ByteBuffer slice = dst.slice();
+                    slice.limit(Math.min(slice.limit(), 1000));
+                    final int read = channel.read(slice);
+                    dst.position(dst.position() + Math.max(read, 0));
+                    return read;
+                }
+
+                public boolean isOpen() {
+                    return true;
+                }
+
+                public void close() {
+                }
+            };
+            final File file = new File(tmpDir, "stalled.bin");
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                DefaultFileHandler.transfer(stalling, content, out, contents.length);
+            } finally {
+                out.close();
+            }
+            assertArrayEquals(contents, readFully(new FileInputStream(file)));
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * A transfer failing midway leaves the previous file intact and no temp
+     * file behind.
+     */
+    @Test
+    public void testTruncatedStream() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("test_DefaultFileHandlerTest");
+        try {
+            final byte[] previous = "previous revision\n".getBytes("US-ASCII");
+            for (final boolean binary : new boolean[] { true, false }) {
+                final File file = new File(tmpDir, binary ? "file.bin" : "file.txt");
+                final FileOutputStream out = new FileOutputStream(file);
+                out.write(previous);
+                out.close();
+                final LoggedDataInputStream dis = new LoggedDataInputStream(new ByteArrayInputStream(new byte[500]));
+                try {
+                    if (binary) {
+                        new DefaultFileHandler().writeBinaryFile(file.getPath(), null, dis, 1000);
+                    } else {
+                        new DefaultFileHandler().writeTextFile(file.getPath(), null, dis, 1000);
+                    }
+                    fail("Truncated stream accepted");
+                } catch (final IOException ex) {
+                    assertTrue(ex.getMessage(), ex.getMessage().startsWith("Unexpected end of stream"));
+                }
+                assertArrayEquals(previous, readFully(new FileInputStream(file)));
+                assertEquals(0, new File(tmpDir, "CVS").list().length);
+            }
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * The content of a file that cannot be written is skipped, the server
+     * stream stays in sync.
+     */
+    @Test
+    public void testSkipOnFailure() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("test_DefaultFileHandlerTest");
+        try {
+            // a CVS file instead of a folder, the file cannot be staged
+            new FileOutputStream(new File(tmpDir, "CVS")).close();
+            final byte[] stream = "0123456789next".getBytes("US-ASCII");
+            for (final boolean binary : new boolean[] { true, false }) {
+                final LoggedDataInputStream dis = new LoggedDataInputStream(new ByteArrayInputStream(stream));
+                final String path = new File(tmpDir, "file").getPath();
+                try {
+                    if (binary) {
+                        new DefaultFileHandler().writeBinaryFile(path, null, dis, 10);
+                    } else {
+                        new DefaultFileHandler().writeTextFile(path, null, dis, 10);
+                    }
+                    fail("File written");
+                } catch (final IOException ex) {
+                    // expected
+                }
+                assertEquals("next", new String(readFully(dis), "US-ASCII"));
+            }
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    private static File createFile(final File dir, final byte[] contents) throws IOException {
+        final File file = File.createTempFile("transmit", null, dir);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        final StringBuffer sb = new StringBuffer();
+        for (int ch = in.read(); ch != '\n'; ch = in.read()) {
+            sb.append((char) ch);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            bos.write(chunk, 0, read);
+        }
+        return bos.toByteArray();
+    }
+}
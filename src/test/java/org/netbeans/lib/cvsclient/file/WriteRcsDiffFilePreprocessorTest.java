@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.TestKit;
+
+public class WriteRcsDiffFilePreprocessorTest {
+
+    /**
+     * Deletions and additions are applied and every line, including the last
+     * one without a line-ending, is terminated by the wanted line-ending.
+     */
+    @Test
+    public void testPatch() throws Exception {
+        assertEquals("1\n2 new\n3\n5\nadded\n6\n7\n",
+                patch("1\r\n2\n3\n4\n5\n6\n7", "d2 1\na1 1\n2 new\nd4 1\na5 1\nadded\n", "\n"));
+        assertEquals("a\r\nb\r\nc\r\n", patch("a\r\nb\nc", "", "\r\n"));
+        assertEquals("x\r\nnew\r\n", patch("x\r\ny\r\n", "d2 1\na2 1\nnew\n", "\r\n"));
+        assertEquals("first\nline 1\n", patch("line 1\n", "a0 1\nfirst\n", "\n"));
+        // a sole CR is part of the line unless it is the platform's line
+        // separator
+        if (!"\r".equals(System.getProperty("line.separator"))) {
+            assertEquals("a\rb\nc\n", patch("a\rb\n", "a1 1\nc\n", "\n"));
+        }
+    }
+
+    /**
+     * A broken diff must not touch the file.
+     */
+    @Test
+    public void testBrokenDiff() throws Exception {
+        assertEquals("1\n2\n", patch("1\n2\n", "d1 1\nax 1\nfoo\n", "\n"));
+    }
+
+    /**
+     * Large files patched with a small diff.
+     */
+    @Test
+    public void testLargeFile() throws Exception {
+        final StringBuffer original = new StringBuffer();
+        final StringBuffer expected = new StringBuffer();
+        for (int i = 1; i <= 100000; i++) {
+            original.append("line ").append(i).append('\n');
+            if (i == 50000) {
+                expected.append("changed\n");
+            } else if (i != 99999) {
+                expected.append("line ").append(i).append('\n');
+            }
+        }
+        assertEquals(expected.toString(), patch(original.toString(), "d50000 1\na50000 1\nchanged\nd99999 1\n", "\n"));
+    }
+
+    private static String patch(final String original, final String diff, final String lineEnding)
+                    throws IOException {
+        final File tmpDir = TestKit.createTmpFolder("test_WriteRcsDiffFilePreprocessorTest");
+        try {
+            final File file = new File(tmpDir, "file");
+            final OutputStream out = new FileOutputStream(file);
+            out.write(original.getBytes("ISO-8859-1"));
+            out.close();
+
+            final WriteRcsDiffFilePreprocessor preprocessor = new WriteRcsDiffFilePreprocessor();
+            preprocessor.setLineEnding(lineEnding);
+            preprocessor.copyTextFileToLocation(new ByteArrayInputStream(diff.getBytes("ISO-8859-1")), file,
+                    new OutputStreamProvider() {
+                        public OutputStream createOutputStream() throws IOException {
+                            return new FileOutputStream(file);
+                        }
+                    });
+
+            final InputStream in = new FileInputStream(file);
+            try {
+                final byte[] bytes = new byte[(int) file.length()];
+                int read = 0;
+                while (read < bytes.length) {
+                    read += in.read(bytes, read, bytes.length - read);
+                }
+                return new String(bytes, "ISO-8859-1");
+            } finally {
+                in.close();
+            }
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+}
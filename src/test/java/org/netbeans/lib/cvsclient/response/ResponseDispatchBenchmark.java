@@ -0,0 +1,170 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+
+package org.netbeans.lib.cvsclient.response;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.netbeans.lib.cvsclient.util.LoggedDataInputStream;
+
+/**
+ * Dispatches a synthetic stream of <tt>M</tt>, <tt>Updated</tt> and
+ * <tt>Checked-in</tt> responses and reports responses per second and bytes
+ * allocated per response.
+ * <p>
+ * The "legacy" figure reproduces the former dispatch that collected every
+ * response name in a fresh <code>StringBuffer</code> and looked it up by
+ * <code>String</code>. Only the name dispatch is measured, the remainder of
+ * each response line is skipped.
+ * <p>
+ * Run with:
+ * 
+ * <pre>
+ *   java -cp target/classes:target/test-classes org.netbeans.lib.cvsclient.response.ResponseDispatchBenchmark [responses]
+ * </pre>
+ */
+public class ResponseDispatchBenchmark {
+
+    private static final String[] RESPONSES = {
+        "M U module/src/org/netbeans/Foo.java\n", // NOI18N
+        "Updated module/src/org/netbeans/\n", // NOI18N
+        "Checked-in module/src/org/netbeans/\n", // NOI18N
+    };
+
+    public static void main(final String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final byte[] stream = createStream(count);
+
+        System.out.println("Dispatching " + count + " responses (" + (stream.length / 1024) + " KB)"); // NOI18N
+        for (int round = 0; round < 5; round++) {
+            report("legacy", count, dispatch(stream, true)); // NOI18N
+            report("bytes ", count, dispatch(stream, false)); // NOI18N
+        }
+    }
+
+    private static byte[] createStream(final int count) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            bos.write(RESPONSES[i % RESPONSES.length].getBytes("US-ASCII")); // NOI18N
+        }
+        return bos.toByteArray();
+    }
+
+    private static void report(final String name, final int count, final long[] result) {
+        final long nanos = result[0];
+        final long allocated = result[1];
+        System.out.println(name + ": " + (nanos / 1000000) + " ms, " // NOI18N
+                        + (count * 1000000000L / Math.max(1, nanos)) + " responses/sec, " // NOI18N
+                        + (allocated < 0 ? "n/a" : String.valueOf(allocated / count)) + " bytes/response"); // NOI18N
+    }
+
+    /**
+     * @return elapsed nanoseconds and allocated bytes, -1 if the VM cannot
+     *         tell
+     */
+    private static long[] dispatch(final byte[] stream, final boolean legacy) throws Exception {
+        final LoggedDataInputStream dis = new LoggedDataInputStream(new ByteArrayInputStream(stream), true);
+        final ResponseFactory factory = new ResponseFactory();
+        byte[] name = new byte[32];
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+
+        int ch = dis.read();
+        while (ch != -1) {
+            final Response response;
+            if (legacy) {
+                final StringBuffer responseNameBuffer = new StringBuffer();
+                while ((ch != -1) && ((char) ch != '\n') && ((char) ch != ' ')) {
+                    responseNameBuffer.append((char) ch);
+                    ch = dis.read();
+                }
+                response = factory.createResponse(responseNameBuffer.toString());
+            } else {
+                int length = 0;
+                while ((ch != -1) && ((char) ch != '\n') && ((char) ch != ' ')) {
+                    if (length == name.length) {
+                        final byte[] larger = new byte[length * 2];
+                        System.arraycopy(name, 0, larger, 0, length);
+                        name = larger;
+                    }
+                    name[length++] = (byte) ch;
+                    ch = dis.read();
+                }
+                response = factory.createResponse(name, 0, length);
+            }
+            if (response == null) {
+                throw new IllegalStateException();
+            }
+            while ((ch != -1) && (ch != '\n')) {
+                ch = dis.read();
+            }
+            ch = dis.read();
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        final long allocatedAfter = allocatedBytes();
+        return new long[] { elapsed, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore };
+    }
+
+    /**
+     * Uses the HotSpot specific <tt>getThreadAllocatedBytes</tt> when
+     * available.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            final Method method = Class.forName("com.sun.management.ThreadMXBean") // NOI18N
+                            .getMethod("getThreadAllocatedBytes", long.class); // NOI18N
+            return ((Long) method.invoke(bean, Thread.currentThread().getId())).longValue();
+        } catch (final Exception ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Date codec test suite. Every result is compared with the
+ * <code>SimpleDateFormat</code> the codec replaced.
+ */
+public class DateCodecTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final String[] ZONES = { "GMT", "Europe/Prague", "America/New_York", "Australia/Sydney",
+        "Asia/Kolkata" };
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void testLastModified() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        for (long time : interestingTimes(TimeZone.getTimeZone("GMT"))) {
+            String expected = format.format(new Date(time));
+            assertEquals(expected, DateCodec.formatLastModified(time));
+            assertEquals(expected, format.parse(expected), DateCodec.parseLastModified(expected));
+        }
+        // space padded day of the command line client
+        assertEquals(format.parse("Thu Mar 03 15:14:27 2005"), DateCodec.parseLastModified("Thu Mar  3 15:14:27 2005"));
+    }
+
+    @Test
+    public void testRcsDate() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        SimpleDateFormat slashes = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        slashes.setTimeZone(TimeZone.getTimeZone("GMT"));
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            format.setTimeZone(zone);
+            for (long time : interestingTimes(zone)) {
+                String text = format.format(new Date(time));
+                assertEquals(text, new Date(time), DateCodec.parseRcsDate(text));
+                // the log builder appends a default zone
+                assertEquals(text, new Date(time), DateCodec.parseRcsDate(text + " +0000"));
+            }
+        }
+        for (long time : interestingTimes(TimeZone.getTimeZone("GMT"))) {
+            String text = slashes.format(new Date(time));
+            assertEquals(text, new Date(time), DateCodec.parseRcsDate(text));
+        }
+    }
+
+    @Test
+    public void testStickyDate() throws Exception {
+        for (String id : ZONES) {
+            TimeZone.setDefault(TimeZone.getTimeZone(id));
+            // sticky dates use a 24 hour clock
+            SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss");
+            for (long time : interestingTimes(TimeZone.getDefault())) {
+                String expected = format.format(new Date(time));
+                assertEquals(id, expected, DateCodec.formatStickyDate(new Date(time)));
+                assertEquals(id + " " + expected, format.parse(expected), DateCodec.parseStickyDate(expected));
+            }
+        }
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT"));
+        assertEquals("2005.03.24.15.14.27", DateCodec.formatStickyDate(
+                DateCodec.parseLastModified("Thu Mar 24 15:14:27 2005")));
+    }
+
+    /**
+     * Local times in a daylight saving gap do not exist, they are resolved
+     * like the lenient <code>SimpleDateFormat</code> does.
+     */
+    @Test
+    public void testStickyDateInGap() throws Exception {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss");
+        for (String text : new String[] { "2021.03.14.02.00.00", "2021.03.14.02.30.00", "2021.11.07.01.30.00" }) {
+            assertEquals(text, format.parse(text), DateCodec.parseStickyDate(text));
+        }
+    }
+
+    @Test
+    public void testMalformed() {
+        String[] lastModified = { "", "Thu", "Thu Mar 24 15:14 2005", "Thu Foo 24 15:14:27 2005",
+            "Thu Mar 24 15-14-27 2005", "Mar 24 15:14:27 2005", "Thu Mar 24 15:14:27" };
+        for (String text : lastModified) {
+            try {
+                DateCodec.parseLastModified(text);
+                fail(text);
+            } catch (ParseException expected) {
+            }
+        }
+        String[] rcs = { "", "2005", "2005-03-24", "2005.03.24 15:14:27", "2005-03-24 15:14", "2005-03-24 15:14:27 +01",
+            "2005-03-24 15:14:27 +01000", "x2005-03-24 15:14:27" };
+        for (String text : rcs) {
+            try {
+                DateCodec.parseRcsDate(text);
+                fail(text);
+            } catch (ParseException expected) {
+            }
+        }
+        String[] sticky = { "", "2005.03.24.15.14", "2005-03-24-15-14-27", "2005.03.24.15.14.", "a005.03.24.15.14.27" };
+        for (String text : sticky) {
+            try {
+                DateCodec.parseStickyDate(text);
+                fail(text);
+            } catch (ParseException expected) {
+            }
+        }
+    }
+
+    /**
+     * Times around the epoch, leap days, the 2038 boundary and later years,
+     * every quarter of an hour around the daylight saving switches of the
+     * zone, and random times up to the year 2400.
+     */
+    private static long[] interestingTimes(TimeZone zone) throws ParseException {
+        SimpleDateFormat gmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        gmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+        String[] fixed = { "1970-01-01 00:00:00", "1970-01-01 23:59:59", "1970-12-31 12:00:00",
+            "2000-02-29 13:45:01", "2004-02-29 00:00:00", "2004-03-01 00:00:00", "2100-02-28 23:59:59",
+            "2100-03-01 00:00:00", "2038-01-19 03:14:07", "2038-01-19 03:14:08", "2099-12-31 23:59:59",
+            "2400-02-29 12:00:00" };
+        long[] times = new long[fixed.length + 2 * 24 * 4 + 500];
+        int n = 0;
+        for (String text : fixed) {
+            times[n++] = gmt.parse(text).getTime();
+        }
+        long start = gmt.parse("2021-01-01 00:00:00").getTime();
+        int switches = 0;
+        for (long t = start; t < start + 366 * 24 * HOUR && switches < 2; t += HOUR) {
+            if (zone.getOffset(t) != zone.getOffset(t + HOUR)) {
+                for (long q = t - 12 * HOUR; q < t + 12 * HOUR; q += HOUR / 4) {
+                    times[n++] = q;
+                }
+                switches++;
+            }
+        }
+        Random random = new Random(42);
+        long end = gmt.parse("2400-01-01 00:00:00").getTime();
+        while (n < times.length) {
+            times[n++] = (long) (random.nextDouble() * end) / 1000 * 1000;
+        }
+        return times;
+    }
+}
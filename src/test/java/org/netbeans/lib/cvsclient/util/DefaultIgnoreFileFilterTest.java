@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.TestKit;
+
+public class DefaultIgnoreFileFilterTest {
+
+    private static final String[] PATTERNS = { "*.o", "*.class", "*~", "core", "#*", ".#*", "*", "a*b", "?.txt",
+            "datei*1*", "", "build*", "*.tar.gz", "x?y*", ".*" };
+
+    private static final String[] NAMES = { "", "a", "ab", "aab", "ba", "abc", "x.o", ".o", "o", "Foo.class",
+            "class", "file~", "~", "file~1", "core", "core.1", "#file", "file#", ".#file.1.2", "datei1.txt",
+            "datei0.txt", "build", "build.xml", "mybuild", "a.tar.gz", "tar.gz", "1.txt", "12.txt", "xzy.c", ".cvsrc" };
+
+    /**
+     * The compiled matcher gives the same answers as trying every pattern.
+     */
+    @Test
+    public void testMatcher() {
+        for (int from = 0; from < PATTERNS.length; from++) {
+            for (int to = from + 1; to <= PATTERNS.length; to++) {
+                final List<StringPattern> patterns = new ArrayList<StringPattern>();
+                for (int i = from; i < to; i++) {
+                    patterns.add(new SimpleStringPattern(PATTERNS[i]));
+                }
+                final IgnorePatternMatcher matcher = new IgnorePatternMatcher(patterns);
+                for (final String name : NAMES) {
+                    boolean expected = false;
+                    for (final StringPattern pattern : patterns) {
+                        expected |= pattern.doesMatch(name);
+                    }
+                    assertEquals(patterns + " " + name, expected, matcher.matches(name));
+                }
+            }
+        }
+    }
+
+    /**
+     * <code>.cvsignore</code> files are cached per directory and read again
+     * once they change.
+     */
+    @Test
+    public void testDirectoryCache() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("test_DefaultIgnoreFileFilterTest");
+        try {
+            final File a = new File(tmpDir, "a");
+            final File b = new File(tmpDir, "b");
+            a.mkdirs();
+            b.mkdirs();
+            writeCvsIgnore(a, "*.log\n");
+            writeCvsIgnore(b, "! *.tmp\n");
+
+            final DefaultIgnoreFileFilter filter = new DefaultIgnoreFileFilter();
+            filter.addPattern("*.o");
+            for (int i = 0; i < 3; i++) {
+                assertTrue(filter.shouldBeIgnored(new File(a.getPath()), "x.log"));
+                assertTrue(filter.shouldBeIgnored(new File(a.getPath()), "x.o"));
+                assertFalse(filter.shouldBeIgnored(new File(a.getPath()), "x.tmp"));
+                assertTrue(filter.shouldBeIgnored(new File(b.getPath()), "x.tmp"));
+                assertFalse(filter.shouldBeIgnored(new File(b.getPath()), "x.o"));
+                assertTrue(filter.shouldBeIgnored(new File(tmpDir.getPath()), "x.o"));
+            }
+
+            final long lastModified = new File(a, ".cvsignore").lastModified();
+            writeCvsIgnore(a, "*.txt\n");
+            new File(a, ".cvsignore").setLastModified(lastModified + 2000);
+            assertTrue(filter.shouldBeIgnored(new File(a.getPath()), "x.txt"));
+            assertFalse(filter.shouldBeIgnored(new File(a.getPath()), "x.log"));
+
+            new File(b, ".cvsignore").delete();
+            assertTrue(filter.shouldBeIgnored(new File(b.getPath()), "x.o"));
+            assertFalse(filter.shouldBeIgnored(new File(b.getPath()), "x.tmp"));
+
+            filter.clearPatterns();
+            assertFalse(filter.shouldBeIgnored(new File(tmpDir.getPath()), "x.o"));
+        } finally {
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    private static void writeCvsIgnore(final File directory, final String contents) throws IOException {
+        final FileWriter writer = new FileWriter(new File(directory, ".cvsignore"));
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.netbeans.lib.cvsclient.PseudoCvsServer;
+import org.netbeans.lib.cvsclient.connection.InterruptibleSocketInputStream;
+
+/**
+ * Replays a recorded <tt>PseudoCvsServer</tt> checkout transcript over a
+ * loopback socket and reports how many response lines per second
+ * {@link LoggedDataInputStream} delivers.
+ * <p>
+ * The "legacy" figure reproduces the former byte-at-a-time reader that polled
+ * <tt>available()</tt> and slept 100 ms whenever the socket was drained.
+ * <p>
+ * Run with:
+ * 
+ * <pre>
+ *   java -cp target/classes:target/test-classes org.netbeans.lib.cvsclient.util.LoggedDataInputStreamBenchmark [repeat]
+ * </pre>
+ */
+public class LoggedDataInputStreamBenchmark {
+
+    private static final String TRANSCRIPT = "protocol/iz56552_21126.in"; // NOI18N
+
+    public static void main(final String[] args) throws Exception {
+        final int repeat = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final byte[] transcript = loadTranscript(TRANSCRIPT);
+
+        System.out.println("Replaying " + TRANSCRIPT + " " + repeat + " times (" // NOI18N
+                        + (transcript.length * (long) repeat / 1024) + " KB)"); // NOI18N
+        for (int round = 0; round < 2; round++) {
+            report("legacy  ", replay(transcript, repeat, Mode.LEGACY)); // NOI18N
+            report("polling ", replay(transcript, repeat, Mode.POLLING)); // NOI18N
+            report("blocking", replay(transcript, repeat, Mode.BLOCKING)); // NOI18N
+        }
+    }
+
+    private enum Mode {
+        LEGACY, POLLING, BLOCKING
+    }
+
+    private static void report(final String name, final long[] result) {
+        final long lines = result[0];
+        final long nanos = result[1];
+        System.out.println(name + ": " + lines + " lines in " + (nanos / 1000000) + " ms, " // NOI18N
+                        + (lines * 1000000000L / Math.max(1, nanos)) + " lines/sec"); // NOI18N
+    }
+
+    private static byte[] loadTranscript(final String name) throws IOException {
+        final ZipInputStream zis = new ZipInputStream(PseudoCvsServer.class.getResourceAsStream("protocol.zip")); // NOI18N
+        try {
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                if (name.equals(entry.getName())) {
+                    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    final byte[] chunk = new byte[4096];
+                    int read;
+                    while ((read = zis.read(chunk)) != -1) {
+                        bos.write(chunk, 0, read);
+                    }
+                    return bos.toByteArray();
+                }
+            }
+        } finally {
+            zis.close();
+        }
+        throw new IOException("Missing transcript " + name); // NOI18N
+    }
+
+    /**
+     * @return number of lines read and elapsed nanoseconds
+     */
+    private static long[] replay(final byte[] transcript, final int repeat, final Mode mode) throws Exception {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName(null));
+        final Thread writer = new Thread("Transcript writer") { // NOI18N
+            @Override
+            public void run() {
+                try {
+                    final Socket socket = server.accept();
+                    final OutputStream out = socket.getOutputStream();
+                    for (int i = 0; i < repeat; i++) {
+                        out.write(transcript);
+                    }
+                    out.flush();
+                    socket.shutdownOutput();
+                } catch (final IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        writer.start();
+
+        final Socket socket = new Socket(server.getInetAddress(), server.getLocalPort());
+        try {
+            // polling readers never see the stream end, read exactly the
+            // recorded number of lines
+            final long lines = countLines(transcript) * repeat;
+            final long start = System.nanoTime();
+            if (mode == Mode.LEGACY) {
+                final InputStream in = new BufferedInputStream(socket.getInputStream(), 32768);
+                for (long i = 0; i < lines; i++) {
+                    readLegacyLine(in);
+                }
+            } else {
+                final InputStream raw = mode == Mode.BLOCKING ? new InterruptibleSocketInputStream(socket,
+                                InterruptibleSocketInputStream.DEFAULT_WAKEUP_INTERVAL) : socket.getInputStream();
+                final LoggedDataInputStream in = new LoggedDataInputStream(new BufferedInputStream(raw, 32768),
+                                mode == Mode.BLOCKING);
+                for (long i = 0; i < lines; i++) {
+                    in.readLineBytes();
+                }
+            }
+            return new long[] { lines, System.nanoTime() - start };
+        } finally {
+            socket.close();
+            server.close();
+            writer.join();
+        }
+    }
+
+    private static long countLines(final byte[] transcript) {
+        long lines = 0;
+        for (int i = 0; i < transcript.length; i++) {
+            if (transcript[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * The reading loop <tt>readLineBytes()</tt> used before it became
+     * buffered.
+     */
+    private static void readLegacyLine(final InputStream in) throws IOException {
+        final ByteArray byteArray = new ByteArray();
+        while (true) {
+            if (in.available() == 0) {
+                try {
+                    Thread.sleep(100);
+                } catch (final InterruptedException ex) {
+                    throw new EOFException();
+                }
+                continue;
+            }
+            final int ch = in.read();
+            switch (ch) {
+            case -1:
+                throw new EOFException();
+            case '\n':
+                return;
+            default:
+                byteArray.add((byte) ch);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reads a synthetic response stream through {@link LoggedDataInputStream}
+ * the way <code>Client</code> does, one byte at a time for response names
+ * and line by line for the rest, and reports the throughput with protocol
+ * logging off and on.
+ * <p>
+ * The "legacy" figure reproduces the former logger that wrote every call
+ * synchronously to a buffered file stream and flushed it right away.
+ * <p>
+ * Run with:
+ * 
+ * <pre>
+ *   java -cp target/classes:target/test-classes org.netbeans.lib.cvsclient.util.LoggerBenchmark [lines]
+ * </pre>
+ */
+public class LoggerBenchmark {
+
+    public static void main(final String[] args) throws Exception {
+        final int lines = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        final byte[] stream = createStream(lines);
+        final File logDir = File.createTempFile("loggerBenchmark", null); // NOI18N
+        logDir.delete();
+        logDir.mkdirs();
+        final String logPath = new File(logDir, "protocol").getPath(); // NOI18N
+
+        System.out.println("Reading " + lines + " lines (" + (stream.length / 1024) + " KB), logging to " + logPath); // NOI18N
+        try {
+            for (int round = 0; round < 5; round++) {
+                Logger.setLogging(null);
+                report("off   ", stream.length, read(stream, null)); // NOI18N
+
+                final OutputStream legacy = new BufferedOutputStream(new FileOutputStream(logPath + ".legacy")); // NOI18N
+                try {
+                    report("legacy", stream.length, read(stream, legacy)); // NOI18N
+                } finally {
+                    legacy.close();
+                }
+
+                Logger.setLogging(logPath, 0, 0, false);
+                final long start = System.nanoTime();
+                final long nanos = read(stream, null);
+                report("async ", stream.length, nanos); // NOI18N
+                Logger.flush();
+                report("  +flush", stream.length, System.nanoTime() - start); // NOI18N
+            }
+        } finally {
+            Logger.setLogging(null);
+            final File[] files = logDir.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+            logDir.delete();
+        }
+    }
+
+    private static byte[] createStream(final int lines) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (int i = 0; i < lines; i++) {
+            bos.write(("M U module/src/org/netbeans/lib/cvsclient/File" + i + ".java\n").getBytes("US-ASCII")); // NOI18N
+        }
+        return bos.toByteArray();
+    }
+
+    private static void report(final String name, final long bytes, final long nanos) {
+        System.out.println(name + ": " + (nanos / 1000000) + " ms, " // NOI18N
+                        + (bytes * 1000000000L / 1048576 / Math.max(1, nanos)) + " MB/sec"); // NOI18N
+    }
+
+    /**
+     * @param legacy
+     *            the stream the former logger would have written to, or
+     *            <code>null</code> to leave logging to {@link Logger}
+     * @return elapsed nanoseconds
+     */
+    private static long read(final byte[] stream, final OutputStream legacy) throws IOException {
+        final LoggedDataInputStream dis = new LoggedDataInputStream(new ByteArrayInputStream(stream), true);
+        final long start = System.nanoTime();
+        int ch = dis.read();
+        while (ch != -1) {
+            // response name
+            while ((ch != -1) && (ch != '\n') && (ch != ' ')) {
+                if (legacy != null) {
+                    legacy.write(ch);
+                    legacy.flush();
+                }
+                ch = dis.read();
+            }
+            if (ch == ' ') {
+                if (legacy != null) {
+                    legacy.write(ch);
+                    legacy.flush();
+                }
+                final ByteArray line = dis.readLineBytes();
+                if (legacy != null) {
+                    legacy.write(line.getBytes());
+                    legacy.flush();
+                    legacy.write('\n');
+                    legacy.flush();
+                }
+            }
+            ch = dis.read();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 1997-2010 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle and Java are registered trademarks of Oracle and/or its affiliates.
+ * Other names may be trademarks of their respective owners.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common
+ * Development and Distribution License("CDDL") (collectively, the
+ * "License"). You may not use this file except in compliance with the
+ * License. You can obtain a copy of the License at
+ * http://www.netbeans.org/cddl-gplv2.html
+ * or nbbuild/licenses/CDDL-GPL-2-CP. See the License for the
+ * specific language governing permissions and limitations under the
+ * License.  When distributing the software, include this License Header
+ * Notice in each file and include the License file at
+ * nbbuild/licenses/CDDL-GPL-2-CP.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the GPL Version 2 section of the License file that
+ * accompanied this code. If applicable, add the following below the
+ * License Header, with the fields enclosed by brackets [] replaced by
+ * your own identifying information:
+ * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ *
+ * The Original Software is NetBeans. The Initial Developer of the Original
+ * Software is Sun Microsystems, Inc. Portions Copyright 1997-2006 Sun
+ * Microsystems, Inc. All Rights Reserved.
+ *
+ * If you wish your version of this file to be governed by only the CDDL
+ * or only the GPL Version 2, indicate your decision by adding
+ * "[Contributor] elects to include this software in this distribution
+ * under the [CDDL or GPL Version 2] license." If you do not indicate a
+ * single choice of license, a recipient has the option to distribute
+ * your version of this file under either the CDDL, the GPL Version 2 or
+ * to extend the choice of license to its licensees as provided above.
+ * However, if you add GPL Version 2 code and therefore, elected the GPL
+ * Version 2 license, then the option applies only if the new code is
+ * made subject to such option by the copyright holder.
+ */
+
+package org.netbeans.lib.cvsclient.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.netbeans.lib.cvsclient.TestKit;
+
+public class LoggerTest {
+
+    /**
+     * A producer does not wait for a drain thread that is gone, it drains a
+     * full ring itself.
+     */
+    @Test(timeout = 20000)
+    public void testDeadDrainer() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final LogRingBuffer ring = new LogRingBuffer(8192, out);
+        final Thread dead = new Thread();
+        dead.start();
+        dead.join();
+        ring.setDrainer(dead);
+        final byte[] record = new byte[1000];
+        Arrays.fill(record, (byte) 'x');
+        for (int i = 0; i < 100; i++) {
+            ring.write(record, 0, record.length);
+        }
+        ring.flush();
+        assertEquals(100 * record.length, out.size());
+    }
+
+    /**
+     * Data logged concurrently ends up complete and in order per thread.
+     */
+    @Test
+    public void testConcurrentLogging() throws Exception {
+        final int THREADS = 4;
+        final int RECORDS = 20000;
+        final File tmpDir = TestKit.createTmpFolder("test_LoggerTest");
+        try {
+            final String logPath = new File(tmpDir, "protocol").getPath();
+            Logger.setLogging(logPath, 0, 0, false);
+            final Thread[] threads = new Thread[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < RECORDS; i++) {
+                            Logger.logInput(("T" + thread + " " + i + "\n").getBytes());
+                        }
+                    }
+                };
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Logger.flush();
+
+            final int[] next = new int[THREADS];
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logPath + ".in")));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    final int thread = Integer.parseInt(line.substring(1, line.indexOf(' ')));
+                    assertEquals(line, next[thread]++, Integer.parseInt(line.substring(line.indexOf(' ') + 1)));
+                }
+            } finally {
+                reader.close();
+            }
+            for (int t = 0; t < THREADS; t++) {
+                assertEquals(RECORDS, next[t]);
+            }
+        } finally {
+            Logger.setLogging(null);
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * Full log files are rotated and gzipped, the oldest ones are deleted.
+     */
+    @Test
+    public void testRotation() throws Exception {
+        final File tmpDir = TestKit.createTmpFolder("test_LoggerTest");
+        try {
+            final String logPath = new File(tmpDir, "protocol").getPath();
+            Logger.setLogging(logPath, 1000, 2, true);
+            final byte[] chunk = new byte[100];
+            for (int i = 0; i < 45; i++) {
+                Arrays.fill(chunk, (byte) ('a' + i / 10));
+                Logger.logInput(chunk);
+                Logger.flush();
+            }
+            Logger.setLogging(null);
+
+            assertEquals(500, new File(logPath + ".in").length());
+            assertTrue(new File(logPath + ".in.1.gz").exists());
+            assertTrue(new File(logPath + ".in.2.gz").exists());
+            assertFalse(new File(logPath + ".in.3.gz").exists());
+            assertFalse(new File(logPath + ".in.1").exists());
+            final GZIPInputStream in = new GZIPInputStream(new FileInputStream(logPath + ".in.1.gz"));
+            try {
+                final byte[] rotated = new byte[1000];
+                int read = 0;
+                while (read < rotated.length) {
+                    read += in.read(rotated, read, rotated.length - read);
+                }
+                assertEquals(-1, in.read());
+                assertEquals('d', rotated[0]);
+                assertEquals('d', rotated[999]);
+            } finally {
+                in.close();
+            }
+        } finally {
+            Logger.setLogging(null);
+            TestKit.deleteRecursively(tmpDir);
+        }
+    }
+}